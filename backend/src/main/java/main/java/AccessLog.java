@@ -0,0 +1,172 @@
+package main.java;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.RequestLog;
+import org.eclipse.jetty.server.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request ids and the access log.
+ *
+ * {@link #begin} gives every request an id, taken from a well-formed
+ * X-Request-Id header or generated, and puts it in the MDC so application
+ * logs written while handling the request carry it; it is echoed in the
+ * response. Jetty calls {@link #log} once the response is complete, with
+ * the final status, bytes written and latency. Each path prefix can log
+ * only a fraction of its requests, the longest matching prefix deciding,
+ * so high-volume routes cannot flood the log at peak; server errors and
+ * slow requests are always logged.
+ */
+public class AccessLog implements RequestLog {
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+    // MDC key and request attribute holding the id
+    public static final String REQUEST_ID = "requestId";
+    // Request attribute marking a request that is left out of the log
+    public static final String UNLOGGED = "accessLog.unlogged";
+
+    private static final Logger logger = LoggerFactory.getLogger("access");
+    private static final int MAX_REQUEST_ID_LENGTH = 64;
+
+    // Sampled path prefixes, longest first, and their rates
+    private final String[] prefixes;
+    private final double[] rates;
+    private final double defaultRate;
+    private final long slowMillis;
+    // Ids are this process's random prefix and a counter: unique without a UUID per request
+    private final String idPrefix = Long.toString(ThreadLocalRandom.current().nextLong() >>> 24, 36) + "-";
+    private final AtomicLong nextId = new AtomicLong();
+
+    /**
+     * @param routeRates Path prefix -> fraction of its requests to log, 0 to 1
+     * @param defaultRate Fraction logged for paths matching no prefix
+     * @param slowMillis Requests taking at least this long are always logged
+     */
+    public AccessLog(Map<String, Double> routeRates, double defaultRate, long slowMillis) {
+        List<Map.Entry<String, Double>> entries = new ArrayList<>(routeRates.entrySet());
+        entries.sort(Comparator.comparingInt((Map.Entry<String, Double> entry) -> entry.getKey().length()).reversed());
+        this.prefixes = new String[entries.size()];
+        this.rates = new double[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            prefixes[i] = entries.get(i).getKey();
+            rates[i] = entries.get(i).getValue();
+        }
+        this.defaultRate = defaultRate;
+        this.slowMillis = slowMillis;
+    }
+
+    /**
+     * @param spec Comma-separated prefix=rate pairs, e.g. "/health=0.01,/api/products=0.25"
+     * @return The rates by prefix, empty for a null or blank spec
+     * @throws IllegalArgumentException if a pair is malformed
+     */
+    public static Map<String, Double> parseRates(String spec) {
+        Map<String, Double> rates = new LinkedHashMap<>();
+        if (spec == null || spec.isBlank()) {
+            return rates;
+        }
+        for (String pair : spec.split(",")) {
+            int equals = pair.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Expected prefix=rate but got " + pair.trim());
+            }
+            rates.put(pair.substring(0, equals).trim(), Double.parseDouble(pair.substring(equals + 1).trim()));
+        }
+        return rates;
+    }
+
+    /**
+     * Assigns the request its id, in the MDC, a request attribute and the
+     * response's X-Request-Id header
+     * @return The id
+     */
+    public String begin(HttpServletRequest request, HttpServletResponse response) {
+        String id = request.getHeader(REQUEST_ID_HEADER);
+        if (!isValidId(id)) {
+            id = idPrefix + Long.toString(nextId.incrementAndGet(), 36);
+        }
+        request.setAttribute(REQUEST_ID, id);
+        MDC.put(REQUEST_ID, id);
+        response.setHeader(REQUEST_ID_HEADER, id);
+        return id;
+    }
+
+    /**
+     * Clears the request id from the handling thread's MDC
+     */
+    public static void end() {
+        MDC.remove(REQUEST_ID);
+    }
+
+    @Override
+    public void log(Request request, Response response) {
+        if (!logger.isInfoEnabled() || request.getAttribute(UNLOGGED) != null) {
+            return;
+        }
+        int status = response.getCommittedMetaData().getStatus();
+        long millis = System.currentTimeMillis() - request.getTimeStamp();
+        String path = request.getRequestURI();
+        double rate = sampleRate(path);
+        if (status < 500 && millis < slowMillis && !sampled(rate)) {
+            return;
+        }
+        Object id = request.getAttribute(REQUEST_ID);
+        if (id != null) {
+            MDC.put(REQUEST_ID, id.toString());
+        }
+        try {
+            logger.atInfo()
+                    .addKeyValue("method", request.getMethod())
+                    .addKeyValue("path", path)
+                    .addKeyValue("status", status)
+                    .addKeyValue("bytes", response.getHttpChannel().getBytesWritten())
+                    .addKeyValue("millis", millis)
+                    // Lets log queries weight sampled lines back up to totals
+                    .addKeyValue("sampleRate", rate)
+                    .log("access");
+        } finally {
+            MDC.remove(REQUEST_ID);
+        }
+    }
+
+    /**
+     * @return The fraction of requests to a path that are logged
+     */
+    public double sampleRate(String path) {
+        for (int i = 0; i < prefixes.length; i++) {
+            if (path.startsWith(prefixes[i])) {
+                return rates[i];
+            }
+        }
+        return defaultRate;
+    }
+
+    private static boolean sampled(double rate) {
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    private static boolean isValidId(String id) {
+        if (id == null || id.isEmpty() || id.length() > MAX_REQUEST_ID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+                    || c == '-' || c == '_' || c == '.')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,206 @@
+package main.java;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * In-process event pipeline for views derived from the catalog that can
+ * update asynchronously.
+ *
+ * Events go into a fixed ring that every subscriber reads at its own pace
+ * from a dedicated thread. Publishers claim a slot with one atomic
+ * increment, so the write path takes no lock; each subscriber receives all
+ * events that accumulated since its last call as one batch, in publish
+ * order. When the slowest subscriber falls a full ring behind, publishers
+ * wait for it rather than drop events. Handlers must therefore not publish
+ * to the bus they are subscribed to.
+ *
+ * @param <E> The event type
+ */
+public class ChangeBus<E> {
+    private static final Logger logger = LoggerFactory.getLogger(ChangeBus.class);
+    private static final int SPINS_BEFORE_PARK = 100;
+    private static final long MAX_PARK_NANOS = 1_000_000;
+
+    private final Object[] entries;
+    // Sequence each slot currently holds, written after the entry to publish it
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    // Lower bound of every subscriber's progress, to skip the scan while the ring has room
+    private volatile long gatingCache = -1;
+
+    /**
+     * @param capacity Ring size, rounded up to a power of two
+     */
+    public ChangeBus(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        entries = new Object[size];
+        published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Publishes an event to every current subscriber, waiting while the
+     * slowest one is a full ring behind
+     * @param event The event
+     */
+    public void publish(E event) {
+        long sequence = cursor.incrementAndGet();
+        long wrapPoint = sequence - entries.length;
+        if (wrapPoint > gatingCache) {
+            long minimum;
+            int spins = 0;
+            while (wrapPoint > (minimum = minimumSequence(sequence - 1))) {
+                if (++spins < SPINS_BEFORE_PARK) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(1_000);
+                }
+            }
+            gatingCache = minimum;
+        }
+        int slot = (int) sequence & mask;
+        entries[slot] = event;
+        published.set(slot, sequence);
+        for (Subscription subscription : subscriptions) {
+            if (subscription.parked) {
+                LockSupport.unpark(subscription.thread);
+            }
+        }
+    }
+
+    /**
+     * Starts delivering events published from now on to a handler, on its
+     * own daemon thread
+     * @param name Name for the delivery thread
+     * @param handler Receives each batch of events in publish order; the
+     *                list is only valid during the call
+     * @return The subscription, to close when done
+     */
+    public Subscription subscribe(String name, Consumer<List<E>> handler) {
+        Subscription subscription = new Subscription(handler);
+        subscription.sequence = cursor.get();
+        subscriptions.add(subscription);
+        subscription.thread = new Thread(subscription::run, "change-bus-" + name);
+        subscription.thread.setDaemon(true);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    /**
+     * @return The number of events published so far
+     */
+    public long getPublishedCount() {
+        return cursor.get() + 1;
+    }
+
+    private long minimumSequence(long fallback) {
+        long minimum = fallback;
+        for (Subscription subscription : subscriptions) {
+            minimum = Math.min(minimum, subscription.sequence);
+        }
+        return minimum;
+    }
+
+    /**
+     * A subscriber's position in the ring and its delivery thread
+     */
+    public final class Subscription implements AutoCloseable {
+        private final Consumer<List<E>> handler;
+        private volatile long sequence;
+        private volatile boolean parked;
+        private volatile boolean closed;
+        private volatile long delivered;
+        private Thread thread;
+
+        private Subscription(Consumer<List<E>> handler) {
+            this.handler = handler;
+        }
+
+        /**
+         * @return The number of events handed to the handler so far
+         */
+        public long getDeliveredCount() {
+            return delivered;
+        }
+
+        /**
+         * @return How many published events this subscriber has yet to take
+         */
+        public long getLag() {
+            return Math.max(0, cursor.get() - sequence);
+        }
+
+        /**
+         * Stops delivery and releases any publisher waiting on this subscriber
+         */
+        @Override
+        public void close() {
+            closed = true;
+            subscriptions.remove(this);
+            LockSupport.unpark(thread);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void run() {
+            List<E> batch = new ArrayList<>();
+            long next = sequence + 1;
+            int idle = 0;
+            while (!closed) {
+                while (batch.size() < entries.length) {
+                    int slot = (int) next & mask;
+                    long held = published.get(slot);
+                    if (held == next) {
+                        batch.add((E) entries[slot]);
+                    } else if (held < next) {
+                        break;
+                    }
+                    // A later sequence means the slot was reused before this
+                    // subscriber was visible to its publisher; skip it
+                    next++;
+                }
+                if (batch.isEmpty()) {
+                    if (++idle < SPINS_BEFORE_PARK) {
+                        Thread.onSpinWait();
+                    } else {
+                        parked = true;
+                        if (published.get((int) next & mask) < next) {
+                            LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                        }
+                        parked = false;
+                    }
+                    continue;
+                }
+                idle = 0;
+                // Release the slots before handling so publishers can reuse them
+                sequence = next - 1;
+                try {
+                    handler.accept(batch);
+                } catch (RuntimeException e) {
+                    logger.error("Change bus subscriber failed", e);
+                }
+                delivered += batch.size();
+                batch.clear();
+            }
+        }
+    }
+}
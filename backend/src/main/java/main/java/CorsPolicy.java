@@ -0,0 +1,118 @@
+package main.java;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.server.Response;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Which browser origins may call the API, and the headers that tell them.
+ *
+ * Every header value is built once as a Jetty field already encoded to
+ * bytes, and allowed origins are looked up in a map holding the encoded
+ * Access-Control-Allow-Origin field for each, so checking and answering a
+ * request allocates nothing. Preflights are answered by the Jetty server
+ * before any routing (see {@link JettyConnectors#cors(CorsPolicy)}), with a
+ * Max-Age that lets browsers skip repeating them.
+ */
+public class CorsPolicy {
+    public static final String ALLOWED_METHODS = "GET, POST, PUT, PATCH, DELETE, OPTIONS";
+    public static final String ALLOWED_HEADERS = "Accept, Authorization, Content-Type, X-Requested-With";
+
+    private static final String ALLOW_ORIGIN = "Access-Control-Allow-Origin";
+    private static final HttpField ANY_ORIGIN = new PreEncodedHttpField(ALLOW_ORIGIN, "*");
+    private static final HttpField VARY_ORIGIN = new PreEncodedHttpField(HttpHeader.VARY, "Origin");
+    private static final HttpField METHODS = new PreEncodedHttpField("Access-Control-Allow-Methods", ALLOWED_METHODS);
+    private static final HttpField HEADERS = new PreEncodedHttpField("Access-Control-Allow-Headers", ALLOWED_HEADERS);
+
+    // Allowed origin -> its Allow-Origin field; null when every origin is allowed
+    private final Map<String, HttpField> origins;
+    private final HttpField maxAge;
+
+    /**
+     * @param allowedOrigins Origins such as "https://shop.example.com", or "*" for any
+     * @param maxAgeSeconds How long browsers may reuse a preflight answer
+     */
+    public CorsPolicy(Collection<String> allowedOrigins, int maxAgeSeconds) {
+        Map<String, HttpField> fields = new HashMap<>();
+        boolean any = false;
+        for (String origin : allowedOrigins) {
+            String normalized = normalize(origin);
+            if (normalized.equals("*")) {
+                any = true;
+            } else if (!normalized.isEmpty()) {
+                fields.put(normalized, new PreEncodedHttpField(ALLOW_ORIGIN, normalized));
+            }
+        }
+        this.origins = any ? null : fields;
+        this.maxAge = new PreEncodedHttpField("Access-Control-Max-Age", Integer.toString(maxAgeSeconds));
+    }
+
+    /**
+     * Answers a CORS preflight: 204 with the allowed methods, headers and
+     * Max-Age for an allowed origin, 403 otherwise
+     * @return false if the request is not a preflight, leaving it untouched
+     */
+    public boolean preflight(HttpServletRequest request, HttpServletResponse response) {
+        String origin = request.getHeader("Origin");
+        if (origin == null || request.getHeader("Access-Control-Request-Method") == null
+                || !"OPTIONS".equals(request.getMethod())) {
+            return false;
+        }
+        if (origins != null) {
+            add(response, VARY_ORIGIN);
+        }
+        HttpField allowOrigin = allowOrigin(origin);
+        if (allowOrigin == null) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return true;
+        }
+        add(response, allowOrigin);
+        add(response, METHODS);
+        add(response, HEADERS);
+        add(response, maxAge);
+        response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+        return true;
+    }
+
+    /**
+     * Adds the Allow-Origin header to an actual (non-preflight) request's
+     * response when its origin is allowed
+     */
+    public void apply(HttpServletRequest request, HttpServletResponse response) {
+        if (origins != null) {
+            // Responses differ by origin, so shared caches must key on it
+            add(response, VARY_ORIGIN);
+        }
+        String origin = request.getHeader("Origin");
+        if (origin != null) {
+            HttpField allowOrigin = allowOrigin(origin);
+            if (allowOrigin != null) {
+                add(response, allowOrigin);
+            }
+        }
+    }
+
+    private HttpField allowOrigin(String origin) {
+        return origins == null ? ANY_ORIGIN : origins.get(origin);
+    }
+
+    private static void add(HttpServletResponse response, HttpField field) {
+        if (response instanceof Response) {
+            ((Response) response).getHttpFields().add(field);
+        } else {
+            response.addHeader(field.getName(), field.getValue());
+        }
+    }
+
+    private static String normalize(String origin) {
+        String trimmed = origin.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+}
@@ -0,0 +1,262 @@
+package main.java;
+
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.AbstractHTTP2ServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.ForwardedRequestCustomizer;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.RequestLog;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.SecureRequestCustomizer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import spark.embeddedserver.jetty.JettyServerFactory;
+
+/**
+ * Builds the embedded Jetty server with a tuned connector in place of the
+ * one Spark would create.
+ *
+ * HTTP/2 is opt-in. H2C adds cleartext HTTP/2 next to HTTP/1.1 on the same
+ * port, for local use and proxies that speak it upstream; H2 serves TLS and
+ * lets clients choose h2 or http/1.1 by ALPN, which is what browsers need
+ * to fetch the catalog, categories and profile over one multiplexed
+ * connection instead of several. Values left at -1 keep Jetty's defaults.
+ *
+ * With a stop timeout, stopping the server is graceful: connectors stop
+ * accepting and requests in flight get up to the timeout to finish.
+ */
+public class JettyConnectors implements JettyServerFactory {
+    /**
+     * Protocols offered on the connector
+     */
+    public enum Protocol {
+        HTTP1,
+        H2C,
+        H2;
+
+        /**
+         * @param value A name such as "h2c", case-insensitive; null or blank for HTTP1
+         * @return The protocol
+         * @throws IllegalArgumentException if the name is unknown
+         */
+        public static Protocol parse(String value) {
+            if (value == null || value.isBlank() || value.equalsIgnoreCase("off")
+                    || value.equalsIgnoreCase("http1")) {
+                return HTTP1;
+            }
+            return valueOf(value.trim().toUpperCase());
+        }
+    }
+
+    private String host = "0.0.0.0";
+    private int port = 8080;
+    private Protocol protocol = Protocol.HTTP1;
+    private long idleTimeoutMillis = 30_000;
+    private int acceptors = -1;
+    private int selectors = -1;
+    private int outputBufferBytes = 32 * 1024;
+    private int maxConcurrentStreams = 128;
+    private String keyStorePath;
+    private String keyStorePassword;
+    private CorsPolicy cors;
+    private RequestLog requestLog;
+    private long stopTimeoutMillis;
+
+    public JettyConnectors host(String host) {
+        this.host = host;
+        return this;
+    }
+
+    public JettyConnectors port(int port) {
+        this.port = port;
+        return this;
+    }
+
+    public JettyConnectors protocol(Protocol protocol) {
+        this.protocol = protocol;
+        return this;
+    }
+
+    /**
+     * @param idleTimeoutMillis How long an idle keep-alive connection or
+     *                          HTTP/2 stream is held open
+     */
+    public JettyConnectors idleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * @param acceptors Threads accepting connections, or -1 for Jetty's choice
+     */
+    public JettyConnectors acceptors(int acceptors) {
+        this.acceptors = acceptors;
+        return this;
+    }
+
+    /**
+     * @param selectors Threads polling connections for I/O, or -1 for Jetty's choice
+     */
+    public JettyConnectors selectors(int selectors) {
+        this.selectors = selectors;
+        return this;
+    }
+
+    /**
+     * @param outputBufferBytes Response bytes buffered before a write reaches
+     *                          the network; responses that fit are sent with
+     *                          a Content-Length instead of chunked
+     */
+    public JettyConnectors outputBufferBytes(int outputBufferBytes) {
+        this.outputBufferBytes = outputBufferBytes;
+        return this;
+    }
+
+    /**
+     * @param maxConcurrentStreams Requests one HTTP/2 connection may have in flight
+     */
+    public JettyConnectors maxConcurrentStreams(int maxConcurrentStreams) {
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        return this;
+    }
+
+    /**
+     * @param path Keystore holding the TLS certificate, required for H2
+     * @param password Its password
+     */
+    public JettyConnectors keyStore(String path, String password) {
+        this.keyStorePath = path;
+        this.keyStorePassword = password;
+        return this;
+    }
+
+    /**
+     * @param cors Policy whose preflights the server answers before routing
+     */
+    public JettyConnectors cors(CorsPolicy cors) {
+        this.cors = cors;
+        return this;
+    }
+
+    /**
+     * @param requestLog Told about every request once its response is complete
+     */
+    public JettyConnectors requestLog(RequestLog requestLog) {
+        this.requestLog = requestLog;
+        return this;
+    }
+
+    /**
+     * @param stopTimeoutMillis How long stopping waits for requests in
+     *                          flight, or 0 to cut them off
+     */
+    public JettyConnectors stopTimeoutMillis(long stopTimeoutMillis) {
+        this.stopTimeoutMillis = stopTimeoutMillis;
+        return this;
+    }
+
+    @Override
+    public Server create(int maxThreads, int minThreads, int threadTimeoutMillis) {
+        // Thread pool sizing as Spark does it when threadPool() was called
+        return create(maxThreads > 0
+                ? new QueuedThreadPool(maxThreads, minThreads > 0 ? minThreads : 8,
+                        threadTimeoutMillis > 0 ? threadTimeoutMillis : 60_000)
+                : null);
+    }
+
+    @Override
+    public Server create(ThreadPool threadPool) {
+        CorsPolicy cors = this.cors;
+        boolean graceful = stopTimeoutMillis > 0;
+        Server server = new Server(threadPool) {
+            // Called for every OPTIONS request ahead of the handlers
+            @Override
+            protected void handleOptions(Request request, Response response) {
+                if (cors != null && cors.preflight(request, response)) {
+                    request.setHandled(true);
+                }
+            }
+
+            // Spark sets its handler after create(); counting its requests
+            // is what lets a graceful stop wait for those in flight
+            @Override
+            public void setHandler(Handler handler) {
+                if (graceful && !(handler instanceof StatisticsHandler)) {
+                    StatisticsHandler statistics = new StatisticsHandler();
+                    statistics.setHandler(handler);
+                    handler = statistics;
+                }
+                super.setHandler(handler);
+            }
+        };
+        if (requestLog != null) {
+            server.setRequestLog(requestLog);
+        }
+        server.setStopTimeout(stopTimeoutMillis);
+        addConnector(server);
+        return server;
+    }
+
+    /**
+     * Adds the configured connector to a server; Spark keeps connectors it
+     * finds on the server instead of creating its own
+     * @param server The server
+     * @return The connector
+     * @throws IllegalArgumentException if H2 is chosen without a keystore
+     */
+    public ServerConnector addConnector(Server server) {
+        HttpConfiguration config = new HttpConfiguration();
+        config.setSecureScheme("https");
+        config.setOutputBufferSize(outputBufferBytes);
+        // Spark trusts X-Forwarded-* by default, and the deployment sits behind a proxy
+        config.addCustomizer(new ForwardedRequestCustomizer());
+        HttpConnectionFactory http1 = new HttpConnectionFactory(config);
+
+        ConnectionFactory[] factories;
+        switch (protocol) {
+            case H2C:
+                factories = new ConnectionFactory[] {http1, tune(new HTTP2CServerConnectionFactory(config))};
+                break;
+            case H2:
+                if (keyStorePath == null || keyStorePath.isBlank()) {
+                    throw new IllegalArgumentException("HTTP/2 over TLS needs a keystore");
+                }
+                config.addCustomizer(new SecureRequestCustomizer());
+                SslContextFactory.Server tls = new SslContextFactory.Server();
+                tls.setKeyStorePath(keyStorePath);
+                tls.setKeyStorePassword(keyStorePassword);
+                tls.setCipherComparator(HTTP2Cipher.COMPARATOR);
+                ALPNServerConnectionFactory alpn = new ALPNServerConnectionFactory("h2", "http/1.1");
+                alpn.setDefaultProtocol(http1.getProtocol());
+                factories = new ConnectionFactory[] {new SslConnectionFactory(tls, alpn.getProtocol()), alpn,
+                        tune(new HTTP2ServerConnectionFactory(config)), http1};
+                break;
+            default:
+                factories = new ConnectionFactory[] {http1};
+        }
+
+        ServerConnector connector = new ServerConnector(server, acceptors, selectors, factories);
+        connector.setHost(host);
+        connector.setPort(port);
+        connector.setIdleTimeout(idleTimeoutMillis);
+        server.addConnector(connector);
+        return connector;
+    }
+
+    private AbstractHTTP2ServerConnectionFactory tune(AbstractHTTP2ServerConnectionFactory http2) {
+        http2.setMaxConcurrentStreams(maxConcurrentStreams);
+        http2.setStreamIdleTimeout(idleTimeoutMillis);
+        return http2;
+    }
+}
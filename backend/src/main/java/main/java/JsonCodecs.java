@@ -0,0 +1,357 @@
+package main.java;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import main.java.tracing.Span;
+import main.java.tracing.Tracer;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collection;
+
+/**
+ * Streaming JSON codecs for the API's own types.
+ *
+ * Product, ProductPatch, User and Response are written field by field to a
+ * JsonWriter and read token by token from a JsonReader, so the types the API
+ * handles most never go through Gson's reflective field binding and request
+ * bodies never go through a JsonElement tree. Output is identical to what
+ * reflective Gson writes for the same objects: same field names and order,
+ * nulls omitted. Other types, such as the maps and indexes some responses
+ * carry, are left to the Gson instance these adapters are registered with.
+ */
+public final class JsonCodecs {
+    private static final TypeAdapterFactory FACTORY = new TypeAdapterFactory() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            Class<? super T> raw = type.getRawType();
+            TypeAdapter<?> adapter;
+            if (raw == Product.class) {
+                adapter = PRODUCT;
+            } else if (raw == ProductPatch.class) {
+                adapter = PRODUCT_PATCH;
+            } else if (raw == User.class) {
+                adapter = USER;
+            } else if (raw == Response.class) {
+                adapter = new ResponseAdapter(gson);
+            } else {
+                return null;
+            }
+            return (TypeAdapter<T>) adapter.nullSafe();
+        }
+    };
+
+    private static final TypeAdapter<Product> PRODUCT = new ProductAdapter();
+    private static final TypeAdapter<ProductPatch> PRODUCT_PATCH = new ProductPatchAdapter();
+    private static final TypeAdapter<User> USER = new UserAdapter();
+
+    private JsonCodecs() {
+        // Utility class
+    }
+
+    /**
+     * @return A Gson instance using these codecs, with default settings otherwise
+     */
+    public static Gson create() {
+        return new GsonBuilder().registerTypeAdapterFactory(FACTORY).create();
+    }
+
+    /**
+     * Reads one string field from a JSON object without building a tree,
+     * skipping everything else
+     * @param json A JSON object
+     * @param name The field to read
+     * @return Its value, or null if absent or null
+     * @throws IOException if the JSON is malformed or not an object
+     */
+    public static String readStringField(String json, String name) throws IOException {
+        try (JsonReader in = new JsonReader(new StringReader(json))) {
+            String value = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                if (!in.nextName().equals(name)) {
+                    in.skipValue();
+                } else if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    value = null;
+                } else {
+                    value = nextString(in);
+                }
+            }
+            in.endObject();
+            return value;
+        }
+    }
+
+    private static final class ProductAdapter extends TypeAdapter<Product> {
+        @Override
+        public void write(JsonWriter out, Product product) throws IOException {
+            out.beginObject();
+            writeString(out, "id", product.getId());
+            writeString(out, "name", product.getName());
+            writeString(out, "description", product.getDescription());
+            out.name("price").value(product.getPrice());
+            out.name("stock").value(product.getStock());
+            writeString(out, "category", product.getCategory());
+            writeString(out, "imageUrl", product.getImageUrl());
+            out.name("rating").value(product.getRating());
+            out.name("reviewCount").value(product.getReviewCount());
+            out.name("active").value(product.isActive());
+            out.name("createdAt").value(product.getCreatedAt());
+            out.endObject();
+        }
+
+        /**
+         * Restores the product when the JSON carries an ID and creates a new
+         * one otherwise
+         */
+        @Override
+        public Product read(JsonReader in) throws IOException {
+            String id = null;
+            String name = null;
+            String description = null;
+            double price = 0;
+            int stock = 0;
+            String category = null;
+            String imageUrl = null;
+            double rating = 0;
+            int reviewCount = 0;
+            Boolean active = null;
+            long createdAt = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                String field = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (field) {
+                    case "id": id = nextString(in); break;
+                    case "name": name = nextString(in); break;
+                    case "description": description = nextString(in); break;
+                    case "price": price = in.nextDouble(); break;
+                    case "stock": stock = in.nextInt(); break;
+                    case "category": category = nextString(in); break;
+                    case "imageUrl": imageUrl = nextString(in); break;
+                    case "rating": rating = in.nextDouble(); break;
+                    case "reviewCount": reviewCount = in.nextInt(); break;
+                    case "active": active = nextBoolean(in); break;
+                    case "createdAt": createdAt = in.nextLong(); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            if (id != null) {
+                return Product.restore(id, name, description, price, stock, category, imageUrl, rating, reviewCount,
+                        active != null && active, createdAt);
+            }
+            Product product = new Product(name, description, price, stock, category);
+            if (imageUrl != null) {
+                product.setImageUrl(imageUrl);
+            }
+            if (active != null) {
+                product.setActive(active);
+            }
+            return product;
+        }
+    }
+
+    private static final class ProductPatchAdapter extends TypeAdapter<ProductPatch> {
+        @Override
+        public void write(JsonWriter out, ProductPatch patch) throws IOException {
+            out.beginObject();
+            writeString(out, "name", patch.getName());
+            writeString(out, "description", patch.getDescription());
+            if (patch.getPrice() != null) {
+                out.name("price").value(patch.getPrice());
+            }
+            if (patch.getStock() != null) {
+                out.name("stock").value(patch.getStock());
+            }
+            writeString(out, "category", patch.getCategory());
+            writeString(out, "imageUrl", patch.getImageUrl());
+            if (patch.getActive() != null) {
+                out.name("active").value(patch.getActive());
+            }
+            out.endObject();
+        }
+
+        @Override
+        @SuppressWarnings("try")
+        public ProductPatch read(JsonReader in) throws IOException {
+            try (Span span = Tracer.span("json.decode")) {
+                ProductPatch patch = new ProductPatch();
+                in.beginObject();
+                while (in.hasNext()) {
+                    String field = in.nextName();
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                        continue;
+                    }
+                    switch (field) {
+                        case "name": patch.setName(nextString(in)); break;
+                        case "description": patch.setDescription(nextString(in)); break;
+                        case "price": patch.setPrice(in.nextDouble()); break;
+                        case "stock": patch.setStock(in.nextInt()); break;
+                        case "category": patch.setCategory(nextString(in)); break;
+                        case "imageUrl": patch.setImageUrl(nextString(in)); break;
+                        case "active": patch.setActive(nextBoolean(in)); break;
+                        default: in.skipValue();
+                    }
+                }
+                in.endObject();
+                return patch;
+            }
+        }
+    }
+
+    private static final class UserAdapter extends TypeAdapter<User> {
+        @Override
+        public void write(JsonWriter out, User user) throws IOException {
+            out.beginObject();
+            writeString(out, "username", user.getUsername());
+            writeString(out, "password", user.getPassword());
+            writeString(out, "email", user.getEmail());
+            out.name("isActive").value(user.isActive());
+            out.endObject();
+        }
+
+        /**
+         * @throws IllegalArgumentException if the username, password or email is invalid
+         */
+        @Override
+        @SuppressWarnings("try")
+        public User read(JsonReader in) throws IOException {
+            try (Span span = Tracer.span("json.decode")) {
+                String username = null;
+                String password = null;
+                String email = null;
+                Boolean active = null;
+                in.beginObject();
+                while (in.hasNext()) {
+                    String field = in.nextName();
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                        continue;
+                    }
+                    switch (field) {
+                        case "username": username = nextString(in); break;
+                        case "password": password = nextString(in); break;
+                        case "email": email = nextString(in); break;
+                        case "isActive": active = nextBoolean(in); break;
+                        default: in.skipValue();
+                    }
+                }
+                in.endObject();
+                User user = new User(username, password);
+                if (email != null && !email.trim().isEmpty()) {
+                    user.setEmail(email);
+                }
+                if (active != null) {
+                    user.setActive(active);
+                }
+                return user;
+            }
+        }
+    }
+
+    /**
+     * Writes the envelope directly, along with products and collections of
+     * products, and hands any other data to whatever adapter Gson has for its
+     * runtime type, as reflective Gson does for an Object field. Data read
+     * back is left in Gson's generic form.
+     */
+    private static final class ResponseAdapter extends TypeAdapter<Response> {
+        private final Gson gson;
+
+        ResponseAdapter(Gson gson) {
+            this.gson = gson;
+        }
+
+        @Override
+        @SuppressWarnings({"unchecked", "try"})
+        public void write(JsonWriter out, Response response) throws IOException {
+            try (Span span = Tracer.span("json.encode")) {
+                out.beginObject();
+                out.name("success").value(response.isSuccess());
+                writeString(out, "message", response.getMessage());
+                Object data = response.getData();
+                if (data != null) {
+                    out.name("data");
+                    if (data instanceof Product) {
+                        PRODUCT.write(out, (Product) data);
+                    } else if (data instanceof Collection && allProducts((Collection<?>) data)) {
+                        // Gson's collection adapter would look up an adapter per element
+                        out.beginArray();
+                        for (Object product : (Collection<?>) data) {
+                            PRODUCT.write(out, (Product) product);
+                        }
+                        out.endArray();
+                    } else {
+                        ((TypeAdapter<Object>) gson.getAdapter(data.getClass())).write(out, data);
+                    }
+                }
+                out.endObject();
+            }
+        }
+
+        private static boolean allProducts(Collection<?> items) {
+            for (Object item : items) {
+                if (!(item instanceof Product)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Response read(JsonReader in) throws IOException {
+            boolean success = false;
+            String message = null;
+            Object data = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String field = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (field) {
+                    case "success": success = nextBoolean(in); break;
+                    case "message": message = nextString(in); break;
+                    case "data": data = gson.getAdapter(Object.class).read(in); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return new Response(success, message, data);
+        }
+    }
+
+    private static void writeString(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    /**
+     * Reads a string, accepting numbers and booleans as Gson's own string adapter does
+     */
+    private static String nextString(JsonReader in) throws IOException {
+        return in.peek() == JsonToken.BOOLEAN ? Boolean.toString(in.nextBoolean()) : in.nextString();
+    }
+
+    /**
+     * Reads a boolean, accepting "true" and "false" strings as Gson's own boolean adapter does
+     */
+    private static boolean nextBoolean(JsonReader in) throws IOException {
+        return in.peek() == JsonToken.STRING ? Boolean.parseBoolean(in.nextString()) : in.nextBoolean();
+    }
+}
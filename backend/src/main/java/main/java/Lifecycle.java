@@ -0,0 +1,193 @@
+package main.java;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Tracks whether the server is starting, serving, draining or stopped,
+ * decides readiness and runs the shutdown sequence.
+ *
+ * Liveness only says the process still serves requests. Readiness also
+ * needs startup to have finished, every held gate (such as a warm-up) to be
+ * released and every registered dependency check to pass, so a load
+ * balancer only routes to an instance that can answer. On shutdown the
+ * instance first reports not ready and keeps serving for a delay, giving
+ * load balancers time to stop routing to it, then runs its steps in
+ * registration order: stop taking requests and drain the ones in flight,
+ * flush pending writes, close pools.
+ */
+public class Lifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(Lifecycle.class);
+
+    public enum State {
+        STARTING,
+        READY,
+        DRAINING,
+        STOPPED
+    }
+
+    /**
+     * A dependency readiness depends on; it must be cheap, as probes call it often
+     */
+    @FunctionalInterface
+    public interface Check {
+        boolean isUp() throws Exception;
+    }
+
+    /**
+     * One step of the shutdown sequence
+     */
+    @FunctionalInterface
+    public interface Step {
+        void run() throws Exception;
+    }
+
+    private volatile State state = State.STARTING;
+    private final Map<String, Check> checks = new ConcurrentSkipListMap<>();
+    private final Set<String> gates = new ConcurrentSkipListSet<>();
+    private final List<String> stepNames = new ArrayList<>();
+    private final List<Step> steps = new ArrayList<>();
+    private final long drainDelayMillis;
+
+    /**
+     * @param drainDelayMillis How long to keep serving while reporting not
+     *                         ready before the shutdown steps run
+     */
+    public Lifecycle(long drainDelayMillis) {
+        this.drainDelayMillis = drainDelayMillis;
+    }
+
+    /**
+     * @param name Shown in the readiness report, e.g. "database"
+     */
+    public void addCheck(String name, Check check) {
+        checks.put(name, check);
+    }
+
+    /**
+     * Keeps the server not ready until {@link #release} is called with the same name
+     */
+    public void hold(String gate) {
+        gates.add(gate);
+    }
+
+    public void release(String gate) {
+        gates.remove(gate);
+    }
+
+    /**
+     * Adds a step to the end of the shutdown sequence
+     */
+    public synchronized void onShutdown(String name, Step step) {
+        stepNames.add(name);
+        steps.add(step);
+    }
+
+    /**
+     * Marks startup as finished; the server is ready once gates and checks allow
+     */
+    public void started() {
+        if (state == State.STARTING) {
+            state = State.READY;
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isLive() {
+        return state != State.STOPPED;
+    }
+
+    public boolean isDraining() {
+        return state == State.DRAINING;
+    }
+
+    public boolean isReady() {
+        if (state != State.READY || !gates.isEmpty()) {
+            return false;
+        }
+        for (Check check : checks.values()) {
+            if (!isUp(check)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The state, then "pending" for each held gate and "up" or
+     *         "down" for each check, by name, e.g. {state=READY, warmup=pending, catalogStore=up}
+     */
+    public Map<String, String> report() {
+        Map<String, String> report = new LinkedHashMap<>();
+        report.put("state", state.name());
+        for (String gate : gates) {
+            report.put(gate, "pending");
+        }
+        for (Map.Entry<String, Check> check : checks.entrySet()) {
+            report.put(check.getKey(), isUp(check.getValue()) ? "up" : "down");
+        }
+        return report;
+    }
+
+    /**
+     * Reports not ready, waits the drain delay, then runs every shutdown
+     * step in order; a failing step is logged and the rest still run.
+     * Only the first call does anything.
+     */
+    public void shutdown() {
+        List<String> names;
+        List<Step> sequence;
+        synchronized (this) {
+            if (state == State.DRAINING || state == State.STOPPED) {
+                return;
+            }
+            state = State.DRAINING;
+            names = new ArrayList<>(stepNames);
+            sequence = new ArrayList<>(steps);
+        }
+        logger.info("Shutting down, draining for {} ms", drainDelayMillis);
+        if (drainDelayMillis > 0) {
+            try {
+                Thread.sleep(drainDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (int i = 0; i < sequence.size(); i++) {
+            long start = System.nanoTime();
+            try {
+                sequence.get(i).run();
+                logger.info("Shutdown step {} done in {} ms", names.get(i), (System.nanoTime() - start) / 1_000_000);
+            } catch (Exception e) {
+                logger.error("Shutdown step {} failed", names.get(i), e);
+            }
+        }
+        state = State.STOPPED;
+    }
+
+    /**
+     * Runs {@link #shutdown} when the JVM is asked to exit, e.g. on SIGTERM
+     */
+    public void installShutdownHook() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "shutdown"));
+    }
+
+    private static boolean isUp(Check check) {
+        try {
+            return check.isUp();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package main.java;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Salted PBKDF2 password hashes, for credentials that leave memory such as
+ * persisted users. Encoded as pbkdf2-sha256$iterations$salt$hash with the
+ * salt and hash in Base64, so the work factor can be raised without
+ * breaking hashes already stored.
+ */
+public final class PasswordHash {
+    private static final String SCHEME = "pbkdf2-sha256";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    // OWASP's recommended work factor for PBKDF2-HMAC-SHA256
+    private static final int ITERATIONS = 600_000;
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BYTES = 32;
+    private static final SecureRandom random = new SecureRandom();
+
+    private PasswordHash() {
+        // Utility class
+    }
+
+    /**
+     * @return The encoded hash of a password with a fresh random salt
+     */
+    public static String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return SCHEME + "$" + ITERATIONS + "$" + base64.encodeToString(salt) + "$"
+                + base64.encodeToString(derive(password, salt, ITERATIONS, HASH_BYTES));
+    }
+
+    /**
+     * @param password The password to check
+     * @param encoded A value produced by {@link #hash}
+     * @return Whether the password matches; false for a malformed hash
+     */
+    public static boolean verify(String password, String encoded) {
+        if (password == null || !isEncoded(encoded)) {
+            return false;
+        }
+        String[] parts = encoded.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        try {
+            int iterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            return iterations > 0 && expected.length > 0
+                    && MessageDigest.isEqual(expected, derive(password, salt, iterations, expected.length));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return Whether a value is in the format {@link #hash} produces
+     */
+    public static boolean isEncoded(String value) {
+        return value != null && value.startsWith(SCHEME + "$");
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations, int bytes) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, bytes * 8);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
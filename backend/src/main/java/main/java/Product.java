@@ -1,5 +1,8 @@
 package main.java;
 
+import main.java.catalog.CategoryRegistry;
+import main.java.catalog.TextNormalizer;
+
 import java.util.Objects;
 import java.util.UUID;
 
@@ -18,6 +21,11 @@ public class Product {
     private double rating;
     private int reviewCount;
     private boolean active;
+    private final long createdAt;
+
+    // Precomputed match keys, kept out of JSON and refreshed by the setters
+    private transient String searchText;
+    private transient int categoryId;
 
     /**
      * Creates a new product with the given details.
@@ -46,6 +54,41 @@ public class Product {
         this.active = true;
         this.rating = 0.0;
         this.reviewCount = 0;
+        this.createdAt = System.currentTimeMillis();
+        refreshSearchText();
+        this.categoryId = CategoryRegistry.register(this.category);
+    }
+
+    private Product(String id, String name, String description, double price, int stock, String category,
+                    String imageUrl, double rating, int reviewCount, boolean active, long createdAt) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.price = price;
+        this.stock = stock;
+        this.category = category;
+        this.imageUrl = imageUrl;
+        this.rating = rating;
+        this.reviewCount = reviewCount;
+        this.active = active;
+        this.createdAt = createdAt;
+        refreshSearchText();
+        this.categoryId = CategoryRegistry.register(category);
+    }
+
+    /**
+     * Recreates a previously persisted product with its original ID and state.
+     * Used when loading snapshots and replaying the change log; values are
+     * trusted as they were validated when first written.
+     */
+    public static Product restore(String id, String name, String description, double price, int stock,
+                                  String category, String imageUrl, double rating, int reviewCount, boolean active,
+                                  long createdAt) {
+        if (id == null) {
+            throw new IllegalArgumentException("Product ID cannot be null");
+        }
+        return new Product(id, name, description, price, stock, category, imageUrl, rating, reviewCount, active,
+                createdAt);
     }
 
     // Getters
@@ -89,16 +132,49 @@ public class Product {
         return active;
     }
 
+    /**
+     * @return When the product was created, in epoch milliseconds
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Gets the lowercased, accent-folded name and description for substring
+     * matching. Computed on create and update so matching allocates nothing.
+     * @return The normalized search text
+     */
+    public String getSearchText() {
+        if (searchText == null) {
+            // Instances built by reflection (e.g. Gson) skip the constructor
+            refreshSearchText();
+        }
+        return searchText;
+    }
+
+    /**
+     * Gets the canonical id of this product's category
+     * @return The id from {@link CategoryRegistry}
+     */
+    public int getCategoryId() {
+        if (categoryId == CategoryRegistry.UNKNOWN) {
+            categoryId = CategoryRegistry.register(category);
+        }
+        return categoryId;
+    }
+
     // Setters with validation
     public void setName(String name) {
         if (name == null || name.trim().isEmpty()) {
             throw new IllegalArgumentException("Product name cannot be empty");
         }
         this.name = name.trim();
+        refreshSearchText();
     }
 
     public void setDescription(String description) {
         this.description = description != null ? description.trim() : "";
+        refreshSearchText();
     }
 
     public void setPrice(double price) {
@@ -117,6 +193,7 @@ public class Product {
 
     public void setCategory(String category) {
         this.category = category != null ? category.trim() : "Uncategorized";
+        this.categoryId = CategoryRegistry.register(this.category);
     }
 
     public void setImageUrl(String imageUrl) {
@@ -178,6 +255,11 @@ public class Product {
         this.rating = totalRating / this.reviewCount;
     }
 
+    private void refreshSearchText() {
+        // NUL separator keeps a query from matching across name and description
+        this.searchText = TextNormalizer.normalize(name) + '\u0000' + TextNormalizer.normalize(description);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
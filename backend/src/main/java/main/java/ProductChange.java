@@ -0,0 +1,102 @@
+package main.java;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Describes one committed product mutation: which product, which fields
+ * changed and what they held before, so indexes and caches can update just
+ * what the change touched.
+ */
+public final class ProductChange {
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    /**
+     * Product fields a change can touch. RATING covers the review count too.
+     */
+    public enum Field { NAME, DESCRIPTION, PRICE, STOCK, CATEGORY, IMAGE_URL, RATING, ACTIVE }
+
+    private final Type type;
+    private final String productId;
+    private final Product product;
+    private final Set<Field> fields;
+    private final Map<Field, Object> previous;
+
+    private ProductChange(Type type, Product product, Set<Field> fields, Map<Field, Object> previous) {
+        this.type = type;
+        this.productId = product.getId();
+        this.product = product;
+        this.fields = Collections.unmodifiableSet(fields);
+        this.previous = Collections.unmodifiableMap(previous);
+    }
+
+    static ProductChange created(Product product) {
+        return new ProductChange(Type.CREATED, product, EnumSet.allOf(Field.class), new EnumMap<>(Field.class));
+    }
+
+    /**
+     * @param previous The prior value of each changed field
+     */
+    static ProductChange updated(Product product, Map<Field, Object> previous) {
+        return new ProductChange(Type.UPDATED, product, EnumSet.copyOf(previous.keySet()), new EnumMap<>(previous));
+    }
+
+    static ProductChange updated(Product product, Field field, Object previousValue) {
+        Map<Field, Object> previous = new EnumMap<>(Field.class);
+        previous.put(field, previousValue);
+        return updated(product, previous);
+    }
+
+    static ProductChange deleted(Product product) {
+        return new ProductChange(Type.DELETED, product, EnumSet.allOf(Field.class), new EnumMap<>(Field.class));
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    /**
+     * @return The product after the change, or as it was when deleted
+     */
+    public Product getProduct() {
+        return product;
+    }
+
+    /**
+     * @return The changed fields; every field for creations and deletions
+     */
+    public Set<Field> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return Whether any of the given fields changed
+     */
+    public boolean changed(Field... any) {
+        for (Field field : any) {
+            if (fields.contains(field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The field's value before an update, or null if it did not change
+     */
+    public Object previousValue(Field field) {
+        return previous.get(field);
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + productId + " " + fields;
+    }
+}
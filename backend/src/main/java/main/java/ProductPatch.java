@@ -0,0 +1,131 @@
+package main.java;
+
+/**
+ * A partial product update: null fields are left unchanged.
+ * Deserialized straight from PATCH/PUT request bodies, so only the fields a
+ * client sends are applied.
+ */
+public class ProductPatch {
+    private String name;
+    private String description;
+    private Double price;
+    private Integer stock;
+    private String category;
+    private String imageUrl;
+    private Boolean active;
+
+    /**
+     * Builds a patch that overwrites every editable field of a product with
+     * the values of another, keeping the image when the other has none
+     * @param product The product whose values to copy
+     * @return The patch
+     */
+    public static ProductPatch from(Product product) {
+        ProductPatch patch = new ProductPatch();
+        patch.name = product.getName();
+        patch.description = product.getDescription();
+        patch.price = product.getPrice();
+        patch.stock = product.getStock();
+        patch.category = product.getCategory();
+        patch.imageUrl = product.getImageUrl();
+        return patch;
+    }
+
+    /**
+     * Checks every submitted value up front, so applying the patch cannot
+     * fail halfway
+     * @throws IllegalArgumentException if a submitted value is invalid
+     */
+    public void validate() {
+        if (name != null && name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Product name cannot be empty");
+        }
+        if (price != null && (price < 0 || price.isNaN())) {
+            throw new IllegalArgumentException("Price cannot be negative");
+        }
+        if (stock != null && stock < 0) {
+            throw new IllegalArgumentException("Stock cannot be negative");
+        }
+    }
+
+    /**
+     * Creates a new product from the submitted values, e.g. for a POST body
+     * @return The product, with a fresh ID
+     * @throws IllegalArgumentException if a submitted value is invalid
+     */
+    public Product toNewProduct() {
+        validate();
+        Product product = new Product(name, description, price != null ? price : 0.0,
+                stock != null ? stock : 0, category);
+        if (imageUrl != null) {
+            product.setImageUrl(imageUrl);
+        }
+        if (active != null) {
+            product.setActive(active);
+        }
+        return product;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ProductPatch setName(String name) {
+        this.name = name;
+        return this;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public ProductPatch setDescription(String description) {
+        this.description = description;
+        return this;
+    }
+
+    public Double getPrice() {
+        return price;
+    }
+
+    public ProductPatch setPrice(Double price) {
+        this.price = price;
+        return this;
+    }
+
+    public Integer getStock() {
+        return stock;
+    }
+
+    public ProductPatch setStock(Integer stock) {
+        this.stock = stock;
+        return this;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public ProductPatch setCategory(String category) {
+        this.category = category;
+        return this;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public ProductPatch setImageUrl(String imageUrl) {
+        this.imageUrl = imageUrl;
+        return this;
+    }
+
+    public Boolean getActive() {
+        return active;
+    }
+
+    public ProductPatch setActive(Boolean active) {
+        this.active = active;
+        return this;
+    }
+}
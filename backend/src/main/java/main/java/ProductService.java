@@ -1,6 +1,25 @@
 package main.java;
 
+import main.java.catalog.CategoryRegistry;
+import main.java.catalog.FacetIndex;
+import main.java.catalog.MapProductStore;
+import main.java.catalog.ProductStore;
+import main.java.catalog.SearchIndex;
+import main.java.catalog.SortIndex;
+import main.java.catalog.SuggestIndex;
+import main.java.catalog.TextNormalizer;
+import main.java.persistence.ChangeLog;
+import main.java.profiling.CatalogMutationEvent;
+import main.java.tracing.Span;
+import main.java.tracing.Tracer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -8,10 +27,38 @@ import java.util.stream.Collectors;
  * Handles product CRUD operations, inventory management, and product search.
  */
 public class ProductService {
-    private final Map<String, Product> products = new HashMap<>();
-    private final Map<String, List<String>> categoryIndex = new HashMap<>();
+    private static final Logger logger = LoggerFactory.getLogger(ProductService.class);
+    private static final int CHANGE_BUS_CAPACITY = 8192;
+
+    private final ProductStore products;
+    // Category id to the ids of its products, active or not
+    private final Map<Integer, Set<String>> categoryIndex = new ConcurrentHashMap<>();
+    private final SearchIndex searchIndex = new SearchIndex();
+    private final SuggestIndex suggestIndex = new SuggestIndex();
+    private final FacetIndex facetIndex = new FacetIndex();
+    private final SortIndex sortIndex = new SortIndex();
+    private volatile ChangeLog changeLog;
+    private final List<Consumer<ProductChange>> listeners = new CopyOnWriteArrayList<>();
+    private final ChangeBus<ProductChange> changeBus = new ChangeBus<>(CHANGE_BUS_CAPACITY);
+    // Bumped on every change, so anything derived from the catalog can tell it is stale
+    private final AtomicLong generation = new AtomicLong();
+    // Striped locks serializing writes to the same product
+    private final Object[] locks = new Object[64];
 
     public ProductService() {
+        this(new MapProductStore());
+    }
+
+    /**
+     * Creates a service over the given storage, e.g. a
+     * {@link main.java.catalog.ColumnarProductStore} for very large catalogs
+     * @param store The product storage
+     */
+    public ProductService(ProductStore store) {
+        this.products = store;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
         // Initialize with some sample data
         initializeSampleData();
     }
@@ -20,10 +67,13 @@ public class ProductService {
      * Retrieves all active products
      * @return List of active products
      */
+    @SuppressWarnings("try")
     public List<Product> getAllProducts() {
-        return products.values().stream()
-                .filter(Product::isActive)
-                .collect(Collectors.toList());
+        try (Span span = Tracer.span("ProductService.getAllProducts")) {
+            return products.values().stream()
+                    .filter(Product::isActive)
+                    .collect(Collectors.toList());
+        }
     }
 
     /**
@@ -40,9 +90,12 @@ public class ProductService {
      * @return The product, or null if not found
      */
     public Product getProductById(String id) {
-        if (id == null) return null;
-        Product product = products.get(id);
-        return (product != null && product.isActive()) ? product : null;
+        try (Span span = Tracer.span("ProductService.getProductById")) {
+            span.attribute("id", id);
+            if (id == null) return null;
+            Product product = products.get(id);
+            return (product != null && product.isActive()) ? product : null;
+        }
     }
 
     /**
@@ -51,44 +104,100 @@ public class ProductService {
      * @return The added product with generated ID
      * @throws IllegalArgumentException if product is null or invalid
      */
+    @SuppressWarnings("try")
     public Product addProduct(Product product) {
-        if (product == null) {
-            throw new IllegalArgumentException("Product cannot be null");
+        try (Span span = Tracer.span("ProductService.addProduct")) {
+            if (product == null) {
+                throw new IllegalArgumentException("Product cannot be null");
+            }
+            if (product.getId() == null) {
+                throw new IllegalArgumentException("Product has no ID; create it through its constructor");
+            }
+
+            synchronized (lockFor(product.getId())) {
+                products.put(product.getId(), product);
+                publish(ProductChange.created(product));
+            }
+            return product;
         }
-        
-        products.put(product.getId(), product);
-        
-        // Update category index
-        categoryIndex.computeIfAbsent(product.getCategory().toLowerCase(), k -> new ArrayList<>())
-                   .add(product.getId());
-        
-        return product;
     }
 
     /**
-     * Updates an existing product
+     * Replaces a product's name, description, price, stock and category
+     * (and image, if given), keeping its ID, rating and status
      * @param id The ID of the product to update
      * @param updatedProduct The updated product data
      * @return The updated product, or null if not found
+     * @throws IllegalArgumentException if a new value is invalid
      */
     public Product updateProduct(String id, Product updatedProduct) {
-        if (id == null || updatedProduct == null || !products.containsKey(id)) {
+        if (updatedProduct == null) {
             return null;
         }
-        
-        Product existing = products.get(id);
-        
-        // Preserve the ID and update other fields
-        updatedProduct = new Product(
-            updatedProduct.getName(),
-            updatedProduct.getDescription(),
-            updatedProduct.getPrice(),
-            updatedProduct.getStock(),
-            updatedProduct.getCategory()
-        );
-        
-        products.put(id, updatedProduct);
-        return updatedProduct;
+        return patchProduct(id, ProductPatch.from(updatedProduct));
+    }
+
+    /**
+     * Changes only the submitted fields of a product. The patch is validated
+     * and applied to a copy that then replaces the stored product, so readers
+     * see the product either wholly before or wholly after the patch, and
+     * concurrent writes to the same product are serialized. Emits one change
+     * event naming exactly the fields whose values changed.
+     * @param id The ID of the product to update
+     * @param patch The fields to change
+     * @return The updated product, or null if not found
+     * @throws IllegalArgumentException if a submitted value is invalid
+     */
+    public Product patchProduct(String id, ProductPatch patch) {
+        try (Span span = Tracer.span("ProductService.patchProduct")) {
+            span.attribute("id", id);
+            if (id == null || patch == null) {
+                return null;
+            }
+            patch.validate();
+
+            synchronized (lockFor(id)) {
+                Product current = products.get(id);
+                if (current == null) {
+                    return null;
+                }
+                Product product = copyOf(current);
+                Map<ProductChange.Field, Object> previous = new EnumMap<>(ProductChange.Field.class);
+                if (patch.getName() != null && !patch.getName().trim().equals(product.getName())) {
+                    previous.put(ProductChange.Field.NAME, product.getName());
+                    product.setName(patch.getName());
+                }
+                if (patch.getDescription() != null && !patch.getDescription().trim().equals(product.getDescription())) {
+                    previous.put(ProductChange.Field.DESCRIPTION, product.getDescription());
+                    product.setDescription(patch.getDescription());
+                }
+                if (patch.getPrice() != null && patch.getPrice() != product.getPrice()) {
+                    previous.put(ProductChange.Field.PRICE, product.getPrice());
+                    product.setPrice(patch.getPrice());
+                }
+                if (patch.getStock() != null && patch.getStock() != product.getStock()) {
+                    previous.put(ProductChange.Field.STOCK, product.getStock());
+                    product.setStock(patch.getStock());
+                }
+                if (patch.getCategory() != null && !patch.getCategory().trim().equals(product.getCategory())) {
+                    previous.put(ProductChange.Field.CATEGORY, product.getCategory());
+                    product.setCategory(patch.getCategory());
+                }
+                if (patch.getImageUrl() != null && !patch.getImageUrl().equals(product.getImageUrl())) {
+                    previous.put(ProductChange.Field.IMAGE_URL, product.getImageUrl());
+                    product.setImageUrl(patch.getImageUrl());
+                }
+                if (patch.getActive() != null && patch.getActive() != product.isActive()) {
+                    previous.put(ProductChange.Field.ACTIVE, product.isActive());
+                    product.setActive(patch.getActive());
+                }
+                if (previous.isEmpty()) {
+                    return current;
+                }
+                saveChange(ProductChange.updated(product, previous));
+                return product;
+            }
+        }
     }
 
     /**
@@ -98,12 +207,18 @@ public class ProductService {
      * @return true if updated successfully, false if product not found
      */
     public boolean updateProductStock(String id, int newStock) {
-        Product product = getProductById(id);
-        if (product != null) {
-            product.setStock(newStock);
-            return true;
+        if (id == null) return false;
+        synchronized (lockFor(id)) {
+            Product current = getProductById(id);
+            if (current != null) {
+                Product product = copyOf(current);
+                int previous = product.getStock();
+                product.setStock(newStock);
+                saveChange(ProductChange.updated(product, ProductChange.Field.STOCK, previous));
+                return true;
+            }
+            return false;
         }
-        return false;
     }
 
     /**
@@ -113,11 +228,18 @@ public class ProductService {
      * @return The new stock level, or -1 if product not found
      */
     public int addStock(String id, int quantity) {
-        Product product = getProductById(id);
-        if (product != null) {
-            return product.addStock(quantity);
+        if (id == null) return -1;
+        synchronized (lockFor(id)) {
+            Product current = getProductById(id);
+            if (current != null) {
+                Product product = copyOf(current);
+                int previous = product.getStock();
+                int stock = product.addStock(quantity);
+                saveChange(ProductChange.updated(product, ProductChange.Field.STOCK, previous));
+                return stock;
+            }
+            return -1;
         }
-        return -1;
     }
 
     /**
@@ -127,15 +249,23 @@ public class ProductService {
      * @return The new stock level, or -1 if product not found or insufficient stock
      */
     public int removeStock(String id, int quantity) {
-        Product product = getProductById(id);
-        if (product != null) {
-            try {
-                return product.removeStock(quantity);
-            } catch (IllegalStateException | IllegalArgumentException e) {
-                return -1;
+        if (id == null) return -1;
+        synchronized (lockFor(id)) {
+            Product current = getProductById(id);
+            if (current != null) {
+                Product product = copyOf(current);
+                int previous = product.getStock();
+                int stock;
+                try {
+                    stock = product.removeStock(quantity);
+                } catch (IllegalStateException | IllegalArgumentException e) {
+                    return -1;
+                }
+                saveChange(ProductChange.updated(product, ProductChange.Field.STOCK, previous));
+                return stock;
             }
+            return -1;
         }
-        return -1;
     }
 
     /**
@@ -144,12 +274,17 @@ public class ProductService {
      * @return true if deactivated, false if not found
      */
     public boolean deactivateProduct(String id) {
-        Product product = getProductById(id);
-        if (product != null) {
-            product.setActive(false);
-            return true;
+        if (id == null) return false;
+        synchronized (lockFor(id)) {
+            Product current = getProductById(id);
+            if (current != null) {
+                Product product = copyOf(current);
+                product.setActive(false);
+                saveChange(ProductChange.updated(product, ProductChange.Field.ACTIVE, true));
+                return true;
+            }
+            return false;
         }
-        return false;
     }
 
     /**
@@ -158,12 +293,19 @@ public class ProductService {
      * @return true if reactivated, false if not found
      */
     public boolean reactivateProduct(String id) {
-        Product product = products.get(id); // Include inactive products
-        if (product != null) {
-            product.setActive(true);
-            return true;
+        if (id == null) return false;
+        synchronized (lockFor(id)) {
+            Product current = products.get(id); // Include inactive products
+            if (current != null) {
+                if (!current.isActive()) {
+                    Product product = copyOf(current);
+                    product.setActive(true);
+                    saveChange(ProductChange.updated(product, ProductChange.Field.ACTIVE, false));
+                }
+                return true;
+            }
+            return false;
         }
-        return false;
     }
 
     /**
@@ -172,20 +314,18 @@ public class ProductService {
      * @return true if deleted, false if not found
      */
     public boolean deleteProduct(String id) {
-        Product product = products.get(id); // Include inactive products
-        if (product != null) {
-            // Remove from category index
-            String category = product.getCategory().toLowerCase();
-            if (categoryIndex.containsKey(category)) {
-                categoryIndex.get(category).remove(id);
-                if (categoryIndex.get(category).isEmpty()) {
-                    categoryIndex.remove(category);
+        try (Span span = Tracer.span("ProductService.deleteProduct")) {
+            span.attribute("id", id);
+            if (id == null) return false;
+            synchronized (lockFor(id)) {
+                Product product = products.remove(id); // Include inactive products
+                if (product != null) {
+                    publish(ProductChange.deleted(product));
+                    return true;
                 }
+                return false;
             }
-            products.remove(id);
-            return true;
         }
-        return false;
     }
 
     /**
@@ -194,16 +334,107 @@ public class ProductService {
      * @return List of matching products
      */
     public List<Product> searchProducts(String query) {
-        if (query == null || query.trim().isEmpty()) {
-            return getAllProducts();
-        }
+        try (Span span = Tracer.span("ProductService.searchProducts")) {
+            span.attribute("query", query);
+            if (query == null || query.trim().isEmpty()) {
+                return getAllProducts();
+            }
         
-        String searchTerm = query.toLowerCase();
-        return products.values().stream()
-                .filter(Product::isActive)
-                .filter(p -> p.getName().toLowerCase().contains(searchTerm) || 
-                            p.getDescription().toLowerCase().contains(searchTerm))
-                .collect(Collectors.toList());
+            // Normalize the query once; products carry precomputed search text
+            String searchTerm = TextNormalizer.normalize(query);
+            return products.values().stream()
+                    .filter(Product::isActive)
+                    .filter(p -> p.getSearchText().contains(searchTerm))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Searches products by relevance, tolerating small typos
+     * @param query Free-text query matched against names and descriptions
+     * @param limit Maximum number of results
+     * @return Matching active products, best match first
+     */
+    public List<Product> searchRanked(String query, int limit) {
+        try (Span span = Tracer.span("ProductService.searchRanked")) {
+            span.attribute("query", query);
+            if (query == null || query.trim().isEmpty()) {
+                return new ArrayList<>();
+            }
+            List<Product> results = new ArrayList<>();
+            for (String id : searchIndex.search(query, limit)) {
+                Product product = products.get(id);
+                if (product != null && product.isActive()) {
+                    results.add(product);
+                }
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Suggests categories and product names for a partially typed query
+     * @param prefix The text typed so far
+     * @param limit Maximum number of suggestions
+     * @return Matching categories first, then products by rating
+     */
+    public List<SuggestIndex.Suggestion> suggest(String prefix, int limit) {
+        try (Span span = Tracer.span("ProductService.suggest")) {
+            span.attribute("prefix", prefix);
+            return suggestIndex.suggest(prefix, limit);
+        }
+    }
+
+    /**
+     * Filters active products by category, price, stock and rating, with
+     * facet counts for narrowing the filter further
+     * @param filter The filters to apply
+     * @param offset Number of matches to skip
+     * @param limit Maximum number of products to return
+     * @return A page of matching products with the total and facet counts
+     */
+    @SuppressWarnings("try")
+    public FacetIndex.Result<Product> filterProducts(FacetIndex.Filter filter, int offset, int limit) {
+        try (Span span = Tracer.span("ProductService.filterProducts")) {
+            return facetIndex.query(filter, offset, limit).map(this::getProductById);
+        }
+    }
+
+    /**
+     * Lists active products ordered by a field, optionally within a value
+     * range and a category, without sorting the catalog
+     * @param field The field to order and bound by
+     * @param min Lowest value, inclusive, or null for no lower bound
+     * @param max Highest value, inclusive, or null for no upper bound
+     * @param descending Whether to list highest values first
+     * @param category The category to keep, or null for all
+     * @param offset Number of matches to skip
+     * @param limit Maximum number of products to return
+     * @return The requested page of products
+     */
+    public List<Product> getProductsSorted(SortIndex.Field field, Double min, Double max, boolean descending,
+                                           String category, int offset, int limit) {
+        try (Span span = Tracer.span("ProductService.getProductsSorted")) {
+            span.attribute("field", field);
+            List<String> ids;
+            if (category == null || category.trim().isEmpty()) {
+                ids = sortIndex.range(field, min, max, descending, offset, limit);
+            } else {
+                int categoryId = CategoryRegistry.lookup(category);
+                ids = sortIndex.range(field, min, max, descending, offset, limit, id -> {
+                    Product product = products.get(id);
+                    return product != null && product.getCategoryId() == categoryId;
+                });
+            }
+            List<Product> page = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                Product product = getProductById(id);
+                if (product != null) {
+                    page.add(product);
+                }
+            }
+            return page;
+        }
     }
 
     /**
@@ -212,25 +443,41 @@ public class ProductService {
      * @return List of products in the category
      */
     public List<Product> getProductsByCategory(String category) {
-        if (category == null || category.trim().isEmpty()) {
-            return getAllProducts();
-        }
+        try (Span span = Tracer.span("ProductService.getProductsByCategory")) {
+            span.attribute("category", category);
+            if (category == null || category.trim().isEmpty()) {
+                return getAllProducts();
+            }
         
-        return products.values().stream()
-                .filter(Product::isActive)
-                .filter(p -> p.getCategory().equalsIgnoreCase(category))
-                .collect(Collectors.toList());
+            int categoryId = CategoryRegistry.lookup(category);
+            Set<String> ids = categoryIndex.get(categoryId);
+            if (ids == null) {
+                return new ArrayList<>();
+            }
+            List<Product> result = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                Product product = products.get(id);
+                // The index is updated just after the store, so recheck the category
+                if (product != null && product.isActive() && product.getCategoryId() == categoryId) {
+                    result.add(product);
+                }
+            }
+            return result;
+        }
     }
 
     /**
      * Gets all available categories
      * @return Set of category names
      */
+    @SuppressWarnings("try")
     public Set<String> getAllCategories() {
-        return products.values().stream()
-                .filter(Product::isActive)
-                .map(Product::getCategory)
-                .collect(Collectors.toSet());
+        try (Span span = Tracer.span("ProductService.getAllCategories")) {
+            return products.values().stream()
+                    .filter(Product::isActive)
+                    .map(Product::getCategory)
+                    .collect(Collectors.toSet());
+        }
     }
 
     /**
@@ -253,20 +500,249 @@ public class ProductService {
      * @return true if successful, false if product not found or invalid rating
      */
     public boolean addProductReview(String productId, double rating) {
-        try {
-            Product product = getProductById(productId);
-            if (product != null) {
-                product.addRating(rating);
-                return true;
+        if (productId == null) return false;
+        synchronized (lockFor(productId)) {
+            try {
+                Product current = getProductById(productId);
+                if (current != null) {
+                    Product product = copyOf(current);
+                    double previous = product.getRating();
+                    product.addRating(rating);
+                    saveChange(ProductChange.updated(product, ProductChange.Field.RATING, previous));
+                    return true;
+                }
+            } catch (IllegalArgumentException e) {
+                return false;
             }
-        } catch (IllegalArgumentException e) {
             return false;
         }
-        return false;
+    }
+
+    /**
+     * Registers a listener for every committed product change. Listeners run
+     * on the writing thread, after the service's own indexes are updated;
+     * views that can lag behind should subscribe to {@link #getChangeBus()}
+     * instead.
+     * @param listener The listener
+     */
+    public void addChangeListener(Consumer<ProductChange> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(Consumer<ProductChange> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return A number that changes whenever any product does, for caching
+     *         responses derived from the catalog
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * @return The bus that delivers every committed product change, in
+     *         commit order, to asynchronous subscribers
+     */
+    public ChangeBus<ProductChange> getChangeBus() {
+        return changeBus;
+    }
+
+    /**
+     * Attaches a change log that records every mutation from now on. A
+     * mutation whose log write fails still takes effect in memory and is
+     * still published; the mutator then throws the log's exception.
+     * @param changeLog The log, or null to stop logging
+     */
+    public void setChangeLog(ChangeLog changeLog) {
+        this.changeLog = changeLog;
+    }
+
+    /**
+     * Replaces the whole catalog with previously persisted products.
+     * Used when warm-starting from a snapshot; nothing is logged.
+     * @param restored The products to load
+     */
+    public void restoreProducts(Collection<Product> restored) {
+        products.clear();
+        categoryIndex.clear();
+        searchIndex.clear();
+        suggestIndex.clear();
+        facetIndex.clear();
+        sortIndex.clear();
+        for (Product product : restored) {
+            applyProduct(product);
+        }
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Inserts or replaces a product by ID, keeping the category index in step.
+     * Used when replaying the change log; nothing is logged.
+     * @param product The product state to apply
+     */
+    public void applyProduct(Product product) {
+        Product previous = products.put(product.getId(), product);
+        if (previous != null) {
+            removeFromCategory(previous.getCategoryId(), previous.getId());
+        }
+        addToCategory(product.getCategoryId(), product.getId());
+        updateIndexes(product.getId(), product);
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Brings the search, suggestion, facet and sort indexes in line with a
+     * product, which only lists active products
+     */
+    private void updateIndexes(String id, Product product) {
+        if (product.isActive()) {
+            searchIndex.index(id, product);
+            suggestIndex.index(id, product);
+            facetIndex.index(id, product);
+            sortIndex.index(id, product);
+        } else {
+            removeFromIndexes(id);
+        }
+    }
+
+    private void removeFromIndexes(String id) {
+        searchIndex.remove(id);
+        suggestIndex.remove(id);
+        facetIndex.remove(id);
+        sortIndex.remove(id);
+    }
+
+    /**
+     * Updates only the indexes that read the changed fields
+     */
+    private void applyToIndexes(ProductChange change) {
+        String id = change.getProductId();
+        Product product = change.getProduct();
+        switch (change.getType()) {
+            case CREATED:
+                addToCategory(product.getCategoryId(), id);
+                updateIndexes(id, product);
+                return;
+            case DELETED:
+                removeFromCategory(product.getCategoryId(), id);
+                removeFromIndexes(id);
+                return;
+            default:
+                break;
+        }
+
+        if (change.changed(ProductChange.Field.CATEGORY)) {
+            removeFromCategory(CategoryRegistry.lookup((String) change.previousValue(ProductChange.Field.CATEGORY)), id);
+            addToCategory(product.getCategoryId(), id);
+        }
+        if (change.changed(ProductChange.Field.ACTIVE) || !product.isActive()) {
+            // Inactive products are in no index; reactivated ones go back into all
+            if (change.changed(ProductChange.Field.ACTIVE)) {
+                updateIndexes(id, product);
+            }
+            return;
+        }
+        if (change.changed(ProductChange.Field.NAME, ProductChange.Field.DESCRIPTION)) {
+            searchIndex.index(id, product);
+        }
+        if (change.changed(ProductChange.Field.NAME, ProductChange.Field.CATEGORY, ProductChange.Field.RATING)) {
+            suggestIndex.index(id, product);
+        }
+        if (change.changed(ProductChange.Field.CATEGORY, ProductChange.Field.PRICE,
+                ProductChange.Field.STOCK, ProductChange.Field.RATING)) {
+            facetIndex.index(id, product);
+        }
+        if (change.changed(ProductChange.Field.PRICE, ProductChange.Field.STOCK, ProductChange.Field.RATING)) {
+            sortIndex.index(id, product);
+        }
+    }
+
+    private void addToCategory(int categoryId, String id) {
+        categoryIndex.computeIfAbsent(categoryId, k -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+
+    private void removeFromCategory(int categoryId, String id) {
+        categoryIndex.computeIfPresent(categoryId, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    /**
+     * Copies a product so a change can be made without readers of the stored
+     * instance seeing it half applied
+     */
+    private static Product copyOf(Product product) {
+        return Product.restore(product.getId(), product.getName(), product.getDescription(), product.getPrice(),
+                product.getStock(), product.getCategory(), product.getImageUrl(), product.getRating(),
+                product.getReviewCount(), product.isActive(), product.getCreatedAt());
+    }
+
+    /**
+     * Stores the changed copy of a product in place of the previous instance,
+     * then publishes the change
+     */
+    private void saveChange(ProductChange change) {
+        products.put(change.getProductId(), change.getProduct());
+        publish(change);
+    }
+
+    /**
+     * Applies a committed change to the indexes, the change log, the
+     * listeners and the change bus, in that order. Callers hold the
+     * product's lock, so changes to one product are published in order.
+     *
+     * The change is already in the store when this runs and is not undone
+     * if the change log cannot be written: readers, listeners and the bus
+     * still see it, and the log's exception is rethrown to the caller
+     * afterwards, so the change is visible but was not made durable.
+     */
+    private void publish(ProductChange change) {
+        CatalogMutationEvent event = new CatalogMutationEvent();
+        event.begin();
+        applyToIndexes(change);
+        long published = generation.incrementAndGet();
+        RuntimeException logFailure = null;
+        ChangeLog log = changeLog;
+        if (log != null) {
+            try {
+                if (change.getType() == ProductChange.Type.DELETED) {
+                    log.logProductDelete(change.getProductId());
+                } else {
+                    log.logProduct(change.getProduct());
+                }
+            } catch (RuntimeException e) {
+                logFailure = e;
+            }
+        }
+        for (Consumer<ProductChange> listener : listeners) {
+            try {
+                listener.accept(change);
+            } catch (RuntimeException e) {
+                logger.error("Product change listener failed", e);
+            }
+        }
+        changeBus.publish(change);
+        if (event.shouldCommit()) {
+            event.type = change.getType().name();
+            event.productId = change.getProductId();
+            event.fields = change.getFields().toString();
+            event.generation = published;
+            event.commit();
+        }
+        if (logFailure != null) {
+            throw logFailure;
+        }
+    }
+
+    private Object lockFor(String id) {
+        return locks[(id.hashCode() & 0x7fffffff) % locks.length];
     }
 
     private void initializeSampleData() {
-        if (products.isEmpty()) {
+        if (products.size() == 0) {
             Product product1 = new Product("Laptop", "High-performance laptop for professionals", 17999.82, 10, "Electronics");
             Product product2 = new Product("Smartphone", "Latest smartphone with advanced features", 12599.82, 25, "Electronics");
             Product product3 = new Product("Coffee Maker", "Automatic coffee maker for home use", 2699.82, 15, "Appliances");
@@ -277,11 +753,10 @@ public class ProductService {
             products.put(product3.getId(), product3);
             products.put(product4.getId(), product4);
             
-            // Update category index
-            categoryIndex.computeIfAbsent("electronics", k -> new ArrayList<>()).add(product1.getId());
-            categoryIndex.computeIfAbsent("electronics", k -> new ArrayList<>()).add(product2.getId());
-            categoryIndex.computeIfAbsent("appliances", k -> new ArrayList<>()).add(product3.getId());
-            categoryIndex.computeIfAbsent("sports", k -> new ArrayList<>()).add(product4.getId());
+            for (Product product : List.of(product1, product2, product3, product4)) {
+                addToCategory(product.getCategoryId(), product.getId());
+                updateIndexes(product.getId(), product);
+            }
         }
     }
 }
\ No newline at end of file
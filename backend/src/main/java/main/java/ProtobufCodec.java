@@ -0,0 +1,420 @@
+package main.java;
+
+import main.java.tracing.Span;
+import main.java.tracing.Tracer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Protocol Buffers encoding of product API responses, following the schema
+ * in resources/proto/catalog.proto.
+ *
+ * Written by hand against the wire format instead of generated, so it needs
+ * no runtime library and no reflection: each product is measured in one
+ * pass and then written straight into a growing byte array, strings
+ * included, without intermediate buffers. Fields holding their default
+ * value are omitted as in proto3, and unknown fields are skipped when
+ * decoding so newer servers stay readable.
+ */
+public final class ProtobufCodec {
+    public static final String CONTENT_TYPE = "application/x-protobuf";
+
+    private static final int VARINT = 0;
+    private static final int FIXED64 = 1;
+    private static final int LENGTH_DELIMITED = 2;
+    private static final int FIXED32 = 5;
+
+    private ProtobufCodec() {
+        // Utility class
+    }
+
+    /**
+     * Decides from an Accept header whether a client prefers protobuf over
+     * JSON. Wildcards count for JSON only, so browsers keep getting JSON.
+     * @param accept The Accept header, possibly null
+     * @return Whether to answer in protobuf
+     */
+    public static boolean preferred(String accept) {
+        if (accept == null || !accept.contains("protobuf")) {
+            return false;
+        }
+        double protobuf = 0;
+        double json = 0;
+        int protobufAt = -1;
+        int jsonAt = -1;
+        String[] ranges = accept.split(",");
+        for (int i = 0; i < ranges.length; i++) {
+            String[] params = ranges[i].trim().split(";");
+            String type = params[0].trim().toLowerCase();
+            double q = 1;
+            for (int p = 1; p < params.length; p++) {
+                String param = params[p].trim().replace(" ", "");
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (type.equals("application/x-protobuf") || type.equals("application/protobuf")
+                    || type.equals("application/vnd.google.protobuf")) {
+                if (q > protobuf) {
+                    protobuf = q;
+                    protobufAt = i;
+                }
+            } else if (type.equals("application/json") && q > json) {
+                json = q;
+                jsonAt = i;
+            }
+        }
+        return protobuf > 0 && (protobuf > json || (protobuf == json && protobufAt < jsonAt));
+    }
+
+    /**
+     * @param response A response whose data is null, a product or a collection of products
+     * @return The encoded Response message
+     * @throws IllegalArgumentException if the data is of any other type
+     */
+    @SuppressWarnings("try")
+    public static byte[] encodeResponse(Response response) {
+        try (Span span = Tracer.span("protobuf.encode")) {
+            Object data = response.getData();
+            Writer out = new Writer(data instanceof Collection ? 64 + ((Collection<?>) data).size() * 160 : 256);
+            if (response.isSuccess()) {
+                out.tag(1, VARINT);
+                out.varint(1);
+            }
+            out.string(2, response.getMessage());
+            if (data instanceof Product) {
+                out.product(3, (Product) data);
+            } else if (data instanceof Collection) {
+                for (Object item : (Collection<?>) data) {
+                    if (!(item instanceof Product)) {
+                        throw new IllegalArgumentException("Only products can be encoded, not " + item);
+                    }
+                    out.product(4, (Product) item);
+                }
+            } else if (data != null) {
+                throw new IllegalArgumentException("Only products can be encoded, not " + data.getClass().getSimpleName());
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * @param bytes An encoded Response message
+     * @return The response, with a Product or a List of products as data
+     * @throws IllegalArgumentException if the bytes are not a valid message
+     */
+    public static Response decodeResponse(byte[] bytes) {
+        Reader in = new Reader(bytes, 0, bytes.length);
+        boolean success = false;
+        String message = "";
+        Product product = null;
+        List<Product> products = null;
+        while (in.hasMore()) {
+            int tag = in.varint32();
+            switch (tag >>> 3) {
+                case 1: success = in.varint() != 0; break;
+                case 2: message = in.string(); break;
+                case 3: product = in.product(); break;
+                case 4:
+                    if (products == null) {
+                        products = new ArrayList<>();
+                    }
+                    products.add(in.product());
+                    break;
+                default: in.skip(tag & 7);
+            }
+        }
+        return new Response(success, message, products != null ? products : product);
+    }
+
+    /**
+     * Appends protobuf fields to a growing array
+     */
+    private static final class Writer {
+        private byte[] buffer;
+        private int position;
+
+        Writer(int capacity) {
+            buffer = new byte[Math.max(16, capacity)];
+        }
+
+        void product(int field, Product product) {
+            tag(field, LENGTH_DELIMITED);
+            varint(productSize(product));
+            string(1, product.getId());
+            string(2, product.getName());
+            string(3, product.getDescription());
+            fixed64(4, product.getPrice());
+            int32(5, product.getStock());
+            string(6, product.getCategory());
+            string(7, product.getImageUrl());
+            fixed64(8, product.getRating());
+            int32(9, product.getReviewCount());
+            if (product.isActive()) {
+                tag(10, VARINT);
+                varint(1);
+            }
+            if (product.getCreatedAt() != 0) {
+                tag(11, VARINT);
+                varint(product.getCreatedAt());
+            }
+        }
+
+        static int productSize(Product product) {
+            return stringSize(1, product.getId())
+                    + stringSize(2, product.getName())
+                    + stringSize(3, product.getDescription())
+                    + (product.getPrice() != 0 ? 9 : 0)
+                    + int32Size(5, product.getStock())
+                    + stringSize(6, product.getCategory())
+                    + stringSize(7, product.getImageUrl())
+                    + (product.getRating() != 0 ? 9 : 0)
+                    + int32Size(9, product.getReviewCount())
+                    + (product.isActive() ? 2 : 0)
+                    + (product.getCreatedAt() != 0 ? 1 + varintSize(product.getCreatedAt()) : 0);
+        }
+
+        void string(int field, String value) {
+            if (value == null || value.isEmpty()) {
+                return;
+            }
+            tag(field, LENGTH_DELIMITED);
+            int length = utf8Length(value);
+            varint(length);
+            ensure(length);
+            int chars = value.length();
+            for (int i = 0; i < chars; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    buffer[position++] = (byte) c;
+                } else if (c < 0x800) {
+                    buffer[position++] = (byte) (0xC0 | c >>> 6);
+                    buffer[position++] = (byte) (0x80 | c & 0x3F);
+                } else if (Character.isHighSurrogate(c) && i + 1 < chars
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int code = Character.toCodePoint(c, value.charAt(++i));
+                    buffer[position++] = (byte) (0xF0 | code >>> 18);
+                    buffer[position++] = (byte) (0x80 | code >>> 12 & 0x3F);
+                    buffer[position++] = (byte) (0x80 | code >>> 6 & 0x3F);
+                    buffer[position++] = (byte) (0x80 | code & 0x3F);
+                } else if (Character.isSurrogate(c)) {
+                    buffer[position++] = '?'; // unpaired, as String.getBytes does
+                } else {
+                    buffer[position++] = (byte) (0xE0 | c >>> 12);
+                    buffer[position++] = (byte) (0x80 | c >>> 6 & 0x3F);
+                    buffer[position++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+        }
+
+        void fixed64(int field, double value) {
+            if (value == 0) {
+                return;
+            }
+            tag(field, FIXED64);
+            ensure(8);
+            long bits = Double.doubleToRawLongBits(value);
+            for (int i = 0; i < 8; i++) {
+                buffer[position++] = (byte) (bits >>> (i * 8));
+            }
+        }
+
+        void int32(int field, int value) {
+            if (value == 0) {
+                return;
+            }
+            tag(field, VARINT);
+            varint(value); // negative values sign-extend to ten bytes, as int32 requires
+        }
+
+        void tag(int field, int wireType) {
+            varint(field << 3 | wireType);
+        }
+
+        void varint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensure(int bytes) {
+            if (position + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(position + bytes, buffer.length * 2));
+            }
+        }
+
+        private static int stringSize(int field, String value) {
+            if (value == null || value.isEmpty()) {
+                return 0;
+            }
+            int length = utf8Length(value);
+            return varintSize(field << 3) + varintSize(length) + length;
+        }
+
+        private static int int32Size(int field, int value) {
+            return value == 0 ? 0 : varintSize(field << 3) + varintSize(value);
+        }
+
+        private static int varintSize(long value) {
+            int size = 1;
+            while ((value & ~0x7FL) != 0) {
+                value >>>= 7;
+                size++;
+            }
+            return size;
+        }
+
+        private static int utf8Length(String value) {
+            int chars = value.length();
+            int length = chars;
+            for (int i = 0; i < chars; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x800) {
+                    if (Character.isHighSurrogate(c) && i + 1 < chars && Character.isLowSurrogate(value.charAt(i + 1))) {
+                        length += 2; // four bytes for the pair
+                        i++;
+                    } else if (!Character.isSurrogate(c)) {
+                        length += 2;
+                    }
+                } else if (c >= 0x80) {
+                    length++;
+                }
+            }
+            return length;
+        }
+    }
+
+    /**
+     * Reads protobuf fields from a slice of an array
+     */
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position;
+        private final int limit;
+
+        Reader(byte[] bytes, int offset, int limit) {
+            this.bytes = bytes;
+            this.position = offset;
+            this.limit = limit;
+        }
+
+        boolean hasMore() {
+            return position < limit;
+        }
+
+        Product product() {
+            int length = length();
+            Reader in = new Reader(bytes, position, position + length);
+            position += length;
+            String id = null;
+            String name = "";
+            String description = "";
+            double price = 0;
+            int stock = 0;
+            String category = "";
+            String imageUrl = null;
+            double rating = 0;
+            int reviewCount = 0;
+            boolean active = false;
+            long createdAt = 0;
+            while (in.hasMore()) {
+                int tag = in.varint32();
+                switch (tag >>> 3) {
+                    case 1: id = in.string(); break;
+                    case 2: name = in.string(); break;
+                    case 3: description = in.string(); break;
+                    case 4: price = in.fixed64(); break;
+                    case 5: stock = in.varint32(); break;
+                    case 6: category = in.string(); break;
+                    case 7: imageUrl = in.string(); break;
+                    case 8: rating = in.fixed64(); break;
+                    case 9: reviewCount = in.varint32(); break;
+                    case 10: active = in.varint() != 0; break;
+                    case 11: createdAt = in.varint(); break;
+                    default: in.skip(tag & 7);
+                }
+            }
+            if (id == null) {
+                throw new IllegalArgumentException("Product without an ID");
+            }
+            return Product.restore(id, name, description, price, stock, category, imageUrl, rating, reviewCount,
+                    active, createdAt);
+        }
+
+        String string() {
+            int length = length();
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        double fixed64() {
+            need(8);
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits |= (bytes[position++] & 0xFFL) << (i * 8);
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        int varint32() {
+            return (int) varint();
+        }
+
+        long varint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                need(1);
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        void skip(int wireType) {
+            switch (wireType) {
+                case VARINT: varint(); break;
+                case FIXED64: need(8); position += 8; break;
+                case LENGTH_DELIMITED:
+                    int length = length();
+                    position += length;
+                    break;
+                case FIXED32: need(4); position += 4; break;
+                default: throw new IllegalArgumentException("Unsupported wire type " + wireType);
+            }
+        }
+
+        private int length() {
+            int length = varint32();
+            if (length < 0) {
+                throw new IllegalArgumentException("Negative length");
+            }
+            need(length);
+            return length;
+        }
+
+        private void need(int bytes) {
+            if (bytes > limit - position) {
+                throw new IllegalArgumentException("Truncated message");
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package main.java;
+
+import spark.route.HttpMethod;
+import spark.routematch.RouteMatch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Names a request after the Spark route that serves it, such as
+ * "GET /api/products/:id", so traces group by route instead of by URL.
+ *
+ * Spark only exposes the matched pattern inside the route itself, so the
+ * registered routes are matched again here, in registration order as Spark
+ * does: a segment starting with ':' matches any one segment and a trailing
+ * '*' matches the rest of the path.
+ */
+public class RouteTemplates {
+    private final List<Template> templates = new ArrayList<>();
+
+    /**
+     * @param routes Spark's routes, e.g. Spark.routes(); filters are skipped
+     */
+    public RouteTemplates(List<RouteMatch> routes) {
+        for (RouteMatch route : routes) {
+            HttpMethod method = route.getHttpMethod();
+            if (method == HttpMethod.before || method == HttpMethod.after || method == HttpMethod.afterafter) {
+                continue;
+            }
+            templates.add(new Template(method.name().toUpperCase(), route.getMatchUri()));
+        }
+    }
+
+    /**
+     * @param method The request method, e.g. "GET"
+     * @param path The request path, without query string
+     * @return The route's name, or null if no route matches
+     */
+    public String name(String method, String path) {
+        for (Template template : templates) {
+            if (template.method.equals(method) && template.matches(path)) {
+                return template.name;
+            }
+        }
+        return null;
+    }
+
+    private static final class Template {
+        final String method;
+        final String name;
+        final String[] segments;
+
+        Template(String method, String pattern) {
+            this.method = method;
+            this.name = method + " " + pattern;
+            this.segments = split(pattern);
+        }
+
+        boolean matches(String path) {
+            // The unmatched rest of the path is [start, end), ignoring a trailing slash
+            int start = path.startsWith("/") ? 1 : 0;
+            int end = path.length() > start && path.endsWith("/") ? path.length() - 1 : path.length();
+            for (int i = 0; i < segments.length; i++) {
+                String segment = segments[i];
+                if (segment.equals("*") && i == segments.length - 1) {
+                    return true;
+                }
+                if (start >= end) {
+                    return false;
+                }
+                int slash = path.indexOf('/', start);
+                int segmentEnd = slash < 0 || slash > end ? end : slash;
+                boolean literal = !segment.startsWith(":") && !segment.equals("*");
+                if (segmentEnd == start || literal && (segment.length() != segmentEnd - start
+                        || !path.regionMatches(start, segment, 0, segment.length()))) {
+                    return false;
+                }
+                start = segmentEnd + 1;
+            }
+            return start >= end;
+        }
+
+        private static String[] split(String pattern) {
+            List<String> segments = new ArrayList<>();
+            for (String segment : pattern.split("/")) {
+                if (!segment.isEmpty()) {
+                    segments.add(segment);
+                }
+            }
+            return segments.toArray(new String[0]);
+        }
+    }
+}
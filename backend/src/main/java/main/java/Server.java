@@ -1,30 +1,169 @@
 package main.java;
 import static spark.Spark.*;
+import ch.qos.logback.classic.LoggerContext;
 import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import main.java.catalog.CategoryRegistry;
+import main.java.catalog.ColumnarProductStore;
+import main.java.catalog.FacetIndex;
+import main.java.catalog.SortIndex;
+import main.java.catalog.SuggestIndex;
+import main.java.persistence.CatalogStore;
+import main.java.persistence.ChangeLog;
+import main.java.profiling.FlightRecordings;
+import main.java.profiling.RouteEvent;
+import main.java.tracing.JsonSpanExporter;
+import main.java.tracing.Span;
+import main.java.tracing.Tracer;
+import main.java.util.DatabaseUtil;
+import org.slf4j.ILoggerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Main server class handling HTTP requests and business logic
  */
 public class Server {
-    private static final Gson gson = new Gson();
+    private static final Logger logger = LoggerFactory.getLogger(Server.class);
+    private static final Gson gson = JsonCodecs.create();
     private static UserService userService;
     private static ProductService productService;
     private static final Map<String, String> sessionTokens = new HashMap<>();
+    private static CatalogStore catalogStore;
+    private static StockStream stockStream;
+    private static final ResponseCache responseCache = new ResponseCache(256);
+    private static CorsPolicy corsPolicy;
+    private static AccessLog accessLog;
+    private static volatile RouteTemplates routeTemplates;
+    private static final FlightRecordings flightRecordings = new FlightRecordings();
+    private static Lifecycle lifecycle;
+    private static volatile boolean warmingUp;
+    // Request attributes holding the request's root span and Flight Recorder event
+    private static final String TRACE_SPAN = "trace.span";
+    private static final String ROUTE_EVENT = "jfr.route";
 
 
-    private static void enableCORS() {
+    /**
+     * Opens a trace for each request, continuing the caller's traceparent,
+     * and ends it once the response is done, named after the route that
+     * served it. The trace id is returned in traceresponse and added to the
+     * request's log lines. The header is sent before the trace is kept or
+     * dropped, so its sampled flag only reflects the caller's traceparent.
+     */
+    private static void enableTracing() {
+        before((request, response) -> {
+            if (isWarmup(request)) {
+                return;
+            }
+            Span span = Tracer.startTrace(request.requestMethod(), request.headers(Tracer.TRACEPARENT));
+            if (span.isRecording()) {
+                request.attribute(TRACE_SPAN, span);
+                MDC.put("traceId", span.getTraceId());
+                response.raw().setHeader(Tracer.TRACERESPONSE, span.traceparent());
+            }
+        });
+        afterAfter((request, response) -> {
+            Span span = request.attribute(TRACE_SPAN);
+            if (span == null) {
+                return;
+            }
+            int status = response.raw().getStatus();
+            span.name(routeName(request))
+                    .attribute("http.target", request.pathInfo())
+                    .attribute("http.status", status);
+            if (status >= 500) {
+                span.error("HTTP " + status);
+            }
+            span.close();
+            Tracer.clear();
+            MDC.remove("traceId");
+        });
+    }
+
+    /**
+     * Emits a Flight Recorder RouteEvent per request while a recording
+     * collects them; otherwise the cost is one enabled check
+     */
+    private static void enableRouteEvents() {
         before((request, response) -> {
-            response.header("Access-Control-Allow-Origin", "*");
-            response.header("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-            response.header("Access-Control-Allow-Headers", "Content-Type, Authorization, X-Requested-With");
+            RouteEvent event = RouteEvent.start();
+            if (event != null) {
+                request.attribute(ROUTE_EVENT, event);
+            }
+        });
+        afterAfter((request, response) -> {
+            RouteEvent event = request.attribute(ROUTE_EVENT);
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.method = request.requestMethod();
+                    event.route = routeName(request);
+                    event.path = request.pathInfo();
+                    event.status = response.raw().getStatus();
+                    event.commit();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return The pattern of the route that served a request, such as
+     *         "GET /api/products/:id", or just the method if none did
+     */
+    private static String routeName(spark.Request request) {
+        RouteTemplates templates = routeTemplates;
+        String route = templates != null ? templates.name(request.requestMethod(), request.pathInfo()) : null;
+        return route != null ? route : request.requestMethod();
+    }
+
+    /**
+     * @return Whether a request comes from the startup warm-up, which is
+     *         neither traced nor access-logged; the header only counts
+     *         while the warm-up runs
+     */
+    private static boolean isWarmup(spark.Request request) {
+        return warmingUp && request.headers(Warmup.HEADER) != null;
+    }
+
+    /**
+     * Gives each request an id that its log lines carry and that is echoed
+     * in X-Request-Id; Jetty writes the access log line when it completes
+     */
+    private static void enableRequestIds() {
+        before((request, response) -> {
+            accessLog.begin(request.raw(), response.raw());
+            if (isWarmup(request)) {
+                request.raw().setAttribute(AccessLog.UNLOGGED, Boolean.TRUE);
+            }
         });
+        afterAfter((request, response) -> AccessLog.end());
+    }
+
+    /**
+     * Adds Access-Control-Allow-Origin for allowed origins. Preflights are
+     * answered by Jetty before routing (see configureJetty), so only plain
+     * OPTIONS requests reach the route below.
+     */
+    private static void enableCORS() {
+        before((request, response) -> corsPolicy.apply(request.raw(), response.raw()));
 
         options("/*", (request, response) -> {
             response.status(200);
@@ -32,21 +171,35 @@ public class Server {
         });
     }
 
+    /**
+     * Gzips responses of at least ResponseCache.MIN_COMPRESS_BYTES for clients
+     * that accept it. Spark compresses the body on write once the header is
+     * set; cached bodies are sent already compressed by sendCached.
+     */
+    private static void enableCompression() {
+        after((request, response) -> {
+            String body = response.body();
+            if (body == null || body.length() < ResponseCache.MIN_COMPRESS_BYTES
+                    || response.raw().isCommitted() || response.raw().containsHeader("Content-Encoding")) {
+                return;
+            }
+            response.raw().addHeader("Vary", "Accept-Encoding");
+            if (ResponseCache.acceptsGzip(request.headers("Accept-Encoding"))) {
+                response.header("Content-Encoding", "gzip");
+            }
+        });
+    }
+
     private static void setupAuthEndpoints() {
         // Register user
         post("/api/register", (req, res) -> {
             res.type("application/json");
             try {
-                JsonObject json = JsonParser.parseString(req.body()).getAsJsonObject();
-                String username = json.get("username").getAsString();
-                String password = json.get("password").getAsString();
-                String email = json.has("email") ? json.get("email").getAsString() : null;
-                
-                User user = new User(username, password);
-                if (email != null && !email.trim().isEmpty()) {
-                    user.setEmail(email);
+                User user = gson.fromJson(req.body(), User.class);
+                if (user == null) {
+                    return gson.toJson(new Response(false, "User data is required"));
                 }
-                boolean success = userService.register(username, password);
+                boolean success = registerHandler(userService, user);
                 
                 if (success) {
                     return gson.toJson(new Response(true, "User registered successfully", user));
@@ -62,13 +215,17 @@ public class Server {
         post("/api/login", (req, res) -> {
             res.type("application/json");
             try {
-                JsonObject json = JsonParser.parseString(req.body()).getAsJsonObject();
-                String username = json.get("username").getAsString();
-                String password = json.get("password").getAsString();
-                
-                boolean success = userService.login(username, password);
+                User credentials;
+                try {
+                    credentials = gson.fromJson(req.body(), User.class);
+                } catch (IllegalArgumentException e) {
+                    // Malformed usernames cannot belong to an account
+                    credentials = null;
+                }
+                boolean success = credentials != null && loginHandler(userService, credentials);
                 
                 if (success) {
+                    String username = credentials.getUsername();
                     // Generate session token
                     String sessionToken = generateSessionToken(username);
                     sessionTokens.put(sessionToken, username);
@@ -104,14 +261,69 @@ public class Server {
     }
 
     private static void setupProductEndpoints() {
-        // Get all products
+        // Get all products, or a sorted page with ?sort=[-]field&min=&max=
         get("/api/products", (req, res) -> {
             res.type("application/json");
             try {
-                List<Product> products = productService.getAllProducts();
-                return gson.toJson(new Response(true, "Products retrieved successfully", products));
+                if (req.queryParams("sort") == null) {
+                    return sendCached(req, res, "products", true,
+                            () -> new Response(true, "Products retrieved successfully", productService.getAllProducts()));
+                }
+                List<Product> products = sortedProducts(req, null);
+                return productResponse(req, res, new Response(true, "Products retrieved successfully", products));
             } catch (Exception e) {
-                return gson.toJson(new Response(false, "Failed to retrieve products: " + e.getMessage()));
+                return productResponse(req, res, new Response(false, "Failed to retrieve products: " + e.getMessage()));
+            }
+        });
+
+        // Live stock and price changes as Server-Sent Events; registered before /:id
+        get("/api/products/stream", (req, res) -> {
+            if (!stockStream.open(req.raw(), res.raw())) {
+                res.type("application/json");
+                res.status(503);
+                return gson.toJson(new Response(false, "Too many stream subscribers"));
+            }
+            return "";
+        });
+
+        // Typeahead suggestions; registered before /:id so "suggest" is not taken as an ID
+        get("/api/products/suggest", (req, res) -> {
+            res.type("application/json");
+            try {
+                String prefix = req.queryParams("q");
+                String limitParam = req.queryParams("limit");
+                int limit = limitParam != null
+                        ? Math.min(SuggestIndex.TOP_N, Math.max(1, Integer.parseInt(limitParam)))
+                        : SuggestIndex.TOP_N;
+                List<SuggestIndex.Suggestion> suggestions = productService.suggest(prefix, limit);
+                return gson.toJson(new Response(true, "Suggestions retrieved successfully", suggestions));
+            } catch (Exception e) {
+                return gson.toJson(new Response(false, "Failed to retrieve suggestions: " + e.getMessage()));
+            }
+        });
+
+        // Filter by category, price, stock and rating, with facet counts
+        get("/api/products/filter", (req, res) -> {
+            res.type("application/json");
+            try {
+                FacetIndex.Filter filter = new FacetIndex.Filter()
+                        .priceRange(doubleParam(req.queryParams("minPrice")), doubleParam(req.queryParams("maxPrice")))
+                        .inStockOnly(Boolean.parseBoolean(req.queryParams("inStock")))
+                        .minRating(doubleParam(req.queryParams("minRating")));
+                String[] categories = req.queryParamsValues("category");
+                if (categories != null) {
+                    for (String category : categories) {
+                        filter.category(category);
+                    }
+                }
+                String offsetParam = req.queryParams("offset");
+                String limitParam = req.queryParams("limit");
+                int offset = offsetParam != null ? Math.max(0, Integer.parseInt(offsetParam)) : 0;
+                int limit = limitParam != null ? Math.min(100, Math.max(1, Integer.parseInt(limitParam))) : 20;
+                FacetIndex.Result<Product> result = productService.filterProducts(filter, offset, limit);
+                return gson.toJson(new Response(true, "Products filtered successfully", result));
+            } catch (Exception e) {
+                return gson.toJson(new Response(false, "Failed to filter products: " + e.getMessage()));
             }
         });
 
@@ -123,24 +335,26 @@ public class Server {
                 Product product = productService.getProductById(id);
                 
                 if (product != null) {
-                    return gson.toJson(new Response(true, "Product retrieved successfully", product));
+                    return productResponse(req, res, new Response(true, "Product retrieved successfully", product));
                 } else {
-                    return gson.toJson(new Response(false, "Product not found"));
+                    return productResponse(req, res, new Response(false, "Product not found"));
                 }
             } catch (Exception e) {
-                return gson.toJson(new Response(false, "Failed to retrieve product: " + e.getMessage()));
+                return productResponse(req, res, new Response(false, "Failed to retrieve product: " + e.getMessage()));
             }
         });
 
-        // Search products
+        // Search products, ranked by relevance; a partly typed last word matches as a prefix
         get("/api/products/search/:query", (req, res) -> {
             res.type("application/json");
             try {
                 String query = req.params("query");
-                List<Product> products = productService.searchProducts(query);
-                return gson.toJson(new Response(true, "Search completed", products));
+                String limitParam = req.queryParams("limit");
+                int limit = limitParam != null ? Math.min(100, Math.max(1, Integer.parseInt(limitParam))) : 20;
+                List<Product> products = productService.searchRanked(query, limit);
+                return productResponse(req, res, new Response(true, "Search completed", products));
             } catch (Exception e) {
-                return gson.toJson(new Response(false, "Search failed: " + e.getMessage()));
+                return productResponse(req, res, new Response(false, "Search failed: " + e.getMessage()));
             }
         });
 
@@ -149,10 +363,15 @@ public class Server {
             res.type("application/json");
             try {
                 String category = req.params("category");
-                List<Product> products = productService.getProductsByCategory(category);
-                return gson.toJson(new Response(true, "Products retrieved successfully", products));
+                if (req.queryParams("sort") == null) {
+                    return sendCached(req, res, "category:" + CategoryRegistry.canonical(category), true,
+                            () -> new Response(true, "Products retrieved successfully",
+                                    productService.getProductsByCategory(category)));
+                }
+                List<Product> products = sortedProducts(req, category);
+                return productResponse(req, res, new Response(true, "Products retrieved successfully", products));
             } catch (Exception e) {
-                return gson.toJson(new Response(false, "Failed to retrieve products: " + e.getMessage()));
+                return productResponse(req, res, new Response(false, "Failed to retrieve products: " + e.getMessage()));
             }
         });
 
@@ -160,8 +379,8 @@ public class Server {
         get("/api/categories", (req, res) -> {
             res.type("application/json");
             try {
-                List<String> categories = productService.getAllCategories().stream().toList();
-                return gson.toJson(new Response(true, "Categories retrieved successfully", categories));
+                return sendCached(req, res, "categories", false, () -> new Response(true,
+                        "Categories retrieved successfully", productService.getAllCategories().stream().toList()));
             } catch (Exception e) {
                 return gson.toJson(new Response(false, "Failed to retrieve categories: " + e.getMessage()));
             }
@@ -175,35 +394,20 @@ public class Server {
                     return gson.toJson(new Response(false, "Authentication required"));
                 }
                 
-                Product product = gson.fromJson(req.body(), Product.class);
-                Product addedProduct = productService.addProduct(product);
+                ProductPatch submitted = gson.fromJson(req.body(), ProductPatch.class);
+                if (submitted == null) {
+                    return gson.toJson(new Response(false, "Product data is required"));
+                }
+                Product addedProduct = productService.addProduct(submitted.toNewProduct());
                 return gson.toJson(new Response(true, "Product added successfully", addedProduct));
             } catch (Exception e) {
                 return gson.toJson(new Response(false, "Failed to add product: " + e.getMessage()));
             }
         });
 
-        // Update product (admin only)
-        put("/api/products/:id", (req, res) -> {
-            res.type("application/json");
-            try {
-                if (!isAuthenticated(req)) {
-                    return gson.toJson(new Response(false, "Authentication required"));
-                }
-                
-                String id = req.params("id");
-                Product product = gson.fromJson(req.body(), Product.class);
-                Product updatedProduct = productService.updateProduct(id, product);
-                
-                if (updatedProduct != null) {
-                    return gson.toJson(new Response(true, "Product updated successfully", updatedProduct));
-                } else {
-                    return gson.toJson(new Response(false, "Product not found"));
-                }
-            } catch (Exception e) {
-                return gson.toJson(new Response(false, "Failed to update product: " + e.getMessage()));
-            }
-        });
+        // Update product (admin only); only the fields sent are changed
+        put("/api/products/:id", (req, res) -> patchProduct(req, res));
+        patch("/api/products/:id", (req, res) -> patchProduct(req, res));
 
         // Delete product (admin only)
         delete("/api/products/:id", (req, res) -> {
@@ -259,8 +463,7 @@ public class Server {
                     return gson.toJson(new Response(false, "Authentication required"));
                 }
                 
-                JsonObject json = JsonParser.parseString(req.body()).getAsJsonObject();
-                String newPassword = json.has("password") ? json.get("password").getAsString() : null;
+                String newPassword = JsonCodecs.readStringField(req.body(), "password");
                 
                 boolean updated = userService.updateProfile(username, newPassword);
                 
@@ -296,8 +499,81 @@ public class Server {
         });
     }
 
+    /**
+     * Flight Recorder control for operators, registered only when
+     * ADMIN_TOKEN is set and answering only "Authorization: Bearer
+     * ADMIN_TOKEN". POST /api/admin/jfr/start?settings=profile&durationSeconds=60
+     * starts a recording, GET /api/admin/jfr/dump streams what it holds so
+     * far, POST /api/admin/jfr/stop stops it and streams all of it, and
+     * GET /api/admin/jfr reports its state.
+     */
+    private static void setupAdminEndpoints() {
+        String token = System.getenv("ADMIN_TOKEN");
+        if (token == null || token.isBlank()) {
+            return;
+        }
+        byte[] expected = ("Bearer " + token.trim()).getBytes(StandardCharsets.UTF_8);
+        before("/api/admin/*", (req, res) -> {
+            String authorization = req.headers("Authorization");
+            if (authorization == null
+                    || !MessageDigest.isEqual(expected, authorization.getBytes(StandardCharsets.UTF_8))) {
+                res.type("application/json");
+                halt(401, gson.toJson(new Response(false, "Admin token required")));
+            }
+        });
+
+        get("/api/admin/jfr", (req, res) -> {
+            res.type("application/json");
+            return gson.toJson(new Response(true, "Recording: " + flightRecordings.describe()));
+        });
+
+        post("/api/admin/jfr/start", (req, res) -> {
+            res.type("application/json");
+            String settings = req.queryParams("settings");
+            String durationParam = req.queryParams("durationSeconds");
+            try {
+                flightRecordings.start(settings != null ? settings : "profile", null,
+                        durationParam != null ? Duration.ofSeconds(Long.parseLong(durationParam)) : null);
+                return gson.toJson(new Response(true, "Recording: " + flightRecordings.describe()));
+            } catch (IllegalStateException e) {
+                res.status(409);
+                return gson.toJson(new Response(false, e.getMessage()));
+            } catch (IllegalArgumentException e) {
+                res.status(400);
+                return gson.toJson(new Response(false, e.getMessage()));
+            }
+        });
+
+        get("/api/admin/jfr/dump", (req, res) -> sendRecording(res, flightRecordings.dump()));
+        post("/api/admin/jfr/stop", (req, res) -> sendRecording(res, flightRecordings.stop()));
+    }
+
+    /**
+     * Streams a recording file to the client and deletes it
+     */
+    private static String sendRecording(spark.Response res, Path file) throws IOException {
+        if (file == null) {
+            res.type("application/json");
+            res.status(404);
+            return gson.toJson(new Response(false, "No recording"));
+        }
+        try {
+            HttpServletResponse raw = res.raw();
+            raw.setContentType("application/octet-stream");
+            raw.setHeader("Content-Disposition", "attachment; filename=\"sa-deliver.jfr\"");
+            raw.setContentLengthLong(Files.size(file));
+            Files.copy(file, raw.getOutputStream());
+            raw.flushBuffer();
+            return "";
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
     private static void setupErrorHandling() {
         exception(Exception.class, (exception, request, response) -> {
+            logger.error("Unhandled exception on {} {}", request.requestMethod(), request.pathInfo(), exception);
+            Tracer.current().error(exception);
             response.type("application/json");
             response.status(500);
             response.body(gson.toJson(new Response(false, "Internal server error: " + exception.getMessage())));
@@ -325,26 +601,420 @@ public class Server {
                 productService.addProduct(product4);
             }
         } catch (Exception e) {
-            System.err.println("Failed to initialize sample data: " + e.getMessage());
+            logger.warn("Failed to initialize sample data: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Warm-starts the catalog from SNAPSHOT_DIR when set, then keeps it
+     * persisted with a write-ahead log and periodic snapshots.
+     * WAL_DURABILITY picks sync, group (default) or async commits.
+     */
+    private static void initializeCatalogStore() {
+        String snapshotDir = System.getenv("SNAPSHOT_DIR");
+        if (snapshotDir == null || snapshotDir.isBlank()) {
+            return;
         }
+        String interval = System.getenv("SNAPSHOT_INTERVAL_SECONDS");
+        String durability = System.getenv("WAL_DURABILITY");
+        try {
+            catalogStore = new CatalogStore(Paths.get(snapshotDir), productService, userService);
+            catalogStore.recover();
+            catalogStore.start(interval != null ? Long.parseLong(interval) : 300,
+                    durability != null ? ChangeLog.Durability.valueOf(durability.toUpperCase()) : ChangeLog.Durability.GROUP);
+            lifecycle.addCheck("catalogStore", catalogStore::isWritable);
+        } catch (IOException e) {
+            logger.error("Failed to initialize catalog store", e);
+        }
+    }
+
+    /**
+     * SHUTDOWN_DELAY_MILLIS (5000) is how long a stopping server keeps
+     * serving while reporting not ready, so load balancers stop routing to
+     * it first; SHUTDOWN_DRAIN_MILLIS (20000) then bounds the wait for
+     * requests in flight. Together they should fit the platform's grace
+     * period, e.g. Kubernetes' 30 seconds.
+     */
+    private static void initializeLifecycle() {
+        lifecycle = new Lifecycle(intEnv("SHUTDOWN_DELAY_MILLIS", 5000));
+        lifecycle.addCheck("database", DatabaseUtil::isAvailable);
+        if (intEnv("WARMUP_SECONDS", 20) > 0) {
+            // Released by warmUp
+            lifecycle.hold("warmup");
+        }
+    }
+
+    /**
+     * Runs on SIGTERM: close the event streams, which would otherwise hold
+     * the drain open, stop Jetty gracefully, then write the final catalog
+     * snapshot, export queued traces, close the database pools and flush
+     * the async log appender
+     */
+    private static void initializeShutdown() {
+        lifecycle.onShutdown("stockStream", stockStream::close);
+        lifecycle.onShutdown("http", () -> {
+            stop();
+            awaitStop();
+        });
+        if (catalogStore != null) {
+            lifecycle.onShutdown("catalogStore", catalogStore::close);
+        }
+        lifecycle.onShutdown("tracing", () -> Tracer.install(null));
+        lifecycle.onShutdown("database", DatabaseUtil::shutdown);
+        lifecycle.onShutdown("logging", () -> {
+            ILoggerFactory loggers = LoggerFactory.getILoggerFactory();
+            if (loggers instanceof LoggerContext) {
+                ((LoggerContext) loggers).stop();
+            }
+        });
+        lifecycle.installShutdownHook();
+    }
+
+    /**
+     * /health/live answers 200 while the process serves requests.
+     * /health/ready, and /health for platforms that probe it, answer 200
+     * once startup is done and every check passes, 503 otherwise, listing
+     * each check. While draining every response asks the client to close
+     * its connection, so keep-alive clients reconnect elsewhere.
+     */
+    private static void setupHealthEndpoints() {
+        before((request, response) -> {
+            if (lifecycle.isDraining()) {
+                response.header("Connection", "close");
+            }
+        });
+        get("/health/live", (req, res) -> {
+            res.type("application/json");
+            boolean live = lifecycle.isLive();
+            res.status(live ? 200 : 503);
+            return gson.toJson(new Response(live, live ? "Server is live" : "Server is stopped"));
+        });
+        spark.Route ready = (req, res) -> {
+            res.type("application/json");
+            boolean isReady = lifecycle.isReady();
+            res.status(isReady ? 200 : 503);
+            return gson.toJson(new Response(isReady, isReady ? "Server is running" : "Server is not ready",
+                    lifecycle.report()));
+        };
+        get("/health", ready);
+        get("/health/ready", ready);
+    }
+
+    /**
+     * Replays a mix of read requests against this server, for at most
+     * WARMUP_SECONDS (20; 0 disables) with WARMUP_CONCURRENCY (2) clients,
+     * and holds readiness until it is done, so the first real requests do
+     * not run in the interpreter. Blocks until finished.
+     */
+    private static void warmUp(int port) {
+        int seconds = intEnv("WARMUP_SECONDS", 20);
+        if (seconds <= 0) {
+            return;
+        }
+        warmingUp = true;
+        try {
+            awaitInitialization();
+            Warmup warmup = new Warmup(URI.create("http://localhost:" + port + "/"), Duration.ofSeconds(seconds),
+                    intEnv("WARMUP_CONCURRENCY", 2));
+            addWarmupRequests(warmup);
+            Warmup.Result result = warmup.run();
+            logger.info("Warm-up sent {} requests ({} failed) in {} ms, {} ms of JIT compilation, {}",
+                    result.getRequests(), result.getErrors(), result.getMillis(), result.getCompileMillis(),
+                    result.isStable() ? "settled" : "still compiling at the time limit");
+        } catch (IOException e) {
+            logger.warn("Warm-up skipped, the server is not reachable over plain HTTP on port {}: {}", port,
+                    e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            warmingUp = false;
+            lifecycle.release("warmup");
+        }
+    }
+
+    /**
+     * The routes real clients hit most, with the catalog's own ids, words
+     * and categories; only reads, so warming up changes nothing
+     */
+    private static void addWarmupRequests(Warmup warmup) {
+        warmup.get("/health/live")
+                .get("/api/products", "Accept-Encoding", "gzip")
+                .get("/api/products", "Accept", ProtobufCodec.CONTENT_TYPE)
+                .get("/api/products?sort=-price&limit=20")
+                .get("/api/products?sort=rating&min=1&max=5&offset=5")
+                .get("/api/categories")
+                .get("/api/products/filter?inStock=true&minPrice=10&maxPrice=100000")
+                .get("/api/products/filter?minRating=3&limit=50")
+                .get("/api/products/no-such-product")
+                .get("/api/profile")
+                .post("/api/login", "{\"username\":\"warmup\",\"password\":\"warmup\"}");
+        for (Product product : productService.getAllProducts().stream().limit(20).toList()) {
+            String id = encodePath(product.getId());
+            warmup.get("/api/products/" + id)
+                    .get("/api/products/" + id, "Accept", ProtobufCodec.CONTENT_TYPE);
+            String name = product.getName() != null ? product.getName().trim().toLowerCase() : "";
+            if (!name.isEmpty()) {
+                String word = name.split("\\s+")[0];
+                String prefix = word.substring(0, Math.min(3, word.length()));
+                warmup.get("/api/products/search/" + encodePath(word))
+                        .get("/api/products/search/" + encodePath(prefix))
+                        .get("/api/products/suggest?q=" + encodePath(prefix));
+            }
+        }
+        for (String category : productService.getAllCategories().stream().limit(20).toList()) {
+            String encoded = encodePath(category);
+            warmup.get("/api/products/category/" + encoded, "Accept-Encoding", "gzip")
+                    .get("/api/products/category/" + encoded + "?sort=price")
+                    .get("/api/products/filter?category=" + encoded);
+        }
+    }
+
+    private static String encodePath(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    /**
+     * Starts the stock and price event stream. SSE_TICK_MILLIS sets how often
+     * coalesced changes are pushed, SSE_MAX_CLIENTS caps subscribers and
+     * SSE_CLIENT_BUFFER_BYTES caps what a slow subscriber may fall behind by.
+     */
+    private static void initializeStockStream() {
+        stockStream = new StockStream(productService.getChangeBus(),
+                intEnv("SSE_TICK_MILLIS", 250), intEnv("SSE_MAX_CLIENTS", 10_000),
+                intEnv("SSE_CLIENT_BUFFER_BYTES", 64 * 1024));
+        stockStream.start();
+    }
+
+    /**
+     * CORS_ALLOWED_ORIGINS lists the origins allowed to call the API,
+     * comma-separated, or * (default) for any. CORS_MAX_AGE_SECONDS is how
+     * long browsers reuse a preflight answer; Chromium caps it at 7200.
+     */
+    private static void initializeCorsPolicy() {
+        String origins = System.getenv("CORS_ALLOWED_ORIGINS");
+        corsPolicy = new CorsPolicy(List.of((origins != null && !origins.isBlank() ? origins : "*").split(",")),
+                intEnv("CORS_MAX_AGE_SECONDS", 7200));
     }
 
+    /**
+     * ACCESS_LOG_SAMPLE_RATE is the fraction of requests written to the
+     * access log (default 1); ACCESS_LOG_ROUTE_SAMPLE_RATES overrides it by
+     * path prefix, e.g. "/api/products=0.1,/health=0" (default
+     * "/health=0.01", as health checks dominate). Server errors and
+     * requests slower than ACCESS_LOG_SLOW_MILLIS (1000) are always logged.
+     */
+    private static void initializeAccessLog() {
+        String routeRates = System.getenv("ACCESS_LOG_ROUTE_SAMPLE_RATES");
+        accessLog = new AccessLog(AccessLog.parseRates(routeRates != null ? routeRates : "/health=0.01"),
+                doubleEnv("ACCESS_LOG_SAMPLE_RATE", 1.0), intEnv("ACCESS_LOG_SLOW_MILLIS", 1000));
+    }
+
+    /**
+     * Traces are kept when they fail or take TRACE_SLOW_MILLIS (500) or
+     * more, plus a TRACE_SAMPLE_RATE fraction of the rest (default 0), and
+     * written as JSON lines to TRACE_FILE, or stdout when unset.
+     * TRACING=off records nothing.
+     */
+    private static void initializeTracing() {
+        if ("off".equalsIgnoreCase(System.getenv("TRACING"))) {
+            return;
+        }
+        try {
+            String file = System.getenv("TRACE_FILE");
+            JsonSpanExporter exporter = file != null && !file.isBlank()
+                    ? JsonSpanExporter.toFile(Paths.get(file))
+                    : JsonSpanExporter.toStdout();
+            Tracer.install(new Tracer(exporter, intEnv("TRACE_SLOW_MILLIS", 500),
+                    doubleEnv("TRACE_SAMPLE_RATE", 0), intEnv("TRACE_QUEUE_SIZE", 1024)));
+        } catch (IOException e) {
+            logger.error("Failed to open trace file, tracing is off", e);
+        }
+    }
+
+    /**
+     * JFR_CONTINUOUS=true keeps a "default" Flight Recorder recording of the
+     * last JFR_MAX_AGE_MINUTES (10) running from startup, for dumping through
+     * the admin endpoints after an incident
+     */
+    private static void initializeFlightRecorder() {
+        if (!Boolean.parseBoolean(System.getenv("JFR_CONTINUOUS"))) {
+            return;
+        }
+        try {
+            flightRecordings.start("default", Duration.ofMinutes(intEnv("JFR_MAX_AGE_MINUTES", 10)), null);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to start continuous recording", e);
+        }
+    }
+
+    /**
+     * Replaces Spark's Jetty connector with one tuned from the environment.
+     * HTTP2 picks http1 (default), h2c, or h2 over TLS with TLS_KEYSTORE and
+     * TLS_KEYSTORE_PASSWORD. JETTY_IDLE_TIMEOUT_MILLIS, JETTY_ACCEPTORS,
+     * JETTY_SELECTORS, JETTY_OUTPUT_BUFFER_BYTES and
+     * HTTP2_MAX_CONCURRENT_STREAMS tune it. Must run before the first route.
+     */
+    private static void configureJetty(int port) {
+        JettyConnectors connectors = new JettyConnectors()
+                .port(port)
+                .protocol(JettyConnectors.Protocol.parse(System.getenv("HTTP2")))
+                .keyStore(System.getenv("TLS_KEYSTORE"), System.getenv("TLS_KEYSTORE_PASSWORD"))
+                .idleTimeoutMillis(intEnv("JETTY_IDLE_TIMEOUT_MILLIS", 30_000))
+                .acceptors(intEnv("JETTY_ACCEPTORS", -1))
+                .selectors(intEnv("JETTY_SELECTORS", -1))
+                .outputBufferBytes(intEnv("JETTY_OUTPUT_BUFFER_BYTES", 32 * 1024))
+                .maxConcurrentStreams(intEnv("HTTP2_MAX_CONCURRENT_STREAMS", 128))
+                .cors(corsPolicy)
+                .requestLog(accessLog)
+                .stopTimeoutMillis(intEnv("SHUTDOWN_DRAIN_MILLIS", 20_000));
+        EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY, new EmbeddedJettyFactory(connectors));
+    }
+
+    /**
+     * Serves the frontend packaged under public/ on the classpath from this
+     * origin, so its API calls are same-origin and skip CORS preflights
+     */
+    private static void initializeStaticAssets() {
+        try {
+            StaticAssets assets = StaticAssets.load("public");
+            if (assets == null) {
+                return;
+            }
+            spark.Route serve = (req, res) -> assets.serve(req.raw(), res.raw(), req.uri()) ? "" : null;
+            get("/", serve);
+            get("/index.html", serve);
+            get(StaticAssets.PREFIX + "*", serve);
+        } catch (IOException e) {
+            logger.error("Failed to load frontend assets", e);
+        }
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isBlank() ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+
+    private static double doubleEnv(String name, double defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isBlank() ? Double.parseDouble(value.trim()) : defaultValue;
+    }
+
+    @SuppressWarnings("try")
     private static boolean isAuthenticated(spark.Request req) {
-        String authHeader = req.headers("Authorization");
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            String sessionToken = authHeader.substring(7);
-            return sessionTokens.containsKey(sessionToken);
+        try (Span span = Tracer.span("session.lookup")) {
+            String authHeader = req.headers("Authorization");
+            if (authHeader != null && authHeader.startsWith("Bearer ")) {
+                String sessionToken = authHeader.substring(7);
+                return sessionTokens.containsKey(sessionToken);
+            }
+            return false;
         }
-        return false;
     }
 
+    @SuppressWarnings("try")
     private static String getUsernameFromRequest(spark.Request req) {
-        String authHeader = req.headers("Authorization");
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            String sessionToken = authHeader.substring(7);
-            return sessionTokens.get(sessionToken);
+        try (Span span = Tracer.span("session.lookup")) {
+            String authHeader = req.headers("Authorization");
+            if (authHeader != null && authHeader.startsWith("Bearer ")) {
+                String sessionToken = authHeader.substring(7);
+                return sessionTokens.get(sessionToken);
+            }
+            return null;
         }
-        return null;
+    }
+
+    /**
+     * Applies the JSON body of a PUT or PATCH request as a partial update
+     */
+    private static String patchProduct(spark.Request req, spark.Response res) {
+        res.type("application/json");
+        try {
+            if (!isAuthenticated(req)) {
+                return gson.toJson(new Response(false, "Authentication required"));
+            }
+
+            String id = req.params("id");
+            ProductPatch patch = gson.fromJson(req.body(), ProductPatch.class);
+            if (patch == null) {
+                return gson.toJson(new Response(false, "Product data is required"));
+            }
+            Product updatedProduct = productService.patchProduct(id, patch);
+
+            if (updatedProduct != null) {
+                return gson.toJson(new Response(true, "Product updated successfully", updatedProduct));
+            } else {
+                return gson.toJson(new Response(false, "Product not found"));
+            }
+        } catch (Exception e) {
+            return gson.toJson(new Response(false, "Failed to update product: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Writes a catalog response rendered at most once per catalog generation
+     * and format, gzip-encoded when the client accepts it
+     * @param products Whether the data is products, which may be sent as protobuf
+     * @return An empty body, as the response is already sent
+     */
+    private static String sendCached(spark.Request req, spark.Response res, String key, boolean products,
+                                     Supplier<Response> response) throws IOException {
+        boolean protobuf = products && ProtobufCodec.preferred(req.headers("Accept"));
+        ResponseCache.Entry entry = protobuf
+                ? responseCache.getBytes(key + ":protobuf", productService.getGeneration(),
+                        () -> ProtobufCodec.encodeResponse(response.get()))
+                : responseCache.get(key, productService.getGeneration(), () -> gson.toJson(response.get()));
+        HttpServletResponse raw = res.raw();
+        byte[] bytes = entry.getBody();
+        if (entry.getGzipBody() != null) {
+            raw.addHeader("Vary", "Accept, Accept-Encoding");
+            if (ResponseCache.acceptsGzip(req.headers("Accept-Encoding"))) {
+                raw.setHeader("Content-Encoding", "gzip");
+                bytes = entry.getGzipBody();
+            }
+        } else {
+            raw.addHeader("Vary", "Accept");
+        }
+        raw.setContentType(protobuf ? ProtobufCodec.CONTENT_TYPE : "application/json");
+        raw.setContentLength(bytes.length);
+        raw.getOutputStream().write(bytes);
+        raw.flushBuffer();
+        return "";
+    }
+
+    /**
+     * Encodes a product route's response in protobuf when the Accept header
+     * prefers it, JSON otherwise
+     */
+    private static Object productResponse(spark.Request req, spark.Response res, Response response) {
+        res.header("Vary", "Accept");
+        if (ProtobufCodec.preferred(req.headers("Accept"))) {
+            res.type(ProtobufCodec.CONTENT_TYPE);
+            return ProtobufCodec.encodeResponse(response);
+        }
+        return gson.toJson(response);
+    }
+
+    /**
+     * Reads sort=field or sort=-field (descending), min, max, offset and
+     * limit, with min and max bounding the sort field
+     */
+    private static List<Product> sortedProducts(spark.Request req, String category) {
+        String sort = req.queryParams("sort");
+        boolean descending = sort.startsWith("-");
+        SortIndex.Field field = SortIndex.Field.parse(descending ? sort.substring(1) : sort);
+        if (field == null) {
+            throw new IllegalArgumentException("Unknown sort field: " + sort);
+        }
+        String offsetParam = req.queryParams("offset");
+        String limitParam = req.queryParams("limit");
+        int offset = offsetParam != null ? Math.max(0, Integer.parseInt(offsetParam)) : 0;
+        int limit = limitParam != null ? Math.min(100, Math.max(1, Integer.parseInt(limitParam))) : 20;
+        return productService.getProductsSorted(field, doubleParam(req.queryParams("min")),
+                doubleParam(req.queryParams("max")), descending, category, offset, limit);
+    }
+
+    private static Double doubleParam(String value) {
+        return value != null && !value.isEmpty() ? Double.valueOf(value) : null;
     }
 
     private static String generateSessionToken(String username) {
@@ -385,22 +1055,39 @@ public class Server {
         } else {
             port(8080); // Default port for local development
         }
+        initializeCorsPolicy();
+        initializeAccessLog();
+        initializeTracing();
+        initializeFlightRecorder();
+        initializeLifecycle();
+        configureJetty(port != null ? Integer.parseInt(port) : 8080);
 
         // Initialize services
         userService = new UserService();
-        productService = new ProductService();
+        // CATALOG_STORE=columnar keeps products in compact primitive columns
+        productService = "columnar".equalsIgnoreCase(System.getenv("CATALOG_STORE"))
+                ? new ProductService(new ColumnarProductStore())
+                : new ProductService();
 
+        // Probes answer 503 until startup below is done
+        setupHealthEndpoints();
+        enableTracing();
+        enableRouteEvents();
+        enableRequestIds();
         // Enable CORS for frontend integration
         enableCORS();
+        enableCompression();
+        
+        // Restore the catalog from the last snapshot, if configured
+        initializeCatalogStore();
         
         // Initialize database with sample data
         initializeSampleData();
 
-        // Health check
-        get("/health", (req, res) -> {
-            res.type("application/json");
-            return gson.toJson(new Response(true, "Server is running"));
-        });
+        initializeStockStream();
+
+        // The frontend, when packaged with the server
+        initializeStaticAssets();
 
         // Authentication endpoints
         setupAuthEndpoints();
@@ -410,11 +1097,27 @@ public class Server {
         
         // User profile endpoints
         setupUserEndpoints();
+
+        // Flight Recorder control, when ADMIN_TOKEN is set
+        setupAdminEndpoints();
         
         // Error handling
         setupErrorHandling();
+        routeTemplates = new RouteTemplates(routes());
+        initializeShutdown();
+        lifecycle.started();
 
         // Start server
-        System.out.println("SA-Deliver server started on port " + (port != null ? port : "8080"));
+        logger.info("SA-Deliver server started on port {}", port != null ? port : "8080");
+
+        // Ready once the JIT has compiled the hot paths
+        warmUp(port != null ? Integer.parseInt(port) : 8080);
+
+        // EXIT_AFTER_WARMUP=true ends a training run, such as the cds build
+        // profile's, once startup and the request mix have loaded every
+        // class real traffic needs; shutdown runs as on SIGTERM
+        if (Boolean.parseBoolean(System.getenv("EXIT_AFTER_WARMUP"))) {
+            System.exit(0);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,210 @@
+package main.java;
+
+import org.eclipse.jetty.server.HttpOutput;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+
+/**
+ * The frontend, served by the API server from the classpath so pages and
+ * API calls share one origin and authenticated calls need no CORS preflight.
+ *
+ * Everything is prepared once when loaded: each file index.html references
+ * is renamed after a hash of its content, the page is rewritten to point at
+ * the new names, and every file is gzip-compressed at the highest level,
+ * which costs nothing per request. Hashed files never change under their
+ * name and are cached by browsers for a year without revalidation; the page
+ * itself is revalidated by ETag. Bodies sit in read-only direct buffers that
+ * Jetty writes to the socket without copying them into its own buffer.
+ */
+public class StaticAssets {
+    public static final String PREFIX = "/static/";
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "no-cache";
+    // Local stylesheet and script references; absolute URLs and anchors are left alone
+    private static final Pattern REFERENCE = Pattern.compile("(href|src)=\"([A-Za-z0-9_./-]+\\.(?:css|js))\"");
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "html", "text/html; charset=utf-8",
+            "css", "text/css; charset=utf-8",
+            "js", "application/javascript; charset=utf-8");
+
+    private final Map<String, Asset> assets = new HashMap<>();
+
+    private StaticAssets() {
+    }
+
+    /**
+     * Loads index.html and the files it references from a classpath directory
+     * @param root The directory, e.g. "public"
+     * @return The assets, or null if the directory has no index.html
+     * @throws IOException if a referenced file is missing or unreadable
+     */
+    public static StaticAssets load(String root) throws IOException {
+        byte[] page = read(root + "/index.html");
+        if (page == null) {
+            return null;
+        }
+        StaticAssets assets = new StaticAssets();
+        Matcher matcher = REFERENCE.matcher(new String(page, StandardCharsets.UTF_8));
+        StringBuilder rewritten = new StringBuilder();
+        while (matcher.find()) {
+            String name = matcher.group(2).startsWith("./") ? matcher.group(2).substring(2) : matcher.group(2);
+            byte[] content = read(root + "/" + name);
+            if (content == null) {
+                throw new IOException("index.html references missing file " + name);
+            }
+            String hash = hash(content);
+            int dot = name.lastIndexOf('.');
+            String hashedPath = PREFIX + name.substring(0, dot) + "." + hash + name.substring(dot);
+            Asset asset = new Asset(content, contentType(name), hash, IMMUTABLE);
+            assets.assets.put(hashedPath, asset);
+            // The plain name stays available for pages cached before a deploy
+            assets.assets.put(PREFIX + name, asset.withCacheControl(REVALIDATE));
+            matcher.appendReplacement(rewritten, matcher.group(1) + "=\"" + hashedPath + "\"");
+        }
+        matcher.appendTail(rewritten);
+        // Tells app.js to call the API on this origin
+        String html = rewritten.toString().replace("</head>", "  <meta name=\"api-base\" content=\"/api\" />\n  </head>");
+        byte[] index = html.getBytes(StandardCharsets.UTF_8);
+        Asset indexAsset = new Asset(index, CONTENT_TYPES.get("html"), hash(index), REVALIDATE);
+        assets.assets.put("/", indexAsset);
+        assets.assets.put("/index.html", indexAsset);
+        return assets;
+    }
+
+    /**
+     * Sends the asset at a path, gzip-encoded when accepted, or 304 when the
+     * client's copy is current
+     * @param path A request path such as "/" or "/static/app.0123456789.js"
+     * @return false if there is no asset at the path, leaving the response untouched
+     */
+    public boolean serve(HttpServletRequest request, HttpServletResponse response, String path) throws IOException {
+        Asset asset = assets.get(path);
+        if (asset == null) {
+            return false;
+        }
+        boolean gzip = ResponseCache.acceptsGzip(request.getHeader("Accept-Encoding"));
+        String etag = gzip ? asset.gzipEtag : asset.etag;
+        response.setHeader("Cache-Control", asset.cacheControl);
+        response.setHeader("ETag", etag);
+        response.addHeader("Vary", "Accept-Encoding");
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setContentType(asset.contentType);
+        if (matches(request.getHeader("If-None-Match"), asset)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            response.flushBuffer();
+            return true;
+        }
+        ByteBuffer body = gzip ? asset.gzipBody : asset.body;
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentLength(body.remaining());
+        if ("HEAD".equals(request.getMethod())) {
+            response.flushBuffer();
+            return true;
+        }
+        ServletOutputStream output = response.getOutputStream();
+        if (output instanceof HttpOutput) {
+            // Written from the shared buffer straight to the connection
+            ((HttpOutput) output).sendContent(body.duplicate());
+        } else {
+            byte[] bytes = new byte[body.remaining()];
+            body.duplicate().get(bytes);
+            output.write(bytes);
+            response.flushBuffer();
+        }
+        return true;
+    }
+
+    private static boolean matches(String ifNoneMatch, Asset asset) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            String value = tag.trim();
+            if (value.equals("*") || value.equals(asset.etag) || value.equals(asset.gzipEtag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] read(String resource) throws IOException {
+        try (InputStream in = StaticAssets.class.getClassLoader().getResourceAsStream(resource)) {
+            return in != null ? in.readAllBytes() : null;
+        }
+    }
+
+    private static String contentType(String name) {
+        String type = CONTENT_TYPES.get(name.substring(name.lastIndexOf('.') + 1));
+        return type != null ? type : "application/octet-stream";
+    }
+
+    private static String hash(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 5; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is unavailable", e);
+        }
+    }
+
+    /**
+     * One file and its gzip encoding, ready to send
+     */
+    private static final class Asset {
+        final ByteBuffer body;
+        final ByteBuffer gzipBody;
+        final String contentType;
+        final String etag;
+        final String gzipEtag;
+        final String cacheControl;
+
+        Asset(byte[] content, String contentType, String hash, String cacheControl) {
+            this(direct(content), direct(ResponseCache.gzip(content, Deflater.BEST_COMPRESSION)), contentType,
+                    "\"" + hash + "\"", "\"" + hash + "-gzip\"", cacheControl);
+        }
+
+        private Asset(ByteBuffer body, ByteBuffer gzipBody, String contentType, String etag, String gzipEtag,
+                      String cacheControl) {
+            this.body = body;
+            this.gzipBody = gzipBody;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.gzipEtag = gzipEtag;
+            this.cacheControl = cacheControl;
+        }
+
+        /**
+         * @return The same content and encodings under other caching rules
+         */
+        Asset withCacheControl(String cacheControl) {
+            return new Asset(body, gzipBody, contentType, etag, gzipEtag, cacheControl);
+        }
+
+        private static ByteBuffer direct(byte[] bytes) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+            buffer.put(bytes).flip();
+            return buffer.asReadOnlyBuffer();
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package main.java;
+
+import com.google.gson.Gson;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-Sent Events stream of product stock and price changes.
+ *
+ * Changes arrive from the product change bus and are coalesced per product
+ * until the next tick, so a product whose stock moved a hundred times in a
+ * tick costs one entry. Each tick encodes a single frame that every client
+ * shares. Clients are written with non-blocking servlet I/O; one that lets
+ * more than {@code maxBufferedBytes} pile up is disconnected rather than
+ * buffered without bound, and its EventSource reconnects and refetches.
+ *
+ * Frames look like:
+ * <pre>
+ * event: delta
+ * data: [{"id":"...","stock":4,"price":19.99},{"id":"...","removed":true}]
+ * </pre>
+ */
+public class StockStream implements AutoCloseable {
+    private static final Gson gson = new Gson();
+    private static final byte[] OPEN_FRAME = "retry: 3000\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] HEARTBEAT_FRAME = ":\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final long HEARTBEAT_MILLIS = 15_000;
+
+    private final ChangeBus<ProductChange> bus;
+    private final long tickMillis;
+    private final int maxClients;
+    private final int maxBufferedBytes;
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+    // Latest change per product since the last tick, in first-change order
+    private Map<String, ProductChange> pending = new LinkedHashMap<>();
+    private ScheduledExecutorService scheduler;
+    private ChangeBus<ProductChange>.Subscription subscription;
+    private long lastFrameAt;
+    private volatile boolean stopped;
+
+    /**
+     * @param bus The product change bus to follow
+     * @param tickMillis How often coalesced changes are sent
+     * @param maxClients Most concurrent subscribers accepted
+     * @param maxBufferedBytes Most unsent bytes held for one client
+     */
+    public StockStream(ChangeBus<ProductChange> bus, long tickMillis, int maxClients, int maxBufferedBytes) {
+        this.bus = bus;
+        this.tickMillis = tickMillis;
+        this.maxClients = maxClients;
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    /**
+     * Starts following the bus and sending ticks
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        subscription = bus.subscribe("stock-stream", this::collect);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "stock-stream-tick");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Turns a request into a subscription that stays open after the handler
+     * returns
+     * @param request The request to hold open
+     * @param response Its response
+     * @return false if the subscriber limit is reached or the stream is
+     *         closed, leaving the response untouched
+     * @throws IOException if the response headers cannot be sent
+     */
+    public boolean open(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (stopped || clients.size() >= maxClients) {
+            return false;
+        }
+        response.setStatus(200);
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("X-Accel-Buffering", "no");
+        // Committing now also keeps the framework from writing a body and closing
+        response.flushBuffer();
+
+        AsyncContext context = request.startAsync();
+        context.setTimeout(0);
+        Client client = new Client(context, response.getOutputStream());
+        context.addListener(client);
+        client.enqueue(OPEN_FRAME);
+        // Switches the stream to non-blocking writes; the container then
+        // calls onWritePossible to send the queued frame
+        client.output.setWriteListener(client);
+        clients.add(client);
+        return true;
+    }
+
+    /**
+     * @return The number of connected subscribers
+     */
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * Sends everything coalesced since the previous tick to every client,
+     * or a heartbeat when nothing changed for a while
+     */
+    public void tick() {
+        Map<String, ProductChange> changes;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                changes = Map.of();
+            } else {
+                changes = pending;
+                pending = new LinkedHashMap<>();
+            }
+        }
+        long now = System.currentTimeMillis();
+        byte[] frame;
+        if (!changes.isEmpty()) {
+            frame = encode(changes.values());
+        } else if (now - lastFrameAt >= HEARTBEAT_MILLIS) {
+            frame = HEARTBEAT_FRAME;
+        } else {
+            return;
+        }
+        lastFrameAt = now;
+        for (Client client : clients) {
+            client.send(frame);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        stopped = true;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            subscription.close();
+            scheduler = null;
+        }
+        for (Client client : clients) {
+            client.disconnect();
+        }
+    }
+
+    private void collect(List<ProductChange> changes) {
+        synchronized (this) {
+            for (ProductChange change : changes) {
+                if (change.getType() != ProductChange.Type.UPDATED
+                        || change.changed(ProductChange.Field.STOCK, ProductChange.Field.PRICE, ProductChange.Field.ACTIVE)) {
+                    pending.put(change.getProductId(), change);
+                }
+            }
+        }
+    }
+
+    /**
+     * Encodes the current stock and price of each changed product, read at
+     * tick time so a frame never carries a value older than its changes
+     */
+    private static byte[] encode(Iterable<ProductChange> changes) {
+        List<Delta> deltas = new ArrayList<>();
+        for (ProductChange change : changes) {
+            Product product = change.getProduct();
+            if (change.getType() == ProductChange.Type.DELETED || !product.isActive()) {
+                deltas.add(new Delta(change.getProductId(), null, null, true));
+            } else {
+                deltas.add(new Delta(change.getProductId(), product.getStock(), product.getPrice(), null));
+            }
+        }
+        String frame = "event: delta\ndata: " + gson.toJson(deltas) + "\n\n";
+        return frame.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class Delta {
+        final String id;
+        final Integer stock;
+        final Double price;
+        final Boolean removed;
+
+        Delta(String id, Integer stock, Double price, Boolean removed) {
+            this.id = id;
+            this.stock = stock;
+            this.price = price;
+            this.removed = removed;
+        }
+    }
+
+    /**
+     * One subscriber: a bounded queue of frames drained whenever the
+     * connection can take more
+     */
+    private final class Client implements WriteListener, AsyncListener {
+        private final AsyncContext context;
+        private final ServletOutputStream output;
+        private final ArrayDeque<byte[]> queue = new ArrayDeque<>();
+        private int queuedBytes;
+        private boolean unflushed;
+        private boolean closed;
+
+        Client(AsyncContext context, ServletOutputStream output) {
+            this.context = context;
+            this.output = output;
+        }
+
+        void send(byte[] frame) {
+            if (!enqueue(frame)) {
+                return;
+            }
+            try {
+                onWritePossible();
+            } catch (IOException | IllegalStateException e) {
+                disconnect();
+            }
+        }
+
+        synchronized boolean enqueue(byte[] frame) {
+            if (closed) {
+                return false;
+            }
+            if (queuedBytes + frame.length > maxBufferedBytes) {
+                disconnect();
+                return false;
+            }
+            queue.add(frame);
+            queuedBytes += frame.length;
+            return true;
+        }
+
+        /**
+         * Writes queued frames until the connection pushes back; the
+         * container calls back here once it can take more
+         */
+        @Override
+        public synchronized void onWritePossible() throws IOException {
+            while (!closed && output.isReady()) {
+                byte[] frame = queue.poll();
+                if (frame == null) {
+                    if (!unflushed) {
+                        return;
+                    }
+                    unflushed = false;
+                    output.flush();
+                    continue;
+                }
+                queuedBytes -= frame.length;
+                output.write(frame);
+                unflushed = true;
+            }
+        }
+
+        synchronized void disconnect() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.clear();
+            clients.remove(this);
+            try {
+                context.complete();
+            } catch (IllegalStateException e) {
+                // Already completed by the container
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            disconnect();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            disconnect();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            disconnect();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            disconnect();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
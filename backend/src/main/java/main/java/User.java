@@ -12,6 +12,8 @@ public class User {
     
     private String username;
     private String password;
+    // Salted hash of the password, computed when first persisted
+    private volatile String passwordHash;
     private String email;
     private boolean isActive;
 
@@ -21,6 +23,23 @@ public class User {
         this.isActive = true;
     }
 
+    private User() {
+    }
+
+    /**
+     * Rebuilds a persisted user, who is known only by a password hash, so
+     * {@link #getPassword()} returns null
+     * @param passwordHash A hash from {@link PasswordHash#hash}
+     */
+    public static User restore(String username, String passwordHash, String email, boolean active) {
+        User user = new User();
+        user.setUsername(username);
+        user.passwordHash = passwordHash;
+        user.setEmail(email);
+        user.setActive(active);
+        return user;
+    }
+
     public User(String username, String password, String email) {
         this(username, password);
         setEmail(email);
@@ -43,11 +62,39 @@ public class User {
         return password;
     }
 
-    public void setPassword(String password) {
+    public synchronized void setPassword(String password) {
         if (password == null || password.trim().isEmpty()) {
             throw new IllegalArgumentException("Password cannot be empty");
         }
         this.password = password.trim();
+        this.passwordHash = null;
+    }
+
+    /**
+     * @return The salted password hash, the only form of the password that
+     *         may be written outside memory
+     */
+    public synchronized String getPasswordHash() {
+        String hash = passwordHash;
+        if (hash == null) {
+            hash = PasswordHash.hash(password);
+            passwordHash = hash;
+        }
+        return hash;
+    }
+
+    /**
+     * @return Whether a login password matches, checked against the hash
+     *         for users restored from disk
+     */
+    public boolean checkPassword(String candidate) {
+        if (candidate == null) {
+            return false;
+        }
+        if (password != null) {
+            return password.equals(candidate);
+        }
+        return PasswordHash.verify(candidate, passwordHash);
     }
 
     public String getEmail() {
@@ -1,8 +1,15 @@
 package main.java;
 
+import main.java.persistence.ChangeLog;
+import main.java.tracing.Span;
+import main.java.tracing.Tracer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -11,8 +18,10 @@ import java.util.concurrent.ConcurrentHashMap;
  * Service class for managing user operations
  */
 public class UserService {
+    private static final Logger logger = LoggerFactory.getLogger(UserService.class);
     private final Map<String, User> users = new ConcurrentHashMap<>();
     private final Map<String, String> activeSessions = new ConcurrentHashMap<>();
+    private volatile ChangeLog changeLog;
 
     public UserService() {
         // Initialize with a sample user
@@ -22,41 +31,48 @@ public class UserService {
     /**
      * Registers a new user
      */
+    @SuppressWarnings("try")
     public boolean register(String username, String password) {
-        if (username == null || password == null || username.trim().isEmpty() || password.trim().isEmpty()) {
-            return false;
-        }
+        try (Span span = Tracer.span("UserService.register")) {
+            if (username == null || password == null || username.trim().isEmpty() || password.trim().isEmpty()) {
+                return false;
+            }
 
-        String lowerUsername = username.toLowerCase();
-        if (users.containsKey(lowerUsername)) {
-            return false;
-        }
+            String lowerUsername = username.toLowerCase();
+            if (users.containsKey(lowerUsername)) {
+                return false;
+            }
 
-        try {
-            User newUser = new User(username, password);
-            users.put(lowerUsername, newUser);
-            return true;
-        } catch (IllegalArgumentException e) {
-            return false;
+            try {
+                User newUser = new User(username, password);
+                users.put(lowerUsername, newUser);
+                logChange(newUser);
+                return true;
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
         }
     }
 
     /**
      * Authenticates a user login
      */
+    @SuppressWarnings("try")
     public boolean login(String username, String password) {
-        if (username == null || password == null) {
-            return false;
-        }
+        try (Span span = Tracer.span("UserService.login")) {
+            if (username == null || password == null) {
+                return false;
+            }
 
-        User user = users.get(username.toLowerCase());
-        if (user != null && user.isActive() && user.getPassword().equals(password)) {
-            // Generate session token
-            String sessionToken = generateSessionToken(username);
-            activeSessions.put(sessionToken, username.toLowerCase());
-            return true;
+            User user = users.get(username.toLowerCase());
+            if (user != null && user.isActive() && user.checkPassword(password)) {
+                // Generate session token
+                String sessionToken = generateSessionToken(username);
+                activeSessions.put(sessionToken, username.toLowerCase());
+                return true;
+            }
+            return false;
         }
-        return false;
     }
 
     /**
@@ -83,47 +99,58 @@ public class UserService {
     /**
      * Gets user profile information
      */
+    @SuppressWarnings("try")
     public User getProfile(String username) {
-        if (username == null) {
-            return null;
+        try (Span span = Tracer.span("UserService.getProfile")) {
+            if (username == null) {
+                return null;
+            }
+            return users.get(username.toLowerCase());
         }
-        return users.get(username.toLowerCase());
     }
 
     /**
      * Updates user profile
      */
+    @SuppressWarnings("try")
     public boolean updateProfile(String username, String newPassword) {
-        if (username == null || newPassword == null) {
-            return false;
-        }
-
-        User user = users.get(username.toLowerCase());
-        if (user != null) {
-            try {
-                user.setPassword(newPassword);
-                return true;
-            } catch (IllegalArgumentException e) {
+        try (Span span = Tracer.span("UserService.updateProfile")) {
+            if (username == null || newPassword == null) {
                 return false;
             }
+
+            User user = users.get(username.toLowerCase());
+            if (user != null) {
+                try {
+                    user.setPassword(newPassword);
+                    logChange(user);
+                    return true;
+                } catch (IllegalArgumentException e) {
+                    return false;
+                }
+            }
+            return false;
         }
-        return false;
     }
 
     /**
      * Deletes a user profile (soft delete)
      */
+    @SuppressWarnings("try")
     public boolean deleteProfile(String username) {
-        if (username == null) {
-            return false;
-        }
+        try (Span span = Tracer.span("UserService.deleteProfile")) {
+            if (username == null) {
+                return false;
+            }
 
-        User user = users.get(username.toLowerCase());
-        if (user != null && user.isActive()) {
-            user.setActive(false);
-            return true;
+            User user = users.get(username.toLowerCase());
+            if (user != null && user.isActive()) {
+                user.setActive(false);
+                logChange(user);
+                return true;
+            }
+            return false;
         }
-        return false;
     }
 
     /**
@@ -135,6 +162,44 @@ public class UserService {
                 .toList();
     }
 
+    /**
+     * Gets all users including deactivated ones (admin function)
+     */
+    public List<User> getAllUsersIncludingInactive() {
+        return List.copyOf(users.values());
+    }
+
+    /**
+     * Attaches a change log that records every mutation from now on
+     */
+    public void setChangeLog(ChangeLog changeLog) {
+        this.changeLog = changeLog;
+    }
+
+    /**
+     * Replaces all users with previously persisted ones (warm start, not logged)
+     */
+    public void restoreUsers(Collection<User> restored) {
+        users.clear();
+        for (User user : restored) {
+            applyUser(user);
+        }
+    }
+
+    /**
+     * Inserts or replaces a user by username (log replay, not logged)
+     */
+    public void applyUser(User user) {
+        users.put(user.getUsername().toLowerCase(), user);
+    }
+
+    private void logChange(User user) {
+        ChangeLog log = changeLog;
+        if (log != null) {
+            log.logUser(user);
+        }
+    }
+
     /**
      * Generates a session token for authentication
      */
@@ -191,7 +256,7 @@ public class UserService {
             users.put("test", testUser);
         } catch (IllegalArgumentException e) {
             // Sample user creation failed, continue without it
-            System.err.println("Failed to create sample users: " + e.getMessage());
+            logger.warn("Failed to create sample users: {}", e.getMessage());
         }
     }
 }
\ No newline at end of file
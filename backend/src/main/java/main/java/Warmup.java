@@ -0,0 +1,203 @@
+package main.java;
+
+import java.io.IOException;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays a synthetic request mix against the server's own port at
+ * startup, so the JIT has compiled the hot paths (Jetty, the filters, Gson
+ * adapters, search and index lookups) before real traffic arrives.
+ *
+ * Requests go through the whole HTTP stack over loopback and carry
+ * {@link #HEADER}. The warm-up ends once compilation settles, meaning the
+ * JVM's total JIT compile time over the last few windows is under a tenth
+ * of their length, or when its time budget runs out. Compilation comes in
+ * bursts, so single quiet windows are not enough.
+ */
+public class Warmup {
+    public static final String HEADER = "X-Warmup";
+
+    private static final long WINDOW_MILLIS = 500;
+    private static final int STABLE_WINDOWS = 4;
+    // Share of the last windows' time spent compiling below which compilation counts as settled
+    private static final double STABLE_COMPILE_FRACTION = 0.1;
+
+    private final URI base;
+    private final Duration budget;
+    private final int concurrency;
+    private final List<HttpRequest> requests = new ArrayList<>();
+
+    /**
+     * @param base The server, e.g. http://localhost:8080
+     * @param budget The longest the warm-up may run
+     * @param concurrency Requests sent at a time
+     */
+    public Warmup(URI base, Duration budget, int concurrency) {
+        this.base = base;
+        this.budget = budget;
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Adds a GET to the mix
+     * @param path The path and query, already encoded
+     * @param headers Header names and values, alternating
+     */
+    public Warmup get(String path, String... headers) {
+        requests.add(request(path, headers).GET().build());
+        return this;
+    }
+
+    /**
+     * Adds a POST of a JSON body to the mix
+     */
+    public Warmup post(String path, String json) {
+        requests.add(request(path, "Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)).build());
+        return this;
+    }
+
+    /**
+     * Sends the mix over and over until compilation settles or the budget
+     * is spent
+     * @return What was sent and whether compilation settled
+     * @throws IOException if the server cannot be reached at all
+     */
+    public Result run() throws IOException, InterruptedException {
+        if (requests.isEmpty()) {
+            return new Result(0, 0, 0, 0, true);
+        }
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(2))
+                .build();
+        // Fails fast when the port is unreachable, e.g. behind TLS
+        client.send(requests.get(0), HttpResponse.BodyHandlers.discarding());
+
+        CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+        boolean monitored = compiler != null && compiler.isCompilationTimeMonitoringSupported();
+        long startCompileMillis = monitored ? compiler.getTotalCompilationTime() : 0;
+        long start = System.nanoTime();
+        long deadline = start + budget.toNanos();
+
+        AtomicLong sent = new AtomicLong(1);
+        AtomicLong errors = new AtomicLong();
+        AtomicBoolean done = new AtomicBoolean();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            int offset = i * requests.size() / concurrency;
+            Thread worker = new Thread(() -> {
+                for (int next = offset; !done.get(); next++) {
+                    try {
+                        HttpResponse<Void> response = client.send(requests.get(next % requests.size()),
+                                HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() >= 500) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    sent.incrementAndGet();
+                }
+            }, "warmup-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+
+        boolean stable = false;
+        try {
+            // Total compile time at the end of each of the last windows, oldest first
+            long[] compileMillis = new long[STABLE_WINDOWS + 1];
+            Arrays.fill(compileMillis, startCompileMillis);
+            for (int windows = 1; System.nanoTime() < deadline; windows++) {
+                Thread.sleep(Math.min(WINDOW_MILLIS, Math.max(1, (deadline - System.nanoTime()) / 1_000_000)));
+                if (!monitored) {
+                    continue;
+                }
+                System.arraycopy(compileMillis, 1, compileMillis, 0, STABLE_WINDOWS);
+                compileMillis[STABLE_WINDOWS] = compiler.getTotalCompilationTime();
+                if (windows >= STABLE_WINDOWS && compileMillis[STABLE_WINDOWS] - compileMillis[0]
+                        <= STABLE_WINDOWS * WINDOW_MILLIS * STABLE_COMPILE_FRACTION) {
+                    stable = true;
+                    break;
+                }
+            }
+        } finally {
+            done.set(true);
+            for (Thread worker : workers) {
+                worker.join(5_000);
+            }
+        }
+        return new Result(sent.get(), errors.get(), (System.nanoTime() - start) / 1_000_000,
+                monitored ? compiler.getTotalCompilationTime() - startCompileMillis : -1, stable);
+    }
+
+    private HttpRequest.Builder request(String path, String... headers) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(base.resolve(path))
+                .timeout(Duration.ofSeconds(10))
+                .header(HEADER, "1");
+        for (int i = 0; i + 1 < headers.length; i += 2) {
+            builder.header(headers[i], headers[i + 1]);
+        }
+        return builder;
+    }
+
+    public static final class Result {
+        private final long requests;
+        private final long errors;
+        private final long millis;
+        private final long compileMillis;
+        private final boolean stable;
+
+        Result(long requests, long errors, long millis, long compileMillis, boolean stable) {
+            this.requests = requests;
+            this.errors = errors;
+            this.millis = millis;
+            this.compileMillis = compileMillis;
+            this.stable = stable;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * @return Requests that failed or got a server error
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * @return JIT compile time spent during the warm-up, or -1 if the JVM does not report it
+         */
+        public long getCompileMillis() {
+            return compileMillis;
+        }
+
+        /**
+         * @return Whether compilation settled before the budget ran out
+         */
+        public boolean isStable() {
+            return stable;
+        }
+    }
+}
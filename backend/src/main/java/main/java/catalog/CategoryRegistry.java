@@ -0,0 +1,42 @@
+package main.java.catalog;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Assigns each distinct category a canonical int id, so category matching
+ * compares ints instead of lowercasing strings on every request.
+ * Names are canonicalized by trimming and {@link TextNormalizer}, so
+ * "Electronics", " electronics" and "ÉLECTRONICS" share an id.
+ */
+public final class CategoryRegistry {
+    /** Id of a category that was never registered */
+    public static final int UNKNOWN = 0;
+
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private static final AtomicInteger nextId = new AtomicInteger(1);
+
+    private CategoryRegistry() {
+        // Utility class
+    }
+
+    /**
+     * @return The id for the category, registering it if new
+     */
+    public static int register(String category) {
+        return ids.computeIfAbsent(canonical(category), key -> nextId.getAndIncrement());
+    }
+
+    /**
+     * @return The id for the category, or UNKNOWN if no product ever used it
+     */
+    public static int lookup(String category) {
+        Integer id = ids.get(canonical(category));
+        return id != null ? id : UNKNOWN;
+    }
+
+    public static String canonical(String category) {
+        return TextNormalizer.normalize(category != null ? category.trim() : "");
+    }
+}
@@ -0,0 +1,346 @@
+package main.java.catalog;
+
+import main.java.Product;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Column-oriented store for very large catalogs.
+ *
+ * Each product is a row index into primitive arrays: prices, stock,
+ * ratings, review counts and creation times are plain arrays, the active flag is a bitset,
+ * categories are interned in a {@link StringDictionary}, and free-text
+ * fields live as UTF-8 in shared byte arrays. IDs are resolved through an
+ * open-addressing hash table of rows, so no per-product objects, boxed
+ * values or map entries stay on the heap. Deleted rows are reused.
+ *
+ * Products are materialized on every read, so changes to a returned
+ * product only take effect once it is {@link #put} back.
+ */
+public class ColumnarProductStore implements ProductStore {
+    private static final int EMPTY = 0;
+    private static final int TOMBSTONE = -1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Utf8Column ids = new Utf8Column();
+    private final Utf8Column names = new Utf8Column();
+    private final Utf8Column descriptions = new Utf8Column();
+    private final Utf8Column imageUrls = new Utf8Column();
+    private final StringDictionary categories = new StringDictionary();
+
+    private int capacity;
+    private int highWater;
+    private int size;
+    private int[] categoryCodes = new int[0];
+    private double[] prices = new double[0];
+    private int[] stocks = new int[0];
+    private double[] ratings = new double[0];
+    private int[] reviewCounts = new int[0];
+    private long[] createdAts = new long[0];
+    private int[] idHashes = new int[0];
+    private long[] activeBits = new long[0];
+    private long[] liveBits = new long[0];
+    private int[] freeRows = new int[16];
+    private int freeCount;
+
+    // Open addressing: slot holds row + 1, EMPTY or TOMBSTONE
+    private int[] table = new int[16];
+    private int tableUsed;
+
+    public ColumnarProductStore() {
+        this(1024);
+    }
+
+    /**
+     * @param expectedSize Rows to allocate up front
+     */
+    public ColumnarProductStore(int expectedSize) {
+        ensureRows(Math.max(16, expectedSize));
+        table = new int[tableSizeFor(expectedSize)];
+    }
+
+    @Override
+    public Product get(String id) {
+        if (id == null) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            int row = findRow(id);
+            return row < 0 ? null : materialize(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Product put(String id, Product product) {
+        if (id == null) {
+            throw new IllegalArgumentException("Product ID cannot be null");
+        }
+        lock.writeLock().lock();
+        try {
+            int row = findRow(id);
+            Product previous = null;
+            if (row >= 0) {
+                previous = materialize(row);
+            } else {
+                row = allocateRow();
+                ids.set(row, id);
+                idHashes[row] = id.hashCode();
+                setBit(liveBits, row, true);
+                insertIntoTable(row);
+                size++;
+            }
+            names.set(row, product.getName());
+            descriptions.set(row, product.getDescription());
+            imageUrls.set(row, product.getImageUrl());
+            categoryCodes[row] = categories.intern(product.getCategory());
+            prices[row] = product.getPrice();
+            stocks[row] = product.getStock();
+            ratings[row] = product.getRating();
+            reviewCounts[row] = product.getReviewCount();
+            createdAts[row] = product.getCreatedAt();
+            setBit(activeBits, row, product.isActive());
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Product remove(String id) {
+        if (id == null) {
+            return null;
+        }
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(id);
+            if (slot < 0) {
+                return null;
+            }
+            int row = table[slot] - 1;
+            Product removed = materialize(row);
+            table[slot] = TOMBSTONE;
+            ids.clear(row);
+            names.clear(row);
+            descriptions.clear(row);
+            imageUrls.clear(row);
+            setBit(liveBits, row, false);
+            setBit(activeBits, row, false);
+            releaseRow(row);
+            size--;
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(String id) {
+        if (id == null) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            return findRow(id) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            ids.clearAll();
+            names.clearAll();
+            descriptions.clearAll();
+            imageUrls.clearAll();
+            Arrays.fill(liveBits, 0);
+            Arrays.fill(activeBits, 0);
+            Arrays.fill(table, EMPTY);
+            tableUsed = 0;
+            highWater = 0;
+            size = 0;
+            freeCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Materializes every stored product. The returned collection is a copy.
+     */
+    @Override
+    public Collection<Product> values() {
+        lock.readLock().lock();
+        try {
+            List<Product> products = new ArrayList<>(size);
+            for (int row = 0; row < highWater; row++) {
+                if (getBit(liveBits, row)) {
+                    products.add(materialize(row));
+                }
+            }
+            return products;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Approximate heap bytes held by the columns, for capacity planning
+     */
+    public long footprintBytes() {
+        lock.readLock().lock();
+        try {
+            return ids.footprintBytes() + names.footprintBytes() + descriptions.footprintBytes()
+                    + imageUrls.footprintBytes()
+                    + 4L * categoryCodes.length + 8L * prices.length + 4L * stocks.length
+                    + 8L * ratings.length + 4L * reviewCounts.length + 8L * createdAts.length + 4L * idHashes.length
+                    + 8L * activeBits.length + 8L * liveBits.length + 4L * freeRows.length
+                    + 4L * table.length;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Product materialize(int row) {
+        return Product.restore(ids.get(row), names.get(row), descriptions.get(row), prices[row], stocks[row],
+                categories.get(categoryCodes[row]), imageUrls.get(row), ratings[row], reviewCounts[row],
+                getBit(activeBits, row), createdAts[row]);
+    }
+
+    private int findRow(String id) {
+        int slot = findSlot(id);
+        return slot < 0 ? -1 : table[slot] - 1;
+    }
+
+    private int findSlot(String id) {
+        int hash = id.hashCode();
+        byte[] key = null;
+        int mask = table.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == EMPTY) {
+                return -1;
+            }
+            if (entry != TOMBSTONE && idHashes[entry - 1] == hash) {
+                if (key == null) {
+                    key = id.getBytes(StandardCharsets.UTF_8);
+                }
+                if (ids.matches(entry - 1, key)) {
+                    return slot;
+                }
+            }
+        }
+    }
+
+    private void insertIntoTable(int row) {
+        if ((tableUsed + 1) * 2 > table.length) {
+            rehash(size * 4 > table.length ? table.length * 2 : table.length);
+        }
+        int mask = table.length - 1;
+        int slot = mix(idHashes[row]) & mask;
+        while (table[slot] != EMPTY && table[slot] != TOMBSTONE) {
+            slot = (slot + 1) & mask;
+        }
+        if (table[slot] == EMPTY) {
+            tableUsed++;
+        }
+        table[slot] = row + 1;
+    }
+
+    private void rehash(int newLength) {
+        int[] old = table;
+        table = new int[newLength];
+        tableUsed = 0;
+        int mask = newLength - 1;
+        for (int entry : old) {
+            if (entry > 0) {
+                int slot = mix(idHashes[entry - 1]) & mask;
+                while (table[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = entry;
+                tableUsed++;
+            }
+        }
+    }
+
+    private int allocateRow() {
+        if (freeCount > 0) {
+            return freeRows[--freeCount];
+        }
+        if (highWater == capacity) {
+            ensureRows(capacity * 2);
+        }
+        return highWater++;
+    }
+
+    private void releaseRow(int row) {
+        if (freeCount == freeRows.length) {
+            freeRows = Arrays.copyOf(freeRows, freeRows.length * 2);
+        }
+        freeRows[freeCount++] = row;
+    }
+
+    private void ensureRows(int rows) {
+        if (rows <= capacity) {
+            return;
+        }
+        capacity = rows;
+        ids.ensureRows(rows);
+        names.ensureRows(rows);
+        descriptions.ensureRows(rows);
+        imageUrls.ensureRows(rows);
+        categoryCodes = Arrays.copyOf(categoryCodes, rows);
+        prices = Arrays.copyOf(prices, rows);
+        stocks = Arrays.copyOf(stocks, rows);
+        ratings = Arrays.copyOf(ratings, rows);
+        reviewCounts = Arrays.copyOf(reviewCounts, rows);
+        createdAts = Arrays.copyOf(createdAts, rows);
+        idHashes = Arrays.copyOf(idHashes, rows);
+        activeBits = Arrays.copyOf(activeBits, (rows + 63) >>> 6);
+        liveBits = Arrays.copyOf(liveBits, (rows + 63) >>> 6);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int size = 16;
+        while (size < expectedSize * 2) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean getBit(long[] bits, int row) {
+        return (bits[row >>> 6] & (1L << row)) != 0;
+    }
+
+    private static void setBit(long[] bits, int row, boolean value) {
+        if (value) {
+            bits[row >>> 6] |= 1L << row;
+        } else {
+            bits[row >>> 6] &= ~(1L << row);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package main.java.catalog;
+
+import java.util.Arrays;
+
+/**
+ * Growable bitmap over document numbers. Unlike {@link java.util.BitSet} it
+ * counts an intersection without materializing it, which is what facet
+ * counting does once per bucket.
+ */
+final class DocBitmap {
+    private long[] words;
+
+    DocBitmap() {
+        this(new long[1]);
+    }
+
+    private DocBitmap(long[] words) {
+        this.words = words;
+    }
+
+    void set(int doc) {
+        int word = doc >>> 6;
+        if (word >= words.length) {
+            words = Arrays.copyOf(words, Math.max(word + 1, words.length * 2));
+        }
+        words[word] |= 1L << doc;
+    }
+
+    void set(int doc, boolean value) {
+        if (value) {
+            set(doc);
+        } else {
+            clear(doc);
+        }
+    }
+
+    void clear(int doc) {
+        int word = doc >>> 6;
+        if (word < words.length) {
+            words[word] &= ~(1L << doc);
+        }
+    }
+
+    void clear() {
+        Arrays.fill(words, 0L);
+    }
+
+    boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    DocBitmap copy() {
+        return new DocBitmap(words.clone());
+    }
+
+    void or(DocBitmap other) {
+        if (other.words.length > words.length) {
+            words = Arrays.copyOf(words, other.words.length);
+        }
+        for (int i = 0; i < other.words.length; i++) {
+            words[i] |= other.words[i];
+        }
+    }
+
+    void and(DocBitmap other) {
+        int shared = Math.min(words.length, other.words.length);
+        for (int i = 0; i < shared; i++) {
+            words[i] &= other.words[i];
+        }
+        Arrays.fill(words, shared, words.length, 0L);
+    }
+
+    int cardinality() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @return Size of the intersection with another bitmap
+     */
+    int andCardinality(DocBitmap other) {
+        int shared = Math.min(words.length, other.words.length);
+        int count = 0;
+        for (int i = 0; i < shared; i++) {
+            count += Long.bitCount(words[i] & other.words[i]);
+        }
+        return count;
+    }
+
+    /**
+     * @return The first set bit at or after a document number, or -1
+     */
+    int nextSetBit(int from) {
+        int word = from >>> 6;
+        if (word >= words.length) {
+            return -1;
+        }
+        long bits = words[word] & (-1L << from);
+        while (true) {
+            if (bits != 0) {
+                return word * 64 + Long.numberOfTrailingZeros(bits);
+            }
+            if (++word == words.length) {
+                return -1;
+            }
+            bits = words[word];
+        }
+    }
+}
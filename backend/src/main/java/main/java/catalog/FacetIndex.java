@@ -0,0 +1,473 @@
+package main.java.catalog;
+
+import main.java.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Bitmap indexes for filtering the catalog by category, price, stock and
+ * rating, with facet counts per category and per price bucket.
+ *
+ * Each product gets a small document number (freed numbers are reused, so
+ * bitmaps stay dense) and one bit in a bitmap per category, price slice,
+ * quarter-star rating slice and in-stock flag. Price slices split each facet
+ * bucket {@link #PRICE_SLICES} ways, so a range is an OR of whole slices and
+ * only the two edge slices are checked document by document. A filter is an
+ * AND of those ORs. Facet counts intersect each bucket with the other
+ * filters, the way a multi-select facet sidebar expects.
+ */
+public class FacetIndex {
+    /** Upper bounds (exclusive) of the default price buckets; the last bucket is open-ended */
+    public static final double[] DEFAULT_PRICE_BOUNDS = {500, 1000, 2500, 5000, 10000, 20000};
+    /** Price slices per facet bucket; the open-ended last bucket is sliced up to twice its lower bound */
+    public static final int PRICE_SLICES = 8;
+    // Quarter stars, plus one for exactly 5.0
+    private static final int RATING_BUCKETS = 21;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final double[] priceBounds;
+    // Upper bounds of the price slices, and the facet bucket each slice is in
+    private final double[] sliceBounds;
+    private final int[] sliceBuckets;
+
+    private final Map<String, Integer> docIds = new HashMap<>();
+    private final List<Integer> freeDocs = new ArrayList<>();
+    private int nextDoc;
+    private String[] docProducts = new String[1024];
+    private double[] prices = new double[1024];
+    private double[] ratings = new double[1024];
+    private int[] categories = new int[1024];
+
+    private final DocBitmap live = new DocBitmap();
+    private final DocBitmap inStock = new DocBitmap();
+    private final Map<Integer, DocBitmap> categoryBits = new HashMap<>();
+    private final Map<Integer, String> categoryNames = new HashMap<>();
+    private final DocBitmap[] priceBits;
+    private final DocBitmap[] ratingBits = new DocBitmap[RATING_BUCKETS];
+
+    public FacetIndex() {
+        this(DEFAULT_PRICE_BOUNDS);
+    }
+
+    /**
+     * @param priceBounds Ascending upper bounds of the price buckets
+     */
+    public FacetIndex(double[] priceBounds) {
+        this.priceBounds = priceBounds.clone();
+        int buckets = priceBounds.length + 1;
+        this.sliceBounds = new double[buckets * PRICE_SLICES - 1];
+        this.sliceBuckets = new int[buckets * PRICE_SLICES];
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            double low = bucket == 0 ? 0 : priceBounds[bucket - 1];
+            double high = bucket < priceBounds.length ? priceBounds[bucket] : Math.max(1, 2 * low);
+            for (int slice = 0; slice < PRICE_SLICES; slice++) {
+                int at = bucket * PRICE_SLICES + slice;
+                sliceBuckets[at] = bucket;
+                if (at < sliceBounds.length) {
+                    sliceBounds[at] = slice == PRICE_SLICES - 1 ? high : low + (high - low) * (slice + 1) / PRICE_SLICES;
+                }
+            }
+        }
+        this.priceBits = new DocBitmap[sliceBuckets.length];
+        for (int i = 0; i < priceBits.length; i++) {
+            priceBits[i] = new DocBitmap();
+        }
+        for (int i = 0; i < RATING_BUCKETS; i++) {
+            ratingBits[i] = new DocBitmap();
+        }
+    }
+
+    /**
+     * Adds a product, replacing any earlier version stored under the same ID
+     * @param productId The ID the product is stored under
+     * @param product The product to index
+     */
+    public void index(String productId, Product product) {
+        int category = CategoryRegistry.register(product.getCategory());
+        lock.writeLock().lock();
+        try {
+            Integer existing = docIds.get(productId);
+            int doc;
+            if (existing != null) {
+                doc = existing;
+                clearBits(doc);
+            } else {
+                doc = freeDocs.isEmpty() ? nextDoc++ : freeDocs.remove(freeDocs.size() - 1);
+                ensureCapacity(doc + 1);
+                docIds.put(productId, doc);
+            }
+            docProducts[doc] = productId;
+            prices[doc] = product.getPrice();
+            ratings[doc] = product.getRating();
+            categories[doc] = category;
+
+            live.set(doc);
+            inStock.set(doc, product.getStock() > 0);
+            categoryBits.computeIfAbsent(category, k -> new DocBitmap()).set(doc);
+            categoryNames.putIfAbsent(category, product.getCategory() != null ? product.getCategory().trim() : "");
+            priceBits[priceSlice(product.getPrice())].set(doc);
+            ratingBits[ratingBucket(product.getRating())].set(doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a product if present
+     * @param productId The ID the product is stored under
+     */
+    public void remove(String productId) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docIds.remove(productId);
+            if (doc != null) {
+                clearBits(doc);
+                live.clear(doc);
+                docProducts[doc] = null;
+                freeDocs.add(doc);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops every product
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            docIds.clear();
+            freeDocs.clear();
+            nextDoc = 0;
+            Arrays.fill(docProducts, null);
+            live.clear();
+            inStock.clear();
+            categoryBits.clear();
+            categoryNames.clear();
+            for (DocBitmap bits : priceBits) {
+                bits.clear();
+            }
+            for (DocBitmap bits : ratingBits) {
+                bits.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Filters products and counts facets.
+     * Category counts apply every filter except the category one, and price
+     * bucket counts every filter except the price range, so each count says
+     * how many results picking that value would give.
+     * @param filter The filters to apply
+     * @param offset Number of matches to skip
+     * @param limit Maximum number of product IDs to return
+     * @return A page of matching product IDs with the total and facet counts
+     */
+    public Result<String> query(Filter filter, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            DocBitmap byCategory = categoryMatches(filter);
+            DocBitmap byPrice = priceMatches(filter);
+            DocBitmap others = live.copy();
+            if (filter.inStockOnly) {
+                others.and(inStock);
+            }
+            DocBitmap byRating = ratingMatches(filter);
+            if (byRating != null) {
+                others.and(byRating);
+            }
+
+            DocBitmap matches = others.copy();
+            if (byCategory != null) {
+                matches.and(byCategory);
+            }
+            if (byPrice != null) {
+                matches.and(byPrice);
+            }
+
+            List<String> page = new ArrayList<>(Math.max(0, Math.min(limit, 256)));
+            int skipped = 0;
+            for (int doc = matches.nextSetBit(0); doc >= 0 && page.size() < limit; doc = matches.nextSetBit(doc + 1)) {
+                if (skipped++ >= offset) {
+                    page.add(docProducts[doc]);
+                }
+            }
+
+            // Facet counts, each leaving out its own filter
+            DocBitmap forCategories = others.copy();
+            if (byPrice != null) {
+                forCategories.and(byPrice);
+            }
+            Map<String, Integer> categoryCounts = new TreeMap<>();
+            for (Map.Entry<Integer, DocBitmap> entry : categoryBits.entrySet()) {
+                int count = entry.getValue().andCardinality(forCategories);
+                if (count > 0) {
+                    categoryCounts.merge(categoryNames.get(entry.getKey()), count, Integer::sum);
+                }
+            }
+            DocBitmap forPrices = others;
+            if (byCategory != null) {
+                forPrices.and(byCategory);
+            }
+            int[] bucketCounts = new int[priceBounds.length + 1];
+            for (int slice = 0; slice < priceBits.length; slice++) {
+                if (!priceBits[slice].isEmpty()) {
+                    bucketCounts[sliceBuckets[slice]] += priceBits[slice].andCardinality(forPrices);
+                }
+            }
+            List<PriceBucket> priceCounts = new ArrayList<>(bucketCounts.length);
+            for (int bucket = 0; bucket < bucketCounts.length; bucket++) {
+                priceCounts.add(new PriceBucket(
+                        bucket == 0 ? 0 : priceBounds[bucket - 1],
+                        bucket < priceBounds.length ? priceBounds[bucket] : null,
+                        bucketCounts[bucket]));
+            }
+
+            return new Result<>(page, matches.cardinality(), categoryCounts, priceCounts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Number of indexed products
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private DocBitmap categoryMatches(Filter filter) {
+        if (filter.categories.isEmpty()) {
+            return null;
+        }
+        DocBitmap union = new DocBitmap();
+        for (String category : filter.categories) {
+            DocBitmap bits = categoryBits.get(CategoryRegistry.lookup(category));
+            if (bits != null) {
+                union.or(bits);
+            }
+        }
+        return union;
+    }
+
+    /**
+     * ORs the slices overlapping [min, max], then drops out-of-range
+     * documents from the two edge slices only
+     */
+    private DocBitmap priceMatches(Filter filter) {
+        if (filter.minPrice == null && filter.maxPrice == null) {
+            return null;
+        }
+        double min = filter.minPrice != null ? filter.minPrice : Double.NEGATIVE_INFINITY;
+        double max = filter.maxPrice != null ? filter.maxPrice : Double.POSITIVE_INFINITY;
+        DocBitmap union = new DocBitmap();
+        if (min > max) {
+            return union;
+        }
+        int first = priceSlice(min);
+        int last = priceSlice(max);
+        for (int slice = first; slice <= last; slice++) {
+            union.or(priceBits[slice]);
+        }
+        trim(union, priceBits[first], prices, min, max);
+        if (last != first) {
+            trim(union, priceBits[last], prices, min, max);
+        }
+        return union;
+    }
+
+    private DocBitmap ratingMatches(Filter filter) {
+        if (filter.minRating == null) {
+            return null;
+        }
+        DocBitmap union = new DocBitmap();
+        int first = ratingBucket(filter.minRating);
+        for (int bucket = first; bucket < RATING_BUCKETS; bucket++) {
+            union.or(ratingBits[bucket]);
+        }
+        trim(union, ratingBits[first], ratings, filter.minRating, Double.POSITIVE_INFINITY);
+        return union;
+    }
+
+    private static void trim(DocBitmap union, DocBitmap bucket, double[] values, double min, double max) {
+        for (int doc = bucket.nextSetBit(0); doc >= 0; doc = bucket.nextSetBit(doc + 1)) {
+            if (values[doc] < min || values[doc] > max) {
+                union.clear(doc);
+            }
+        }
+    }
+
+    private int priceSlice(double price) {
+        // Index of the first slice whose upper bound is above the price
+        int slice = Arrays.binarySearch(sliceBounds, price);
+        return slice >= 0 ? slice + 1 : -slice - 1;
+    }
+
+    private static int ratingBucket(double rating) {
+        return Math.max(0, Math.min(RATING_BUCKETS - 1, (int) Math.floor(rating * 4)));
+    }
+
+    private void clearBits(int doc) {
+        inStock.clear(doc);
+        DocBitmap category = categoryBits.get(categories[doc]);
+        if (category != null) {
+            category.clear(doc);
+            if (category.isEmpty()) {
+                categoryBits.remove(categories[doc]);
+                categoryNames.remove(categories[doc]);
+            }
+        }
+        priceBits[priceSlice(prices[doc])].clear(doc);
+        ratingBits[ratingBucket(ratings[doc])].clear(doc);
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > docProducts.length) {
+            int grown = Math.max(size, docProducts.length * 2);
+            docProducts = Arrays.copyOf(docProducts, grown);
+            prices = Arrays.copyOf(prices, grown);
+            ratings = Arrays.copyOf(ratings, grown);
+            categories = Arrays.copyOf(categories, grown);
+        }
+    }
+
+    /**
+     * Filter criteria; unset criteria match everything
+     */
+    public static final class Filter {
+        private final Set<String> categories = new HashSet<>();
+        private Double minPrice;
+        private Double maxPrice;
+        private boolean inStockOnly;
+        private Double minRating;
+
+        /**
+         * Adds a category; a product matches if it is in any added category
+         */
+        public Filter category(String category) {
+            categories.add(category);
+            return this;
+        }
+
+        /**
+         * @param min Lowest price, inclusive, or null for no lower bound
+         * @param max Highest price, inclusive, or null for no upper bound
+         */
+        public Filter priceRange(Double min, Double max) {
+            this.minPrice = min;
+            this.maxPrice = max;
+            return this;
+        }
+
+        public Filter inStockOnly(boolean inStockOnly) {
+            this.inStockOnly = inStockOnly;
+            return this;
+        }
+
+        public Filter minRating(Double minRating) {
+            this.minRating = minRating;
+            return this;
+        }
+    }
+
+    /**
+     * Number of filtered products in a price bucket
+     */
+    public static final class PriceBucket {
+        private final double min;
+        private final Double max;
+        private final int count;
+
+        PriceBucket(double min, Double max, int count) {
+            this.min = min;
+            this.max = max;
+            this.count = count;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        /**
+         * @return The exclusive upper bound, or null for the last bucket
+         */
+        public Double getMax() {
+            return max;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * A page of filtered items with the total match count and facet counts
+     */
+    public static final class Result<T> {
+        private final List<T> items;
+        private final int total;
+        private final Map<String, Integer> categories;
+        private final List<PriceBucket> prices;
+
+        Result(List<T> items, int total, Map<String, Integer> categories, List<PriceBucket> prices) {
+            this.items = items;
+            this.total = total;
+            this.categories = categories;
+            this.prices = prices;
+        }
+
+        /**
+         * @return The same result with each item converted, dropping nulls
+         */
+        public <R> Result<R> map(Function<T, R> mapper) {
+            List<R> mapped = new ArrayList<>(items.size());
+            for (T item : items) {
+                R converted = mapper.apply(item);
+                if (converted != null) {
+                    mapped.add(converted);
+                }
+            }
+            return new Result<>(mapped, total, categories, prices);
+        }
+
+        public List<T> getItems() {
+            return Collections.unmodifiableList(items);
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * @return Match counts by category name, ignoring the category filter
+         */
+        public Map<String, Integer> getCategories() {
+            return Collections.unmodifiableMap(categories);
+        }
+
+        /**
+         * @return Match counts by price bucket, ignoring the price filter
+         */
+        public List<PriceBucket> getPrices() {
+            return Collections.unmodifiableList(prices);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package main.java.catalog;
+
+import main.java.Product;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Default store keeping each product as an object in a concurrent map.
+ * Products returned are the stored instances.
+ */
+public class MapProductStore implements ProductStore {
+    private final Map<String, Product> products = new ConcurrentHashMap<>();
+
+    @Override
+    public Product get(String id) {
+        return id != null ? products.get(id) : null;
+    }
+
+    @Override
+    public Product put(String id, Product product) {
+        return products.put(id, product);
+    }
+
+    @Override
+    public Product remove(String id) {
+        return id != null ? products.remove(id) : null;
+    }
+
+    @Override
+    public boolean containsKey(String id) {
+        return id != null && products.containsKey(id);
+    }
+
+    @Override
+    public int size() {
+        return products.size();
+    }
+
+    @Override
+    public void clear() {
+        products.clear();
+    }
+
+    @Override
+    public Collection<Product> values() {
+        return products.values();
+    }
+}
@@ -0,0 +1,40 @@
+package main.java.catalog;
+
+import main.java.Product;
+
+import java.util.Collection;
+
+/**
+ * Storage backing {@link main.java.ProductService}.
+ * Products handed out may be copies, so callers that change a product must
+ * {@link #put} it back for the change to stick.
+ */
+public interface ProductStore {
+
+    /**
+     * @return The product with the given ID, or null
+     */
+    Product get(String id);
+
+    /**
+     * Inserts or replaces the product stored under an ID
+     * @return The product previously stored under the ID, or null
+     */
+    Product put(String id, Product product);
+
+    /**
+     * @return The removed product, or null if none was stored
+     */
+    Product remove(String id);
+
+    boolean containsKey(String id);
+
+    int size();
+
+    void clear();
+
+    /**
+     * @return All stored products; may be a live view or a copy
+     */
+    Collection<Product> values();
+}
@@ -0,0 +1,631 @@
+package main.java.catalog;
+
+import main.java.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Ranked full-text index over product names and descriptions.
+ *
+ * Scoring is BM25F: term frequencies from the name are boosted over the
+ * description, each field normalized by its own average length. Query terms
+ * that are not in the vocabulary, or have close spellings in it, also match
+ * within edit distance 1 (terms of 4+ chars) or 2 (8+ chars) through a
+ * symmetric-delete index, at a reduced weight. When the query ends mid-word
+ * the last token also matches vocabulary terms it is a prefix of, so results
+ * keep up while the user is still typing.
+ *
+ * Documents are numbered in insertion order so every posting list is sorted
+ * by document; a query walks its posting lists together one document at a
+ * time and keeps the best K in a min-heap, so ranking costs O(matches log K)
+ * with no per-document score buffer. Once the heap is full, query terms whose
+ * combined upper bound cannot beat the K-th score stop producing candidates
+ * and are only probed for documents the other terms surface (MaxScore). Replaced and removed documents are
+ * skipped until dead documents outnumber live ones, then the index is
+ * renumbered.
+ */
+public class SearchIndex {
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final float NAME_BOOST = 3.0f;
+    private static final float[] FUZZY_WEIGHT = {1.0f, 0.6f, 0.35f};
+    private static final int MAX_FUZZY_VARIANTS = 8;
+    private static final float PREFIX_WEIGHT = 0.8f;
+    private static final int MAX_PREFIX_VARIANTS = 8;
+    private static final int MIN_COMPACT_DEAD = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Vocabulary
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final NavigableSet<String> sortedTerms = new TreeSet<>();
+    private final List<String> terms = new ArrayList<>();
+    private final List<Postings> postings = new ArrayList<>();
+    private final Map<String, int[]> deletes = new HashMap<>();
+
+    // Documents
+    private final Map<String, Integer> docIds = new HashMap<>();
+    private String[] docProducts = new String[1024];
+    private int[] nameLengths = new int[1024];
+    private int[] descLengths = new int[1024];
+    private int[][] docTerms = new int[1024][];
+    private final BitSet liveDocs = new BitSet();
+    private int nextDoc;
+    private int liveCount;
+    private long totalNameLength;
+    private long totalDescLength;
+
+    /**
+     * Adds a product, replacing any earlier version stored under the same ID
+     * @param productId The ID the product is stored under
+     * @param product The product whose name and description are indexed
+     */
+    public void index(String productId, Product product) {
+        List<String> nameTokens = tokenize(product.getName());
+        List<String> descTokens = tokenize(product.getDescription());
+        lock.writeLock().lock();
+        try {
+            removeLocked(productId);
+            addLocked(productId, nameTokens, descTokens);
+            compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a product if present
+     */
+    public void remove(String productId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(productId);
+            compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            termIds.clear();
+            sortedTerms.clear();
+            terms.clear();
+            postings.clear();
+            deletes.clear();
+            docIds.clear();
+            liveDocs.clear();
+            Arrays.fill(docProducts, null);
+            Arrays.fill(docTerms, null);
+            nextDoc = 0;
+            liveCount = 0;
+            totalNameLength = 0;
+            totalDescLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the best matching products for a free-text query
+     * @param query The query, tokenized like the indexed text; a last word
+     *              not followed by a separator is also matched as a prefix
+     * @param limit Maximum number of results
+     * @return Product IDs, best match first
+     */
+    public List<String> search(String query, int limit) {
+        List<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            if (liveCount == 0) {
+                return Collections.emptyList();
+            }
+            List<Cursor> cursors = new ArrayList<>();
+            Map<String, Integer> queryTerms = new HashMap<>();
+            for (String token : queryTokens) {
+                if (!queryTerms.containsKey(token)) {
+                    queryTerms.put(token, queryTerms.size());
+                    addCursors(token, queryTerms.get(token), cursors);
+                }
+            }
+            if (endsMidWord(query)) {
+                String last = queryTokens.get(queryTokens.size() - 1);
+                addPrefixCursors(last, queryTerms.get(last), cursors);
+            }
+            if (cursors.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return rank(cursors, queryTerms.size(), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Splits text into normalized alphanumeric tokens
+     */
+    public static List<String> tokenize(String text) {
+        String normalized = TextNormalizer.normalize(text);
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private void addCursors(String token, int queryTerm, List<Cursor> cursors) {
+        Integer exact = termIds.get(token);
+        if (exact != null && postings.get(exact).live > 0) {
+            cursors.add(new Cursor(queryTerm, postings.get(exact), idf(postings.get(exact).live), FUZZY_WEIGHT[0]));
+        }
+        int maxDistance = maxDistance(token);
+        if (maxDistance == 0) {
+            return;
+        }
+
+        // Symmetric delete: candidates share a deletion variant with the query
+        Map<Integer, Integer> candidates = new HashMap<>();
+        for (String variant : deletionVariants(token, maxDistance)) {
+            int[] ids = deletes.get(variant);
+            if (ids == null) {
+                continue;
+            }
+            for (int id : ids) {
+                if ((exact == null || id != exact) && !candidates.containsKey(id)) {
+                    int distance = editDistance(token, terms.get(id), maxDistance);
+                    if (distance <= maxDistance) {
+                        candidates.put(id, distance);
+                    }
+                }
+            }
+        }
+        candidates.entrySet().stream()
+                .filter(e -> postings.get(e.getKey()).live > 0)
+                .sorted(Map.Entry.comparingByValue())
+                .limit(MAX_FUZZY_VARIANTS)
+                .forEach(e -> {
+                    Postings list = postings.get(e.getKey());
+                    cursors.add(new Cursor(queryTerm, list, idf(list.live), FUZZY_WEIGHT[e.getValue()]));
+                });
+    }
+
+    /**
+     * Adds the live vocabulary terms that extend a partially typed word,
+     * scoring for the same query term as the word itself
+     */
+    private void addPrefixCursors(String prefix, int queryTerm, List<Cursor> cursors) {
+        int added = 0;
+        for (String term : sortedTerms.subSet(prefix, false, prefix + Character.MAX_VALUE, false)) {
+            Postings list = postings.get(termIds.get(term));
+            if (list.live > 0) {
+                cursors.add(new Cursor(queryTerm, list, idf(list.live), PREFIX_WEIGHT));
+                if (++added == MAX_PREFIX_VARIANTS) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static boolean endsMidWord(String query) {
+        String normalized = TextNormalizer.normalize(query);
+        return !normalized.isEmpty() && Character.isLetterOrDigit(normalized.charAt(normalized.length() - 1));
+    }
+
+    private List<String> rank(List<Cursor> cursors, int queryTermCount, int limit) {
+        // Group cursors by query term, ordered by the most each term can add
+        Cursor[][] groups = new Cursor[queryTermCount][];
+        float[] bounds = new float[queryTermCount];
+        Integer[] order = new Integer[queryTermCount];
+        for (int term = 0; term < queryTermCount; term++) {
+            int t = term;
+            groups[term] = cursors.stream().filter(c -> c.queryTerm == t).toArray(Cursor[]::new);
+            for (Cursor cursor : groups[term]) {
+                bounds[term] = Math.max(bounds[term], cursor.maxScore());
+            }
+            order[term] = term;
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(bounds[a], bounds[b]));
+        Cursor[][] sorted = new Cursor[queryTermCount][];
+        float[] prefixBound = new float[queryTermCount];
+        for (int i = 0; i < queryTermCount; i++) {
+            sorted[i] = groups[order[i]];
+            prefixBound[i] = bounds[order[i]] + (i > 0 ? prefixBound[i - 1] : 0f);
+        }
+
+        boolean hasDead = nextDoc != liveCount;
+        float avgName = Math.max(1f, (float) totalNameLength / liveCount);
+        float avgDesc = Math.max(1f, (float) totalDescLength / liveCount);
+        PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1);
+        float threshold = Float.NEGATIVE_INFINITY;
+        // Terms below this index cannot reach the top K on their own (MaxScore),
+        // so only documents from the remaining terms are candidates
+        int firstEssential = 0;
+
+        while (firstEssential < queryTermCount) {
+            int doc = Integer.MAX_VALUE;
+            for (int i = firstEssential; i < queryTermCount; i++) {
+                for (Cursor cursor : sorted[i]) {
+                    if (hasDead) {
+                        cursor.skipDead();
+                    }
+                    if (cursor.position < cursor.list.size) {
+                        doc = Math.min(doc, cursor.list.docs[cursor.position]);
+                    }
+                }
+            }
+            if (doc == Integer.MAX_VALUE) {
+                break;
+            }
+
+            float nameNorm = 1 - B + B * nameLengths[doc] / avgName;
+            float descNorm = 1 - B + B * descLengths[doc] / avgDesc;
+            float score = 0f;
+            for (int i = firstEssential; i < queryTermCount; i++) {
+                // A query term scores through its best spelling only
+                float termScore = 0f;
+                for (Cursor cursor : sorted[i]) {
+                    if (cursor.position < cursor.list.size && cursor.list.docs[cursor.position] == doc) {
+                        termScore = Math.max(termScore, cursor.score(nameNorm, descNorm));
+                        cursor.position++;
+                    }
+                }
+                score += termScore;
+            }
+            for (int i = firstEssential - 1; i >= 0 && score + prefixBound[i] > threshold; i--) {
+                float termScore = 0f;
+                for (Cursor cursor : sorted[i]) {
+                    if (cursor.seek(doc)) {
+                        termScore = Math.max(termScore, cursor.score(nameNorm, descNorm));
+                    }
+                }
+                score += termScore;
+            }
+
+            if (score > threshold) {
+                top.add(new Hit(doc, score));
+                if (top.size() > limit) {
+                    top.poll();
+                }
+                if (top.size() == limit) {
+                    threshold = top.peek().score;
+                    while (firstEssential < queryTermCount && prefixBound[firstEssential] <= threshold) {
+                        firstEssential++;
+                    }
+                }
+            }
+        }
+
+        List<String> results = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            results.add(docProducts[top.poll().doc]);
+        }
+        Collections.reverse(results);
+        return results;
+    }
+
+    private float idf(int documentFrequency) {
+        return (float) Math.log(1 + (liveCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    private void addLocked(String productId, List<String> nameTokens, List<String> descTokens) {
+        Map<Integer, Integer> freqs = new HashMap<>();
+        for (String token : nameTokens) {
+            freqs.merge(termId(token), 1 << 16, Integer::sum);
+        }
+        for (String token : descTokens) {
+            freqs.merge(termId(token), 1, Integer::sum);
+        }
+
+        int doc = nextDoc++;
+        ensureDocCapacity(doc + 1);
+        int[] termList = new int[freqs.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : freqs.entrySet()) {
+            postings.get(entry.getKey()).add(doc, entry.getValue());
+            termList[i++] = entry.getKey();
+        }
+        docIds.put(productId, doc);
+        docProducts[doc] = productId;
+        docTerms[doc] = termList;
+        nameLengths[doc] = nameTokens.size();
+        descLengths[doc] = descTokens.size();
+        liveDocs.set(doc);
+        liveCount++;
+        totalNameLength += nameTokens.size();
+        totalDescLength += descTokens.size();
+    }
+
+    private void removeLocked(String productId) {
+        Integer doc = docIds.remove(productId);
+        if (doc == null) {
+            return;
+        }
+        for (int term : docTerms[doc]) {
+            postings.get(term).live--;
+        }
+        liveDocs.clear(doc);
+        liveCount--;
+        totalNameLength -= nameLengths[doc];
+        totalDescLength -= descLengths[doc];
+    }
+
+    private int termId(String token) {
+        Integer id = termIds.get(token);
+        if (id != null) {
+            return id;
+        }
+        id = terms.size();
+        terms.add(token);
+        postings.add(new Postings());
+        termIds.put(token, id);
+        sortedTerms.add(token);
+        int maxDistance = maxDistance(token);
+        for (String variant : deletionVariants(token, maxDistance)) {
+            int[] ids = deletes.get(variant);
+            if (ids == null) {
+                deletes.put(variant, new int[] {id});
+            } else {
+                int[] grown = Arrays.copyOf(ids, ids.length + 1);
+                grown[ids.length] = id;
+                deletes.put(variant, grown);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Renumbers live documents densely and drops dead postings once dead
+     * documents outnumber live ones
+     */
+    private void compactIfSparse() {
+        if (nextDoc - liveCount <= Math.max(MIN_COMPACT_DEAD, liveCount)) {
+            return;
+        }
+        int newCount = 0;
+        int[] remap = new int[nextDoc];
+        Arrays.fill(remap, -1);
+        for (int doc = liveDocs.nextSetBit(0); doc >= 0; doc = liveDocs.nextSetBit(doc + 1)) {
+            remap[doc] = newCount;
+            docProducts[newCount] = docProducts[doc];
+            docTerms[newCount] = docTerms[doc];
+            nameLengths[newCount] = nameLengths[doc];
+            descLengths[newCount] = descLengths[doc];
+            docIds.put(docProducts[newCount], newCount);
+            newCount++;
+        }
+        Arrays.fill(docProducts, newCount, nextDoc, null);
+        Arrays.fill(docTerms, newCount, nextDoc, null);
+        for (Postings list : postings) {
+            list.compact(remap);
+        }
+        liveDocs.clear();
+        liveDocs.set(0, newCount);
+        nextDoc = newCount;
+    }
+
+    private void ensureDocCapacity(int capacity) {
+        if (capacity > docProducts.length) {
+            int size = Math.max(capacity, docProducts.length * 2);
+            docProducts = Arrays.copyOf(docProducts, size);
+            docTerms = Arrays.copyOf(docTerms, size);
+            nameLengths = Arrays.copyOf(nameLengths, size);
+            descLengths = Arrays.copyOf(descLengths, size);
+        }
+    }
+
+    private static int maxDistance(String token) {
+        if (token.length() < 4 || !isAlphabetic(token)) {
+            return 0;
+        }
+        return token.length() < 8 ? 1 : 2;
+    }
+
+    private static boolean isAlphabetic(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            if (!Character.isLetter(token.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static Set<String> deletionVariants(String token, int maxDistance) {
+        Set<String> variants = new HashSet<>();
+        variants.add(token);
+        List<String> frontier = List.of(token);
+        for (int d = 0; d < maxDistance; d++) {
+            List<String> next = new ArrayList<>();
+            for (String word : frontier) {
+                for (int i = 0; i < word.length(); i++) {
+                    String variant = word.substring(0, i) + word.substring(i + 1);
+                    if (variants.add(variant)) {
+                        next.add(variant);
+                    }
+                }
+            }
+            frontier = next;
+        }
+        return variants;
+    }
+
+    /**
+     * Optimal string alignment distance, giving up once it exceeds the limit
+     */
+    static int editDistance(String a, String b, int limit) {
+        if (Math.abs(a.length() - b.length()) > limit) {
+            return limit + 1;
+        }
+        int[] previous2 = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, previous2[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[b.length()];
+    }
+
+    /**
+     * Posting list for one term: document numbers ascending, each with its
+     * name frequency in the high 16 bits and description frequency in the low 16
+     */
+    private static final class Postings {
+        int[] docs = new int[2];
+        int[] freqs = new int[2];
+        int size;
+        int live;
+
+        void add(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+            live++;
+        }
+
+        void compact(int[] remap) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int doc = remap[docs[i]];
+                if (doc >= 0) {
+                    docs[kept] = doc;
+                    freqs[kept] = freqs[i];
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+    }
+
+    private final class Cursor {
+        final int queryTerm;
+        final Postings list;
+        final float idf;
+        final float weight;
+        int position;
+
+        Cursor(int queryTerm, Postings list, float idf, float weight) {
+            this.queryTerm = queryTerm;
+            this.list = list;
+            this.idf = idf;
+            this.weight = weight;
+        }
+
+        /**
+         * Highest score this posting list can contribute, reached as the
+         * term frequency saturates
+         */
+        float maxScore() {
+            return weight * idf * (K1 + 1);
+        }
+
+        /**
+         * Moves forward to the first posting at or after a document
+         * @return Whether the list contains the document
+         */
+        boolean seek(int doc) {
+            int low = position;
+            int high = list.size - 1;
+            // Gallop, then binary search the bracketed range
+            int step = 1;
+            while (low + step <= high && list.docs[low + step] < doc) {
+                low += step;
+                step <<= 1;
+            }
+            high = Math.min(high, low + step);
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (list.docs[mid] < doc) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            position = low;
+            return position < list.size && list.docs[position] == doc;
+        }
+
+        float score(float nameNorm, float descNorm) {
+            int freq = list.freqs[position];
+            float tf = NAME_BOOST * (freq >>> 16) / nameNorm + (freq & 0xFFFF) / descNorm;
+            return weight * idf * tf * (K1 + 1) / (tf + K1);
+        }
+
+        void skipDead() {
+            while (position < list.size && !liveDocs.get(list.docs[position])) {
+                position++;
+            }
+        }
+    }
+
+    private static final class Hit implements Comparable<Hit> {
+        final int doc;
+        final float score;
+
+        Hit(int doc, float score) {
+            this.doc = doc;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Hit other) {
+            // Lower score first; on ties the later document is evicted first
+            int byScore = Float.compare(score, other.score);
+            return byScore != 0 ? byScore : Integer.compare(other.doc, doc);
+        }
+    }
+}
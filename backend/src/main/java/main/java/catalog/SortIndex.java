@@ -0,0 +1,189 @@
+package main.java.catalog;
+
+import main.java.Product;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Ordered indexes over product price, rating, stock and creation time.
+ *
+ * Each field keeps a sorted set of (value, product ID) keys, so a range in
+ * either direction is a tree descent to its first key followed by an
+ * in-order walk: O(log n + offset + page) instead of sorting the catalog
+ * per request. Ties are broken by product ID so pages are stable.
+ */
+public class SortIndex {
+    /**
+     * Sortable product fields
+     */
+    public enum Field {
+        PRICE(Product::getPrice),
+        RATING(Product::getRating),
+        STOCK(Product::getStock),
+        CREATED(Product::getCreatedAt);
+
+        private final ToDoubleFunction<Product> value;
+
+        Field(ToDoubleFunction<Product> value) {
+            this.value = value;
+        }
+
+        /**
+         * Parses a field name such as "price" or "created"
+         * @return The field, or null if the name is not sortable
+         */
+        public static Field parse(String name) {
+            for (Field field : values()) {
+                if (field.name().equalsIgnoreCase(name)) {
+                    return field;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Field, TreeSet<Key>> trees = new EnumMap<>(Field.class);
+    // Keys currently indexed per product, to find them again on update
+    private final Map<String, Key[]> keys = new HashMap<>();
+
+    public SortIndex() {
+        for (Field field : Field.values()) {
+            trees.put(field, new TreeSet<>());
+        }
+    }
+
+    /**
+     * Adds a product, replacing any earlier version stored under the same ID
+     * @param productId The ID the product is stored under
+     * @param product The product whose fields are indexed
+     */
+    public void index(String productId, Product product) {
+        Field[] fields = Field.values();
+        Key[] current = new Key[fields.length];
+        for (Field field : fields) {
+            current[field.ordinal()] = new Key(field.value.applyAsDouble(product), productId);
+        }
+        lock.writeLock().lock();
+        try {
+            Key[] previous = keys.put(productId, current);
+            for (Field field : fields) {
+                TreeSet<Key> tree = trees.get(field);
+                if (previous != null) {
+                    if (previous[field.ordinal()].value == current[field.ordinal()].value) {
+                        continue;
+                    }
+                    tree.remove(previous[field.ordinal()]);
+                }
+                tree.add(current[field.ordinal()]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a product if present
+     * @param productId The ID the product is stored under
+     */
+    public void remove(String productId) {
+        lock.writeLock().lock();
+        try {
+            Key[] previous = keys.remove(productId);
+            if (previous != null) {
+                for (Field field : Field.values()) {
+                    trees.get(field).remove(previous[field.ordinal()]);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops every product
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            keys.clear();
+            trees.values().forEach(TreeSet::clear);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Lists product IDs in field order within an inclusive range
+     * @param field The field to order and bound by
+     * @param min Lowest value, or null for no lower bound
+     * @param max Highest value, or null for no upper bound
+     * @param descending Whether to list highest values first
+     * @param offset Number of matches to skip
+     * @param limit Maximum number of IDs to return
+     * @return Matching product IDs in order
+     */
+    public List<String> range(Field field, Double min, Double max, boolean descending, int offset, int limit) {
+        return range(field, min, max, descending, offset, limit, id -> true);
+    }
+
+    /**
+     * Like {@link #range(Field, Double, Double, boolean, int, int)}, counting
+     * offset and limit only over IDs the filter accepts
+     */
+    public List<String> range(Field field, Double min, Double max, boolean descending, int offset, int limit,
+                              Predicate<String> filter) {
+        List<String> page = new ArrayList<>(Math.max(0, Math.min(limit, 256)));
+        if (min != null && max != null && min > max) {
+            return page;
+        }
+        lock.readLock().lock();
+        try {
+            NavigableSet<Key> tree = trees.get(field);
+            if (min != null) {
+                tree = tree.tailSet(new Key(min, ""), true);
+            }
+            if (max != null) {
+                // Every key with value <= max sorts before (nextUp(max), "")
+                tree = tree.headSet(new Key(Math.nextUp(max), ""), false);
+            }
+            Iterator<Key> keys = descending ? tree.descendingIterator() : tree.iterator();
+            int skipped = 0;
+            while (keys.hasNext() && page.size() < limit) {
+                String id = keys.next().productId;
+                if (filter.test(id) && skipped++ >= offset) {
+                    page.add(id);
+                }
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static final class Key implements Comparable<Key> {
+        final double value;
+        final String productId;
+
+        Key(double value, String productId) {
+            this.value = value;
+            this.productId = productId;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int byValue = Double.compare(value, other.value);
+            return byValue != 0 ? byValue : productId.compareTo(other.productId);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package main.java.catalog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns a dense int code to each distinct string so repeated values such
+ * as category names are stored once. Codes are never reused.
+ * Not thread-safe; callers synchronize.
+ */
+public class StringDictionary {
+    public static final int NULL_CODE = -1;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    /**
+     * @return The code for the value, adding it if new
+     */
+    public int intern(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            values.add(value);
+            codes.put(value, code);
+        }
+        return code;
+    }
+
+    /**
+     * @return The code for the value, or NULL_CODE if it was never interned
+     */
+    public int lookup(String value) {
+        Integer code = value != null ? codes.get(value) : null;
+        return code != null ? code : NULL_CODE;
+    }
+
+    public String get(int code) {
+        return code == NULL_CODE ? null : values.get(code);
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
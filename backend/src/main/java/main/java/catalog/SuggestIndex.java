@@ -0,0 +1,557 @@
+package main.java.catalog;
+
+import main.java.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Typeahead index over product names and categories.
+ *
+ * Names are keyed by their normalized text and by every word suffix of it,
+ * so "wireless head" and "head" both reach "Wireless Headphones". Keys live
+ * in a path-compressed (radix) trie, and each node keeps the best
+ * {@link #TOP_N} suggestions of its subtree, so a lookup walks the prefix and
+ * copies that list; it never visits the subtree.
+ *
+ * Inserting an entry merges it into the lists along its key path. Removing
+ * one rebuilds a node's list from its children's lists, only up to the first
+ * ancestor that did not list the entry.
+ */
+public class SuggestIndex {
+    /** Suggestions kept per prefix, and the most a lookup can return */
+    public static final int TOP_N = 10;
+    private static final int MAX_KEY_LENGTH = 48;
+    private static final int MAX_WORD_SUFFIXES = 4;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node("");
+    private final Map<String, ProductEntry> productEntries = new HashMap<>();
+    private final Map<String, CategoryEntry> categoryEntries = new HashMap<>();
+
+    /**
+     * Adds a product, replacing any earlier version stored under the same ID
+     * @param productId The ID the product is stored under
+     * @param product The product whose name and category are suggested
+     */
+    public void index(String productId, Product product) {
+        List<String> keys = keysFor(product.getName());
+        String category = CategoryRegistry.canonical(product.getCategory());
+        lock.writeLock().lock();
+        try {
+            removeLocked(productId);
+            Entry entry = new Entry(new Suggestion(product.getName(), Suggestion.Type.PRODUCT, productId),
+                    product.getRating(), keys);
+            for (String key : keys) {
+                insert(key, entry);
+            }
+            productEntries.put(productId, new ProductEntry(entry, category));
+            adjustCategory(category, product.getCategory(), 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a product if present
+     * @param productId The ID the product is stored under
+     */
+    public void remove(String productId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops every entry
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            root.clear();
+            productEntries.clear();
+            categoryEntries.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Suggests categories and products for a partially typed query.
+     * Categories come first, then products by rating.
+     * @param prefix The text typed so far
+     * @param limit Maximum number of suggestions, at most {@link #TOP_N}
+     * @return Suggestions whose name or one of its words starts with the prefix
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String key = queryKey(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            Node node = find(key);
+            List<Suggestion> results = new ArrayList<>();
+            if (node != null) {
+                for (int i = 0; i < node.topSize && results.size() < limit; i++) {
+                    results.add(node.top[i].suggestion);
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Trie keys for a name: its normalized words joined by single spaces,
+     * plus the same starting at each of the following words
+     */
+    static List<String> keysFor(String name) {
+        List<String> words = SearchIndex.tokenize(name);
+        List<String> keys = new ArrayList<>();
+        for (int start = 0; start < words.size() && start < MAX_WORD_SUFFIXES; start++) {
+            String key = truncate(String.join(" ", words.subList(start, words.size())));
+            if (!keys.contains(key)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Normalizes typed text like {@link #keysFor}, keeping a trailing space so
+     * "coffee " only matches names with a word after "coffee"
+     */
+    static String queryKey(String prefix) {
+        if (prefix == null) {
+            return "";
+        }
+        String key = String.join(" ", SearchIndex.tokenize(prefix));
+        if (!key.isEmpty() && !Character.isLetterOrDigit(prefix.charAt(prefix.length() - 1))) {
+            key += " ";
+        }
+        return truncate(key);
+    }
+
+    private static String truncate(String key) {
+        return key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key;
+    }
+
+    private void removeLocked(String productId) {
+        ProductEntry previous = productEntries.remove(productId);
+        if (previous == null) {
+            return;
+        }
+        for (String key : previous.entry.keys) {
+            delete(key, previous.entry);
+        }
+        adjustCategory(previous.category, null, -1);
+    }
+
+    /**
+     * Re-weights a category by its product count, dropping it at zero.
+     * The category is shown as first spelled by one of its products.
+     */
+    private void adjustCategory(String category, String displayName, int delta) {
+        if (category.isEmpty()) {
+            return;
+        }
+        CategoryEntry previous = categoryEntries.remove(category);
+        int count = (previous != null ? previous.count : 0) + delta;
+        if (previous == null) {
+            List<String> keys = keysFor(category);
+            Entry entry = new Entry(new Suggestion(displayName.trim(), Suggestion.Type.CATEGORY, null), count, keys);
+            for (String key : keys) {
+                insert(key, entry);
+            }
+            categoryEntries.put(category, new CategoryEntry(entry, count));
+            return;
+        }
+        Entry replacement = new Entry(previous.entry.suggestion, count, previous.entry.keys);
+        for (String key : previous.entry.keys) {
+            if (delta > 0) {
+                // Only moves up, so swap it in place instead of rebuilding lists
+                promote(key, previous.entry, replacement);
+            } else {
+                delete(key, previous.entry);
+                if (count > 0) {
+                    insert(key, replacement);
+                }
+            }
+        }
+        if (count > 0) {
+            categoryEntries.put(category, new CategoryEntry(replacement, count));
+        }
+    }
+
+    /**
+     * Finds the node whose subtree holds every key starting with a prefix
+     */
+    private Node find(String prefix) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            node = node.child(prefix.charAt(i));
+            if (node == null) {
+                return null;
+            }
+            int matched = node.match(prefix, i);
+            if (i + matched == prefix.length()) {
+                return node;
+            }
+            if (matched < node.edge.length()) {
+                return null;
+            }
+            i += matched;
+        }
+        return node;
+    }
+
+    private void insert(String key, Entry entry) {
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.child(key.charAt(i));
+            if (child == null) {
+                child = new Node(key.substring(i));
+                node.addChild(child);
+            } else {
+                int matched = child.match(key, i);
+                if (matched < child.edge.length()) {
+                    child = node.split(child, matched);
+                }
+            }
+            child.offer(entry);
+            i += child.edge.length();
+            node = child;
+        }
+        node.addTerminal(entry);
+    }
+
+    private void promote(String key, Entry entry, Entry replacement) {
+        Node node = root;
+        for (int i = 0; i < key.length(); i += node.edge.length()) {
+            node = node.child(key.charAt(i));
+            node.promote(entry, replacement);
+        }
+        node.removeTerminal(entry);
+        node.addTerminal(replacement);
+    }
+
+    private void delete(String key, Entry entry) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        for (int i = 0; i < key.length(); i += node.edge.length()) {
+            node = node.child(key.charAt(i));
+            if (node == null || node.match(key, i) < node.edge.length()) {
+                return;
+            }
+            path.add(node);
+        }
+        node.removeTerminal(entry);
+        for (int depth = path.size() - 1; depth > 0; depth--) {
+            node = path.get(depth);
+            if (node.isEmpty()) {
+                path.get(depth - 1).removeChild(node);
+                continue;
+            }
+            boolean listed = node.lists(entry);
+            if (node.terminals == null && node.children.length == 1) {
+                // Keep the tree path-compressed: absorb the only child left
+                node.absorbOnlyChild();
+            } else if (listed) {
+                node.rebuild();
+            }
+            if (!listed) {
+                // Ancestors only list what their children list
+                break;
+            }
+        }
+    }
+
+    /**
+     * A suggestion returned to the client
+     */
+    public static final class Suggestion {
+        public enum Type { PRODUCT, CATEGORY }
+
+        private final String text;
+        private final Type type;
+        private final String productId;
+
+        Suggestion(String text, Type type, String productId) {
+            this.text = text;
+            this.type = type;
+            this.productId = productId;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * @return The product ID, or null for a category
+         */
+        public String getProductId() {
+            return productId;
+        }
+    }
+
+    private static final class Entry {
+        final Suggestion suggestion;
+        final double weight;
+        final List<String> keys;
+
+        Entry(Suggestion suggestion, double weight, List<String> keys) {
+            this.suggestion = suggestion;
+            this.weight = weight;
+            this.keys = keys;
+        }
+    }
+
+    private static final class ProductEntry {
+        final Entry entry;
+        final String category;
+
+        ProductEntry(Entry entry, String category) {
+            this.entry = entry;
+            this.category = category;
+        }
+    }
+
+    private static final class CategoryEntry {
+        final Entry entry;
+        final int count;
+
+        CategoryEntry(Entry entry, int count) {
+            this.entry = entry;
+            this.count = count;
+        }
+    }
+
+    /**
+     * A radix trie node: the edge from its parent carries one or more chars
+     */
+    private static final class Node {
+        private static final char[] NO_LABELS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final Entry[] NO_ENTRIES = new Entry[0];
+
+        String edge;
+        // First char of each child's edge, sorted for binary search
+        char[] labels = NO_LABELS;
+        Node[] children = NO_CHILDREN;
+        // Entries whose key ends here; usually none or one
+        List<Entry> terminals;
+        // Best entries of this subtree in ranking order, grown up to TOP_N
+        Entry[] top = NO_ENTRIES;
+        int topSize;
+
+        Node(String edge) {
+            this.edge = edge;
+        }
+
+        Node child(char label) {
+            int i = Arrays.binarySearch(labels, label);
+            return i >= 0 ? children[i] : null;
+        }
+
+        /**
+         * @return How many chars of the edge match the key from an offset
+         */
+        int match(String key, int offset) {
+            int limit = Math.min(edge.length(), key.length() - offset);
+            int matched = 0;
+            while (matched < limit && edge.charAt(matched) == key.charAt(offset + matched)) {
+                matched++;
+            }
+            return matched;
+        }
+
+        void addChild(Node node) {
+            int at = -Arrays.binarySearch(labels, node.edge.charAt(0)) - 1;
+            char[] grownLabels = new char[labels.length + 1];
+            Node[] grownChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, grownLabels, 0, at);
+            System.arraycopy(children, 0, grownChildren, 0, at);
+            System.arraycopy(labels, at, grownLabels, at + 1, labels.length - at);
+            System.arraycopy(children, at, grownChildren, at + 1, children.length - at);
+            grownLabels[at] = node.edge.charAt(0);
+            grownChildren[at] = node;
+            labels = grownLabels;
+            children = grownChildren;
+        }
+
+        void removeChild(Node node) {
+            int i = Arrays.binarySearch(labels, node.edge.charAt(0));
+            char[] shrunkLabels = new char[labels.length - 1];
+            Node[] shrunkChildren = new Node[children.length - 1];
+            System.arraycopy(labels, 0, shrunkLabels, 0, i);
+            System.arraycopy(children, 0, shrunkChildren, 0, i);
+            System.arraycopy(labels, i + 1, shrunkLabels, i, labels.length - i - 1);
+            System.arraycopy(children, i + 1, shrunkChildren, i, children.length - i - 1);
+            labels = shrunkLabels;
+            children = shrunkChildren;
+        }
+
+        /**
+         * Splits a child's edge after some chars, inserting a node that
+         * takes over the child's place and top list
+         * @return The inserted node
+         */
+        Node split(Node child, int at) {
+            Node middle = new Node(child.edge.substring(0, at));
+            child.edge = child.edge.substring(at);
+            middle.labels = new char[] {child.edge.charAt(0)};
+            middle.children = new Node[] {child};
+            middle.top = Arrays.copyOf(child.top, child.top.length);
+            middle.topSize = child.topSize;
+            children[Arrays.binarySearch(labels, middle.edge.charAt(0))] = middle;
+            return middle;
+        }
+
+        /**
+         * Merges the only child into this node, which has no entries of its own
+         */
+        void absorbOnlyChild() {
+            Node only = children[0];
+            edge = edge + only.edge;
+            labels = only.labels;
+            children = only.children;
+            terminals = only.terminals;
+            top = only.top;
+            topSize = only.topSize;
+        }
+
+        void addTerminal(Entry entry) {
+            if (terminals == null) {
+                terminals = new ArrayList<>(1);
+            }
+            terminals.add(entry);
+        }
+
+        void removeTerminal(Entry entry) {
+            if (terminals != null) {
+                terminals.remove(entry);
+                if (terminals.isEmpty()) {
+                    terminals = null;
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return terminals == null && children.length == 0;
+        }
+
+        boolean lists(Entry entry) {
+            for (int i = 0; i < topSize; i++) {
+                if (top[i] == entry) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Merges an entry into the top list if it ranks high enough
+         */
+        void offer(Entry entry) {
+            if (lists(entry)) {
+                return;
+            }
+            if (topSize == TOP_N && rank(entry, top[TOP_N - 1]) >= 0) {
+                return;
+            }
+            if (topSize == top.length) {
+                top = Arrays.copyOf(top, Math.min(TOP_N, Math.max(1, top.length * 2)));
+            }
+            int at = topSize < TOP_N ? topSize : TOP_N - 1;
+            while (at > 0 && rank(entry, top[at - 1]) < 0) {
+                top[at] = top[at - 1];
+                at--;
+            }
+            top[at] = entry;
+            if (topSize < TOP_N) {
+                topSize++;
+            }
+        }
+
+        /**
+         * Swaps in a better-ranked version of an entry, or offers it if the
+         * old version was not listed
+         */
+        void promote(Entry entry, Entry replacement) {
+            int at = 0;
+            while (at < topSize && top[at] != entry) {
+                at++;
+            }
+            if (at == topSize) {
+                offer(replacement);
+                return;
+            }
+            while (at > 0 && rank(replacement, top[at - 1]) < 0) {
+                top[at] = top[at - 1];
+                at--;
+            }
+            top[at] = replacement;
+        }
+
+        /**
+         * Recomputes the top list from this node's own entries and its
+         * children's top lists
+         */
+        void rebuild() {
+            top = NO_ENTRIES;
+            topSize = 0;
+            if (terminals != null) {
+                for (Entry entry : terminals) {
+                    offer(entry);
+                }
+            }
+            for (Node child : children) {
+                for (int i = 0; i < child.topSize; i++) {
+                    offer(child.top[i]);
+                }
+            }
+        }
+
+        /**
+         * Orders categories before products, then by weight, then by text
+         */
+        static int rank(Entry a, Entry b) {
+            if (a.suggestion.getType() != b.suggestion.getType()) {
+                return a.suggestion.getType() == Suggestion.Type.CATEGORY ? -1 : 1;
+            }
+            int byWeight = Double.compare(b.weight, a.weight);
+            if (byWeight != 0) {
+                return byWeight;
+            }
+            int byText = a.suggestion.getText().compareTo(b.suggestion.getText());
+            if (byText != 0) {
+                return byText;
+            }
+            return String.valueOf(a.suggestion.getProductId()).compareTo(String.valueOf(b.suggestion.getProductId()));
+        }
+
+        void clear() {
+            labels = NO_LABELS;
+            children = NO_CHILDREN;
+            terminals = null;
+            top = NO_ENTRIES;
+            topSize = 0;
+        }
+    }
+}
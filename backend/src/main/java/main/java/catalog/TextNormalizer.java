@@ -0,0 +1,38 @@
+package main.java.catalog;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Normalizes text for matching: lowercased and accent-folded, so
+ * "Café" and "cafe" compare equal.
+ */
+public final class TextNormalizer {
+
+    private TextNormalizer() {
+        // Utility class
+    }
+
+    /**
+     * @param text The text to normalize, may be null
+     * @return The lowercased, accent-folded text, or "" for null
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        if (!isAscii(text)) {
+            text = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+        }
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,98 @@
+package main.java.catalog;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Column of nullable strings stored as UTF-8 in one shared byte array,
+ * addressed by row. Replaced values leave garbage behind that is reclaimed
+ * by compaction once it outweighs the live data.
+ * Not thread-safe; callers synchronize.
+ */
+class Utf8Column {
+    private byte[] data = new byte[4096];
+    private int used;
+    private long garbage;
+    private int[] offsets = new int[0];
+    private int[] lengths = new int[0];
+
+    void ensureRows(int rows) {
+        if (rows > offsets.length) {
+            int capacity = Math.max(rows, offsets.length * 2);
+            int previous = lengths.length;
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            Arrays.fill(lengths, previous, capacity, -1);
+        }
+    }
+
+    void set(int row, String value) {
+        clear(row);
+        if (value == null) {
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (garbage > used / 2 && garbage > 1 << 20) {
+            compact();
+        }
+        ensureBytes(bytes.length);
+        System.arraycopy(bytes, 0, data, used, bytes.length);
+        offsets[row] = used;
+        lengths[row] = bytes.length;
+        used += bytes.length;
+    }
+
+    String get(int row) {
+        int length = lengths[row];
+        return length < 0 ? null : new String(data, offsets[row], length, StandardCharsets.UTF_8);
+    }
+
+    boolean matches(int row, byte[] value) {
+        int length = lengths[row];
+        return length == value.length
+                && Arrays.equals(data, offsets[row], offsets[row] + length, value, 0, length);
+    }
+
+    void clear(int row) {
+        if (lengths[row] >= 0) {
+            garbage += lengths[row];
+            lengths[row] = -1;
+        }
+    }
+
+    void clearAll() {
+        used = 0;
+        garbage = 0;
+        Arrays.fill(lengths, -1);
+    }
+
+    long footprintBytes() {
+        return data.length + 4L * offsets.length + 4L * lengths.length;
+    }
+
+    private void ensureBytes(int extra) {
+        long needed = (long) used + extra;
+        if (needed > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("String column is full");
+        }
+        if (needed > data.length) {
+            data = Arrays.copyOf(data, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(needed, data.length * 2L)));
+        }
+    }
+
+    private void compact() {
+        byte[] compacted = new byte[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(4096L, (used - garbage) * 2))];
+        int position = 0;
+        for (int row = 0; row < lengths.length; row++) {
+            int length = lengths[row];
+            if (length > 0) {
+                System.arraycopy(data, offsets[row], compacted, position, length);
+                offsets[row] = position;
+                position += length;
+            }
+        }
+        data = compacted;
+        used = position;
+        garbage = 0;
+    }
+}
@@ -3,14 +3,22 @@ package main.java.entities;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.UUID;
 
 /**
  * JPA Entity representing a product in the e-commerce system.
+ * Indexes follow the catalog access patterns: browse by category, list active
+ * products, featured lists ordered by rating and name prefix search.
  */
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = {
+    @Index(name = "idx_products_category_active", columnList = "category, active, id"),
+    @Index(name = "idx_products_active_id", columnList = "active, id"),
+    @Index(name = "idx_products_active_rating", columnList = "active, rating DESC"),
+    @Index(name = "idx_products_active_name_key", columnList = "active, name_key")
+})
 public class Product {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -19,6 +27,10 @@ public class Product {
     @Column(nullable = false, length = 100)
     private String name;
     
+    // Lowercased copy of name so prefix search can use an index
+    @Column(name = "name_key", nullable = false, length = 100)
+    private String nameKey;
+    
     @Column(columnDefinition = "TEXT")
     private String description;
     
@@ -57,6 +69,7 @@ public class Product {
     
     public Product(String name, String description, BigDecimal price, int stock, String category) {
         this.name = name;
+        this.nameKey = toNameKey(name);
         this.description = description;
         this.price = price;
         this.stock = stock;
@@ -74,6 +87,11 @@ public class Product {
     
     public void setName(String name) {
         this.name = name;
+        this.nameKey = toNameKey(name);
+    }
+    
+    public String getNameKey() {
+        return nameKey;
     }
     
     public String getDescription() {
@@ -172,11 +190,24 @@ public class Product {
         this.rating = totalRating / this.reviewCount;
     }
     
+    @PrePersist
+    public void prePersist() {
+        this.nameKey = toNameKey(name);
+    }
+    
     @PreUpdate
     public void preUpdate() {
+        this.nameKey = toNameKey(name);
         this.updatedAt = LocalDateTime.now();
     }
     
+    /**
+     * Normalizes a product name for indexed prefix lookups.
+     */
+    public static String toNameKey(String name) {
+        return name != null ? name.trim().toLowerCase(Locale.ROOT) : "";
+    }
+    
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
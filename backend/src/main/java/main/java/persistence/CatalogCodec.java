@@ -0,0 +1,118 @@
+package main.java.persistence;
+
+import main.java.PasswordHash;
+import main.java.Product;
+import main.java.User;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary encoding of products and users shared by snapshots and the
+ * change log. Strings are length-prefixed UTF-8 with -1 marking null.
+ * Users are written with a salted password hash, never the password.
+ * Fields added later go at the end of a record and are read only if the
+ * record is long enough, so older files stay readable.
+ */
+public final class CatalogCodec {
+
+    private CatalogCodec() {
+        // Utility class
+    }
+
+    public static byte[] encodeProduct(Product product) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, product.getId());
+            writeString(out, product.getName());
+            writeString(out, product.getDescription());
+            writeString(out, product.getCategory());
+            writeString(out, product.getImageUrl());
+            out.writeDouble(product.getPrice());
+            out.writeInt(product.getStock());
+            out.writeDouble(product.getRating());
+            out.writeInt(product.getReviewCount());
+            out.writeBoolean(product.isActive());
+            out.writeLong(product.getCreatedAt());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param buffer Exactly one encoded product
+     */
+    public static Product decodeProduct(ByteBuffer buffer) {
+        String id = readString(buffer);
+        String name = readString(buffer);
+        String description = readString(buffer);
+        String category = readString(buffer);
+        String imageUrl = readString(buffer);
+        double price = buffer.getDouble();
+        int stock = buffer.getInt();
+        double rating = buffer.getDouble();
+        int reviewCount = buffer.getInt();
+        boolean active = buffer.get() != 0;
+        long createdAt = buffer.remaining() >= 8 ? buffer.getLong() : 0L;
+        return Product.restore(id, name, description, price, stock, category, imageUrl, rating, reviewCount, active,
+                createdAt);
+    }
+
+    public static byte[] encodeUser(User user) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, user.getUsername());
+            writeString(out, user.getPasswordHash());
+            writeString(out, user.getEmail());
+            out.writeBoolean(user.isActive());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param buffer Exactly one encoded user
+     * @throws IllegalArgumentException if the record holds no password hash
+     */
+    public static User decodeUser(ByteBuffer buffer) {
+        String username = readString(buffer);
+        String passwordHash = readString(buffer);
+        String email = readString(buffer);
+        boolean active = buffer.get() != 0;
+        if (!PasswordHash.isEncoded(passwordHash)) {
+            throw new IllegalArgumentException("User record for " + username + " holds no password hash");
+        }
+        return User.restore(username, passwordHash, email, active);
+    }
+
+    public static byte[] encodeString(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static String decodeString(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        return length < 0 ? null : decodeString(buffer, length);
+    }
+}
@@ -0,0 +1,204 @@
+package main.java.persistence;
+
+import main.java.Product;
+import main.java.User;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Point-in-time binary image of the catalog and user maps.
+ *
+ * Layout: magic, format version, change log sequence the snapshot covers,
+ * product count and records, user count and records. Each record is
+ * length-prefixed and encoded by {@link CatalogCodec}.
+ * Files are written to a temporary file and atomically renamed, so a
+ * crash mid-write never leaves a partial snapshot behind. Neither writing
+ * nor reading leaves the file memory-mapped, since Windows refuses to
+ * truncate or replace a mapped file.
+ */
+public class CatalogSnapshot {
+    private static final int MAGIC = 0x53414453; // "SADS"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final long sequence;
+    private final List<Product> products;
+    private final List<User> users;
+
+    private CatalogSnapshot(long sequence, List<Product> products, List<User> users) {
+        this.sequence = sequence;
+        this.products = products;
+        this.users = users;
+    }
+
+    /**
+     * @return The change log sequence; records at or after it must be replayed
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    public List<User> getUsers() {
+        return users;
+    }
+
+    /**
+     * Writes a snapshot of the given products and users
+     * @param file The target file, replaced atomically
+     * @param sequence The first change log sequence not covered by this snapshot
+     */
+    public static void write(Path file, long sequence, Collection<Product> products, Collection<User> users)
+            throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ChannelWriter writer = new ChannelWriter(channel);
+            writer.ensure(HEADER_SIZE);
+            writer.buffer.putInt(MAGIC);
+            writer.buffer.putInt(FORMAT_VERSION);
+            writer.buffer.putLong(sequence);
+
+            // Counts are patched in afterwards since the collections may be live views
+            long productCountPosition = writer.position();
+            writer.ensure(4);
+            writer.buffer.putInt(0);
+            int productCount = 0;
+            for (Product product : products) {
+                writer.putRecord(CatalogCodec.encodeProduct(product));
+                productCount++;
+            }
+
+            long userCountPosition = writer.position();
+            writer.ensure(4);
+            writer.buffer.putInt(0);
+            int userCount = 0;
+            for (User user : users) {
+                writer.putRecord(CatalogCodec.encodeUser(user));
+                userCount++;
+            }
+
+            writer.flush();
+            writeInt(channel, productCountPosition, productCount);
+            writeInt(channel, userCountPosition, userCount);
+            channel.force(false);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a snapshot
+     * @param file The snapshot file
+     * @return The decoded snapshot
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    public static CatalogSnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large to read: " + size + " bytes");
+            }
+            ByteBuffer buffer = readFully(channel, (int) size);
+            if (size < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a catalog snapshot: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + file);
+            }
+            long sequence = buffer.getLong();
+
+            int productCount = buffer.getInt();
+            List<Product> products = new ArrayList<>(productCount);
+            for (int i = 0; i < productCount; i++) {
+                int length = buffer.getInt();
+                products.add(CatalogCodec.decodeProduct(buffer.slice(buffer.position(), length)));
+                buffer.position(buffer.position() + length);
+            }
+
+            int userCount = buffer.getInt();
+            List<User> users = new ArrayList<>(userCount);
+            for (int i = 0; i < userCount; i++) {
+                int length = buffer.getInt();
+                users.add(CatalogCodec.decodeUser(buffer.slice(buffer.position(), length)));
+                buffer.position(buffer.position() + length);
+            }
+            return new CatalogSnapshot(sequence, products, users);
+        }
+    }
+
+    /**
+     * Copies the whole file onto the heap, so no mapping keeps it open and
+     * the next snapshot can replace it, which Windows refuses while mapped
+     */
+    private static ByteBuffer readFully(FileChannel channel, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                throw new IOException("Snapshot ended early");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void writeInt(FileChannel channel, long position, int value) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(4).putInt(value).flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes, position + bytes.position());
+        }
+    }
+
+    /**
+     * Stages records in a direct buffer and writes it to the channel
+     * whenever the next write does not fit
+     */
+    private static final class ChannelWriter {
+        private final FileChannel channel;
+        private long flushed;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        ChannelWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        long position() {
+            return flushed + buffer.position();
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+                if (buffer.capacity() < bytes) {
+                    buffer = ByteBuffer.allocateDirect(bytes);
+                }
+            }
+        }
+
+        void putRecord(byte[] record) throws IOException {
+            ensure(4 + record.length);
+            buffer.putInt(record.length);
+            buffer.put(record);
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                flushed += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package main.java.persistence;
+
+import main.java.ProductService;
+import main.java.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the in-memory catalog and users recoverable across restarts.
+ *
+ * On startup {@link #recover()} loads the newest snapshot and replays the
+ * change log written since it. While running, every mutation is appended
+ * to the write-ahead change log and a background thread periodically
+ * writes a fresh snapshot and drops the log segments it covers.
+ */
+public class CatalogStore implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(CatalogStore.class);
+    private static final String SNAPSHOT_FILE = "catalog.snap";
+
+    private final Path directory;
+    private final ProductService productService;
+    private final UserService userService;
+    private ChangeLog changeLog;
+    private ScheduledExecutorService scheduler;
+
+    public CatalogStore(Path directory, ProductService productService, UserService userService) {
+        this.directory = directory;
+        this.productService = productService;
+        this.userService = userService;
+    }
+
+    /**
+     * Restores the services from the latest snapshot plus the change log.
+     * Must run before {@link #start}; a directory without a snapshot leaves
+     * the services untouched.
+     * @return true if state was restored
+     */
+    public boolean recover() throws IOException {
+        Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(snapshotFile)) {
+            return false;
+        }
+
+        long startedAt = System.nanoTime();
+        CatalogSnapshot snapshot = CatalogSnapshot.read(snapshotFile);
+        productService.restoreProducts(snapshot.getProducts());
+        userService.restoreUsers(snapshot.getUsers());
+
+        long[] replayed = {0};
+        ChangeLog.replay(directory, snapshot.getSequence(), (sequence, type, payload) -> {
+            apply(type, payload);
+            replayed[0]++;
+        });
+
+        logger.info("Restored {} products and {} users, replayed {} changes in {} ms",
+                snapshot.getProducts().size(), snapshot.getUsers().size(), replayed[0],
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        return true;
+    }
+
+    /**
+     * Starts logging mutations with group commit and schedules periodic snapshots
+     * @param intervalSeconds Seconds between snapshots
+     */
+    public void start(long intervalSeconds) throws IOException {
+        start(intervalSeconds, ChangeLog.Durability.GROUP);
+    }
+
+    /**
+     * Starts logging mutations and schedules periodic snapshots.
+     * Takes an initial snapshot when none exists so the log always has a base.
+     * @param intervalSeconds Seconds between snapshots
+     * @param durability How change log appends are synced to disk
+     */
+    public synchronized void start(long intervalSeconds, ChangeLog.Durability durability) throws IOException {
+        Files.createDirectories(directory);
+        if (!Files.exists(directory.resolve(SNAPSHOT_FILE))) {
+            // Any log left without a snapshot has no base to replay onto
+            deleteSegments();
+        }
+        changeLog = new ChangeLog(directory, durability);
+        productService.setChangeLog(changeLog);
+        userService.setChangeLog(changeLog);
+        if (!Files.exists(directory.resolve(SNAPSHOT_FILE))) {
+            snapshot();
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (Exception e) {
+                logger.error("Catalog snapshot failed", e);
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Writes a snapshot of the current state and drops covered log segments
+     */
+    public synchronized void snapshot() throws IOException {
+        // Every record before this sequence was applied before the copy below
+        long sequence = changeLog.roll();
+        CatalogSnapshot.write(directory.resolve(SNAPSHOT_FILE), sequence,
+                productService.getAllProductsIncludingInactive(),
+                userService.getAllUsersIncludingInactive());
+        changeLog.deleteSegmentsBefore(sequence);
+    }
+
+    /**
+     * @return true while started and the change log accepts writes
+     */
+    public synchronized boolean isWritable() {
+        return changeLog != null && changeLog.isUsable();
+    }
+
+    /**
+     * Stops the scheduler, takes a final snapshot and closes the log
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        if (changeLog != null) {
+            productService.setChangeLog(null);
+            userService.setChangeLog(null);
+            snapshot();
+            changeLog.close();
+            changeLog = null;
+        }
+    }
+
+    private void apply(byte type, ByteBuffer payload) {
+        switch (type) {
+            case ChangeLog.PRODUCT_UPSERT:
+                productService.applyProduct(CatalogCodec.decodeProduct(payload));
+                break;
+            case ChangeLog.PRODUCT_DELETE:
+                productService.deleteProduct(CatalogCodec.decodeString(payload, payload.remaining()));
+                break;
+            case ChangeLog.USER_UPSERT:
+                userService.applyUser(CatalogCodec.decodeUser(payload));
+                break;
+            default:
+                logger.warn("Skipping unknown change log record type {}", type);
+        }
+    }
+
+    private void deleteSegments() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "changes-*.log")) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,456 @@
+package main.java.persistence;
+
+import main.java.Product;
+import main.java.User;
+import main.java.tracing.Span;
+import main.java.tracing.Tracer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of catalog and user mutations since the last
+ * snapshot.
+ *
+ * Records carry the full state of the changed entity rather than the
+ * operation, so replaying a record that a snapshot already reflects is
+ * harmless. The log is split into segments named after the first sequence
+ * they hold; {@link #roll()} starts a new segment when a snapshot begins so
+ * older segments can be dropped once it is written.
+ *
+ * Record layout: payload length, CRC32 of the rest, sequence, type, payload.
+ * Replay stops at the first truncated or corrupt record.
+ *
+ * How an append becomes durable depends on {@link Durability}. In GROUP
+ * mode a single writer thread drains every record queued while the previous
+ * fsync was in flight and commits them with one write and one fsync, so
+ * concurrent writers share the cost of the sync.
+ */
+public class ChangeLog implements Closeable {
+    public static final byte PRODUCT_UPSERT = 1;
+    public static final byte PRODUCT_DELETE = 2;
+    public static final byte USER_UPSERT = 3;
+
+    private static final String SEGMENT_PREFIX = "changes-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int RECORD_HEADER_SIZE = 4 + 4 + 8 + 1;
+    private static final int MAX_PENDING = 65536;
+
+    /**
+     * When an append returns relative to its fsync
+     */
+    public enum Durability {
+        /** Each append writes and fsyncs before returning */
+        SYNC,
+        /** Appends wait for a shared fsync done by the writer thread */
+        GROUP,
+        /** Appends return once queued; the writer thread fsyncs in the background */
+        ASYNC
+    }
+
+    /**
+     * Receives records during replay
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        void handle(long sequence, byte type, ByteBuffer payload);
+    }
+
+    private final Path directory;
+    private final Durability durability;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private List<ByteBuffer> pending = new ArrayList<>();
+    private FileChannel segment;
+    private long nextSequence;
+    private long flushedSequence;
+    private IOException failure;
+    private boolean closed;
+    // Set by roll() to hold back appends; the writer reports whether it holds a batch
+    private boolean rolling;
+    private boolean writing;
+    private final Thread writer;
+
+    /**
+     * Opens the log in a directory with group commit
+     */
+    public ChangeLog(Path directory) throws IOException {
+        this(directory, Durability.GROUP);
+    }
+
+    /**
+     * Opens the log in a directory, continuing after the highest sequence
+     * already on disk
+     * @param directory The log directory
+     * @param durability How appends are synced
+     */
+    public ChangeLog(Path directory, Durability durability) throws IOException {
+        this.directory = directory;
+        this.durability = durability;
+        Files.createDirectories(directory);
+        this.nextSequence = Math.max(replay(directory, 1, (sequence, type, payload) -> { }), 0) + 1;
+        this.flushedSequence = nextSequence - 1;
+        openSegment();
+        if (durability == Durability.SYNC) {
+            writer = null;
+        } else {
+            writer = new Thread(this::runWriter, "change-log-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    public void logProduct(Product product) {
+        append(PRODUCT_UPSERT, CatalogCodec.encodeProduct(product));
+    }
+
+    public void logProductDelete(String id) {
+        append(PRODUCT_DELETE, CatalogCodec.encodeString(id));
+    }
+
+    public void logUser(User user) {
+        append(USER_UPSERT, CatalogCodec.encodeUser(user));
+    }
+
+    /**
+     * Appends a record. Returns once the record is as durable as the
+     * configured {@link Durability} requires.
+     * @return The sequence assigned to the record
+     * @throws UncheckedIOException if the log cannot be written
+     */
+    public long append(byte type, byte[] payload) {
+        try (Span span = Tracer.span("ChangeLog.append")) {
+            span.attribute("durability", durability);
+            lock.lock();
+            try {
+                checkUsable();
+                // Bound the ASYNC backlog so an overloaded disk slows writers instead of exhausting memory
+                while (rolling || (durability == Durability.ASYNC && pending.size() >= MAX_PENDING)) {
+                    flushed.awaitUninterruptibly();
+                    checkUsable();
+                }
+                long sequence = nextSequence++;
+                ByteBuffer record = encodeRecord(sequence, type, payload);
+                if (durability == Durability.SYNC) {
+                    try {
+                        writeFully(new ByteBuffer[] {record});
+                        segment.force(false);
+                        flushedSequence = sequence;
+                    } catch (IOException e) {
+                        failure = e;
+                        throw new UncheckedIOException("Failed to append to change log", e);
+                    }
+                    return sequence;
+                }
+                pending.add(record);
+                notEmpty.signal();
+                if (durability == Durability.GROUP) {
+                    awaitFlushed(sequence);
+                }
+                return sequence;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Waits until every record appended so far is on disk
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            awaitFlushed(nextSequence - 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the current segment and starts a new one. New appends wait
+     * until the switch is done; the ones already queued are written to the
+     * old segment first.
+     * @return The first sequence of the new segment
+     */
+    public long roll() throws IOException {
+        lock.lock();
+        try {
+            while (rolling) {
+                flushed.awaitUninterruptibly();
+            }
+            rolling = true;
+            try {
+                // Waiting releases the lock, so the writer can still be mid-batch
+                // until it has drained the queue and handed the segment back
+                while (!pending.isEmpty() || writing) {
+                    checkUsable();
+                    flushed.awaitUninterruptibly();
+                }
+                checkUsable();
+                try {
+                    segment.force(false);
+                    segment.close();
+                    openSegment();
+                } catch (IOException e) {
+                    failure = e;
+                    throw e;
+                }
+                return nextSequence;
+            } finally {
+                rolling = false;
+                flushed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes segments that only hold records before the given sequence
+     */
+    public void deleteSegmentsBefore(long sequence) throws IOException {
+        List<Long> starts = segmentStarts(directory);
+        for (int i = 0; i < starts.size() - 1; i++) {
+            if (starts.get(i + 1) <= sequence) {
+                Files.deleteIfExists(segmentPath(directory, starts.get(i)));
+            }
+        }
+    }
+
+    /**
+     * @return The sequence the next appended record will get
+     */
+    public long getNextSequence() {
+        lock.lock();
+        try {
+            return nextSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * @return false once closed or after a write failed, when appends throw
+     */
+    public boolean isUsable() {
+        lock.lock();
+        try {
+            return failure == null && !closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes outstanding records, stops the writer and closes the segment
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (failure == null) {
+                awaitFlushed(nextSequence - 1);
+            }
+            closed = true;
+            notEmpty.signalAll();
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (writer != null) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (segment.isOpen()) {
+            segment.force(false);
+            segment.close();
+        }
+    }
+
+    /**
+     * Writer thread for GROUP and ASYNC: takes everything queued since the
+     * last batch and commits it with a single write and fsync
+     */
+    private void runWriter() {
+        while (true) {
+            List<ByteBuffer> batch;
+            long batchEnd;
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                batchEnd = nextSequence - 1;
+                writing = true;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                writeFully(batch.toArray(new ByteBuffer[0]));
+                segment.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+
+            lock.lock();
+            try {
+                writing = false;
+                if (error != null) {
+                    failure = error;
+                } else {
+                    flushedSequence = batchEnd;
+                }
+                flushed.signalAll();
+                if (error != null) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void awaitFlushed(long sequence) {
+        while (flushedSequence < sequence) {
+            checkUsable();
+            flushed.awaitUninterruptibly();
+        }
+    }
+
+    private void checkUsable() {
+        if (failure != null) {
+            throw new UncheckedIOException("Change log is unavailable after a write failure", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Change log is closed");
+        }
+    }
+
+    private void writeFully(ByteBuffer[] records) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer record : records) {
+            remaining += record.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= segment.write(records);
+        }
+    }
+
+    /**
+     * Replays all intact records at or after a sequence, oldest first
+     * @param directory The log directory
+     * @param fromSequence Records before this sequence are skipped
+     * @param handler Receives each record
+     * @return The highest sequence found, or fromSequence - 1 if none
+     */
+    public static long replay(Path directory, long fromSequence, RecordHandler handler) throws IOException {
+        long last = fromSequence - 1;
+        if (!Files.isDirectory(directory)) {
+            return last;
+        }
+        for (long start : segmentStarts(directory)) {
+            try (FileChannel channel = FileChannel.open(segmentPath(directory, start), StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size == 0) {
+                    continue;
+                }
+                // Copied rather than mapped, so the segment can be deleted afterwards on Windows
+                ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(size));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                buffer.flip();
+                CRC32 crc = new CRC32();
+                while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+                    int recordStart = buffer.position();
+                    int length = buffer.getInt();
+                    int checksum = buffer.getInt();
+                    if (length < 0 || buffer.remaining() < 8 + 1 + length) {
+                        break; // torn write at the tail
+                    }
+                    crc.reset();
+                    crc.update(buffer.slice(buffer.position(), 8 + 1 + length));
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                    long sequence = buffer.getLong();
+                    byte type = buffer.get();
+                    ByteBuffer payload = buffer.slice(buffer.position(), length);
+                    buffer.position(recordStart + RECORD_HEADER_SIZE + length);
+                    if (sequence >= fromSequence) {
+                        handler.handle(sequence, type, payload);
+                    }
+                    last = Math.max(last, sequence);
+                }
+            }
+        }
+        return last;
+    }
+
+    private void openSegment() throws IOException {
+        segment = FileChannel.open(segmentPath(directory, nextSequence),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static ByteBuffer encodeRecord(long sequence, byte type, byte[] payload) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        record.putInt(payload.length);
+        record.putInt(0); // checksum placeholder
+        record.putLong(sequence);
+        record.put(type);
+        record.put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 8, record.capacity() - 8);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+        return record;
+    }
+
+    private static Path segmentPath(Path directory, long start) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, start, SEGMENT_SUFFIX));
+    }
+
+    private static List<Long> segmentStarts(Path directory) throws IOException {
+        List<Long> starts = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                starts.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        starts.sort(null);
+        return starts;
+    }
+}
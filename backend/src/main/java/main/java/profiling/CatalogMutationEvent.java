@@ -0,0 +1,31 @@
+package main.java.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for publishing one catalog change: updating the
+ * indexes, appending to the change log and notifying listeners
+ */
+@Name("sadeliver.CatalogMutation")
+@Label("Catalog Mutation")
+@Description("A product created, updated or deleted, and the work of publishing it")
+@Category({"SA-Deliver", "Catalog"})
+@StackTrace(false)
+public class CatalogMutationEvent extends Event {
+    @Label("Type")
+    public String type;
+
+    @Label("Product ID")
+    public String productId;
+
+    @Label("Changed Fields")
+    public String fields;
+
+    @Label("Catalog Generation")
+    public long generation;
+}
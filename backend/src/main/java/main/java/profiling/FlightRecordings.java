@@ -0,0 +1,105 @@
+package main.java.profiling;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+
+/**
+ * Starts, snapshots and stops the server's JDK Flight Recorder recording,
+ * one at a time.
+ *
+ * Recordings use one of the JDK's presets: "default", cheap enough to leave
+ * running (about 1% overhead), or "profile", which samples stacks more often
+ * for flame graphs. Both also collect the application's own events (see
+ * {@link RouteEvent}, {@link OperationEvent}, {@link CatalogMutationEvent}).
+ * Data is kept on disk and bounded by age, so a long-running recording acts
+ * as a ring buffer that can be dumped when something goes wrong.
+ */
+public class FlightRecordings {
+    private Recording recording;
+
+    /**
+     * @param settings "default" or "profile"
+     * @param maxAge How much history to keep, or null for all of it
+     * @param duration When to stop by itself, or null to run until stopped
+     * @throws IllegalStateException if a recording is already running
+     * @throws IllegalArgumentException if the settings are unknown
+     */
+    public synchronized void start(String settings, Duration maxAge, Duration duration) throws IOException {
+        if (isRunning()) {
+            throw new IllegalStateException("A recording is already running");
+        }
+        closeRecording();
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(settings);
+        } catch (ParseException | IOException e) {
+            throw new IllegalArgumentException("Unknown recording settings: " + settings, e);
+        }
+        Recording started = new Recording(configuration);
+        started.setName("sa-deliver-" + settings);
+        started.setToDisk(true);
+        started.setMaxAge(maxAge);
+        started.setDuration(duration);
+        started.start();
+        recording = started;
+    }
+
+    /**
+     * Writes what the current recording holds so far to a temporary file,
+     * leaving it running
+     * @return The file, which the caller deletes, or null if there is no recording
+     */
+    public synchronized Path dump() throws IOException {
+        if (recording == null) {
+            return null;
+        }
+        Path file = Files.createTempFile("sa-deliver-", ".jfr");
+        recording.dump(file);
+        return file;
+    }
+
+    /**
+     * Stops the current recording and writes all of it to a temporary file
+     * @return The file, which the caller deletes, or null if there is no recording
+     */
+    public synchronized Path stop() throws IOException {
+        if (recording == null) {
+            return null;
+        }
+        try {
+            if (recording.getState() == RecordingState.RUNNING) {
+                recording.stop();
+            }
+            Path file = Files.createTempFile("sa-deliver-", ".jfr");
+            recording.dump(file);
+            return file;
+        } finally {
+            closeRecording();
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return recording != null && recording.getState() == RecordingState.RUNNING;
+    }
+
+    /**
+     * @return The current recording's name and state, e.g. "sa-deliver-profile RUNNING", or "none"
+     */
+    public synchronized String describe() {
+        return recording != null ? recording.getName() + " " + recording.getState() : "none";
+    }
+
+    private void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package main.java.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one traced operation, such as a ProductService
+ * method, a session lookup or a change-log append. Emitted by
+ * {@link main.java.tracing.Tracer#span} whether or not a trace is being
+ * recorded, so a recording shows time per operation on its own.
+ */
+@Name("sadeliver.Operation")
+@Label("Operation")
+@Description("A service, codec or persistence call made while handling a request")
+@Category({"SA-Deliver", "Operations"})
+@StackTrace(false)
+public class OperationEvent extends Event {
+    @Label("Name")
+    public String name;
+
+    /**
+     * @return A started event, or null when no recording is collecting these
+     */
+    public static OperationEvent start(String name) {
+        OperationEvent event = new OperationEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.name = name;
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,43 @@
+package main.java.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event spanning one HTTP request, from the first filter
+ * to the last, labelled with the Spark route that served it
+ */
+@Name("sadeliver.Route")
+@Label("HTTP Route")
+@Description("Handling of one request by a Spark route")
+@Category({"SA-Deliver", "HTTP"})
+@StackTrace(false)
+public class RouteEvent extends Event {
+    @Label("Method")
+    public String method;
+
+    @Label("Route")
+    public String route;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Status")
+    public int status;
+
+    /**
+     * @return A started event, or null when no recording is collecting these
+     */
+    public static RouteEvent start() {
+        RouteEvent event = new RouteEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,162 @@
+package main.java.repository;
+
+import main.java.entities.Product;
+import main.java.tracing.Span;
+import main.java.tracing.Tracer;
+import main.java.util.RoutingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-side queries for the products table.
+ * Every statement is written against one of the indexes declared on
+ * {@link Product}; pagination is keyset based (id greater than the last
+ * id seen) so deep pages cost the same as the first one.
+ * Given a {@link RoutingDataSource}, every query runs as read-only work and
+ * is served by a replica, unless the caller's own routing scope keeps it
+ * on the primary.
+ */
+public class ProductRepository {
+    private static final String SUMMARY_COLUMNS = "id, name, price, stock, category, rating";
+
+    /** Uses idx_products_active_id */
+    public static final String FIND_ACTIVE_PAGE =
+            "SELECT " + SUMMARY_COLUMNS + " FROM products WHERE active = TRUE AND id > ? ORDER BY id LIMIT ?";
+
+    /** Uses idx_products_category_active */
+    public static final String FIND_BY_CATEGORY_PAGE =
+            "SELECT " + SUMMARY_COLUMNS + " FROM products WHERE category = ? AND active = TRUE AND id > ? ORDER BY id LIMIT ?";
+
+    /** Uses idx_products_active_rating; ordering on the leading column lets H2 read the index in order instead of sorting */
+    public static final String FIND_FEATURED =
+            "SELECT " + SUMMARY_COLUMNS + " FROM products WHERE active = TRUE ORDER BY active, rating DESC LIMIT ?";
+
+    /** Uses idx_products_active_name_key as a range scan [prefix, prefix + U+FFFF) */
+    public static final String FIND_BY_NAME_PREFIX =
+            "SELECT " + SUMMARY_COLUMNS + " FROM products WHERE active = TRUE AND name_key >= ? AND name_key < ? ORDER BY name_key LIMIT ?";
+
+    /** Index each statement above is expected to use, for plan checks */
+    public static final Map<String, String> QUERY_INDEXES = Map.of(
+            FIND_ACTIVE_PAGE, "idx_products_active_id",
+            FIND_BY_CATEGORY_PAGE, "idx_products_category_active",
+            FIND_FEATURED, "idx_products_active_rating",
+            FIND_BY_NAME_PREFIX, "idx_products_active_name_key");
+
+    private final DataSource dataSource;
+
+    public ProductRepository(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Gets a page of active products
+     * @param afterId The last id of the previous page, or null for the first page
+     * @param limit Maximum number of rows to return
+     * @return Products ordered by id
+     */
+    @SuppressWarnings("try")
+    public List<ProductSummary> findActive(String afterId, int limit) throws SQLException {
+        try (Span span = Tracer.span("ProductRepository.findActive")) {
+            return read(() -> {
+                try (Connection connection = dataSource.getConnection();
+                     PreparedStatement statement = connection.prepareStatement(FIND_ACTIVE_PAGE)) {
+                    statement.setString(1, afterId != null ? afterId : "");
+                    statement.setInt(2, limit);
+                    return readSummaries(statement);
+                }
+            });
+        }
+    }
+
+    /**
+     * Gets a page of active products in a category
+     * @param category The exact category name
+     * @param afterId The last id of the previous page, or null for the first page
+     * @param limit Maximum number of rows to return
+     * @return Products ordered by id
+     */
+    @SuppressWarnings("try")
+    public List<ProductSummary> findByCategory(String category, String afterId, int limit) throws SQLException {
+        try (Span span = Tracer.span("ProductRepository.findByCategory")) {
+            return read(() -> {
+                try (Connection connection = dataSource.getConnection();
+                     PreparedStatement statement = connection.prepareStatement(FIND_BY_CATEGORY_PAGE)) {
+                    statement.setString(1, category);
+                    statement.setString(2, afterId != null ? afterId : "");
+                    statement.setInt(3, limit);
+                    return readSummaries(statement);
+                }
+            });
+        }
+    }
+
+    /**
+     * Gets the highest rated active products
+     * @param limit Maximum number of rows to return
+     * @return Products ordered by rating, best first
+     */
+    @SuppressWarnings("try")
+    public List<ProductSummary> findFeatured(int limit) throws SQLException {
+        try (Span span = Tracer.span("ProductRepository.findFeatured")) {
+            return read(() -> {
+                try (Connection connection = dataSource.getConnection();
+                     PreparedStatement statement = connection.prepareStatement(FIND_FEATURED)) {
+                    statement.setInt(1, limit);
+                    return readSummaries(statement);
+                }
+            });
+        }
+    }
+
+    /**
+     * Gets active products whose name starts with the given prefix, ignoring case
+     * @param prefix The name prefix
+     * @param limit Maximum number of rows to return
+     * @return Products ordered by name
+     */
+    @SuppressWarnings("try")
+    public List<ProductSummary> findByNamePrefix(String prefix, int limit) throws SQLException {
+        try (Span span = Tracer.span("ProductRepository.findByNamePrefix")) {
+            String key = Product.toNameKey(prefix);
+            return read(() -> {
+                try (Connection connection = dataSource.getConnection();
+                     PreparedStatement statement = connection.prepareStatement(FIND_BY_NAME_PREFIX)) {
+                    statement.setString(1, key);
+                    statement.setString(2, key + '\uffff');
+                    statement.setInt(3, limit);
+                    return readSummaries(statement);
+                }
+            });
+        }
+    }
+
+    private <T> T read(RoutingDataSource.SqlWork<T> work) throws SQLException {
+        if (dataSource instanceof RoutingDataSource) {
+            return ((RoutingDataSource) dataSource).readOnly(null, work);
+        }
+        return work.run();
+    }
+
+    private static List<ProductSummary> readSummaries(PreparedStatement statement) throws SQLException {
+        List<ProductSummary> results = new ArrayList<>();
+        try (ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                results.add(new ProductSummary(
+                        rs.getString("id"),
+                        rs.getString("name"),
+                        rs.getBigDecimal("price"),
+                        rs.getInt("stock"),
+                        rs.getString("category"),
+                        rs.getDouble("rating")));
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,50 @@
+package main.java.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Lightweight projection of a product row used for catalog listings.
+ * Only carries the columns a listing page needs, so queries avoid
+ * reading description and image columns.
+ */
+public class ProductSummary {
+    private final String id;
+    private final String name;
+    private final BigDecimal price;
+    private final int stock;
+    private final String category;
+    private final double rating;
+
+    public ProductSummary(String id, String name, BigDecimal price, int stock, String category, double rating) {
+        this.id = id;
+        this.name = name;
+        this.price = price;
+        this.stock = stock;
+        this.category = category;
+        this.rating = rating;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public int getStock() {
+        return stock;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public double getRating() {
+        return rating;
+    }
+}
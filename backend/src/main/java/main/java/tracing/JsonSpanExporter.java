@@ -0,0 +1,104 @@
+package main.java.tracing;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes each span as one line of JSON, to a file or stdout: trace, span
+ * and parent ids, name, start in epoch microseconds, duration in
+ * microseconds, error and attributes. Lines of one trace are written
+ * together and flushed once per trace.
+ */
+public class JsonSpanExporter implements SpanExporter, Closeable {
+    private final Writer out;
+    private final boolean closeOut;
+
+    private JsonSpanExporter(Writer out, boolean closeOut) {
+        this.out = out;
+        this.closeOut = closeOut;
+    }
+
+    /**
+     * @param file Appended to, created if missing
+     */
+    public static JsonSpanExporter toFile(Path file) throws IOException {
+        return new JsonSpanExporter(Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND), true);
+    }
+
+    public static JsonSpanExporter toStdout() {
+        return new JsonSpanExporter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)),
+                false);
+    }
+
+    @Override
+    public void export(List<Span> spans) throws IOException {
+        StringWriter lines = new StringWriter();
+        for (Span span : spans) {
+            lines.append(toJson(span)).append('\n');
+        }
+        out.write(lines.toString());
+        out.flush();
+    }
+
+    /**
+     * @return The span as a single-line JSON object
+     */
+    public static String toJson(Span span) throws IOException {
+        StringWriter line = new StringWriter();
+        JsonWriter json = new JsonWriter(line);
+        json.beginObject();
+        json.name("traceId").value(span.getTraceId());
+        json.name("spanId").value(span.getSpanId());
+        String parentId = span.getParentId();
+        if (parentId != null) {
+            json.name("parentId").value(parentId);
+        }
+        json.name("name").value(span.getName());
+        json.name("start").value(span.getStartEpochMicros());
+        json.name("durationMicros").value(span.getDurationNanos() / 1000);
+        if (span.getError() != null) {
+            json.name("error").value(span.getError());
+        }
+        Map<String, Object> attributes = span.getAttributes();
+        if (!attributes.isEmpty()) {
+            json.name("attributes").beginObject();
+            for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+                Object value = attribute.getValue();
+                json.name(attribute.getKey());
+                if (value instanceof Number) {
+                    json.value((Number) value);
+                } else if (value instanceof Boolean) {
+                    json.value((Boolean) value);
+                } else {
+                    json.value(value != null ? value.toString() : null);
+                }
+            }
+            json.endObject();
+        }
+        json.endObject();
+        json.flush();
+        return line.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closeOut) {
+            out.close();
+        } else {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package main.java.tracing;
+
+import main.java.profiling.OperationEvent;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One timed operation within a trace, closed with try-with-resources:
+ *
+ * <pre>
+ * try (Span span = Tracer.span("ProductService.search")) {
+ *     span.attribute("query", query);
+ *     ...
+ * }
+ * </pre>
+ *
+ * Spans started outside a trace, or while tracing is off, are a shared
+ * no-op instance, so instrumented code costs a thread-local read when
+ * nothing is recorded. While a Flight Recorder recording collects
+ * {@link OperationEvent}s, every span also emits one, traced or not.
+ * A span belongs to the thread that started it.
+ */
+public final class Span implements AutoCloseable {
+    static final Span NOOP = new Span(null, null, null, 0, 0, null);
+
+    final Trace trace;
+    final Span parent;
+    private String name;
+    final long spanId;
+    private final long parentId;
+    private final long startNanos;
+    private long durationNanos = -1;
+    private Object[] attributes;
+    private int attributeCount;
+    private String error;
+    private final OperationEvent event;
+
+    Span(Trace trace, Span parent, String name, long spanId, long parentId, OperationEvent event) {
+        this.trace = trace;
+        this.event = event;
+        this.parent = parent;
+        this.name = name;
+        this.spanId = spanId;
+        this.parentId = parentId;
+        this.startNanos = trace != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * @return Whether this span is part of a trace, rather than the no-op span
+     */
+    public boolean isRecording() {
+        return trace != null;
+    }
+
+    /**
+     * Renames the span, e.g. once the route a request matched is known
+     */
+    public Span name(String name) {
+        if (trace != null) {
+            this.name = name;
+        }
+        return this;
+    }
+
+    /**
+     * Adds a key-value attribute; the value is kept by reference and
+     * rendered with toString only if the trace is exported
+     */
+    public Span attribute(String key, Object value) {
+        if (trace == null) {
+            return this;
+        }
+        if (attributes == null) {
+            attributes = new Object[8];
+        } else if (attributeCount * 2 == attributes.length) {
+            Object[] grown = new Object[attributes.length * 2];
+            System.arraycopy(attributes, 0, grown, 0, attributes.length);
+            attributes = grown;
+        }
+        attributes[attributeCount * 2] = key;
+        attributes[attributeCount * 2 + 1] = value;
+        attributeCount++;
+        return this;
+    }
+
+    /**
+     * Marks the span, and so its trace, as failed; failed traces are always kept
+     */
+    public Span error(Throwable error) {
+        return error(error.getClass().getName() + (error.getMessage() != null ? ": " + error.getMessage() : ""));
+    }
+
+    public Span error(String message) {
+        if (trace != null) {
+            this.error = message;
+            trace.error = true;
+        }
+        return this;
+    }
+
+    /**
+     * The sampled flag is only set when the caller's traceparent had it,
+     * since only then is the trace certain to be kept; otherwise the tail
+     * decision is made when the root span ends, after headers have gone out.
+     * @return A W3C traceparent header value naming this span, for outgoing
+     *         requests, or null for the no-op span
+     */
+    public String traceparent() {
+        if (trace == null) {
+            return null;
+        }
+        return "00-" + getTraceId() + "-" + Tracer.hex(spanId) + (trace.upstreamSampled ? "-01" : "-00");
+    }
+
+    /**
+     * Ends the span; its duration is fixed at the first call
+     */
+    @Override
+    public void close() {
+        if (trace != null && durationNanos >= 0) {
+            return;
+        }
+        if (event != null) {
+            event.commit();
+        }
+        if (trace == null) {
+            return;
+        }
+        durationNanos = System.nanoTime() - startNanos;
+        Tracer.end(this);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getTraceId() {
+        return trace != null ? Tracer.hex(trace.idHigh) + Tracer.hex(trace.idLow) : null;
+    }
+
+    public String getSpanId() {
+        return Tracer.hex(spanId);
+    }
+
+    /**
+     * @return The parent's id, or null for a trace's first span with no remote parent
+     */
+    public String getParentId() {
+        return parentId != 0 ? Tracer.hex(parentId) : null;
+    }
+
+    /**
+     * @return Start time in microseconds since the epoch
+     */
+    public long getStartEpochMicros() {
+        return trace.startEpochMicros + (startNanos - trace.startNanos) / 1000;
+    }
+
+    /**
+     * @return Duration in nanoseconds, or -1 while the span is open
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return The error message, or null if the span did not fail
+     */
+    public String getError() {
+        return error;
+    }
+
+    public Map<String, Object> getAttributes() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < attributeCount; i++) {
+            map.put((String) attributes[i * 2], attributes[i * 2 + 1]);
+        }
+        return map;
+    }
+
+    boolean isRoot() {
+        return this == trace.root;
+    }
+}
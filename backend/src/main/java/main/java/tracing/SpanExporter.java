@@ -0,0 +1,16 @@
+package main.java.tracing;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where kept traces go. Called on the tracer's exporter thread, never on a
+ * request thread, one trace at a time.
+ */
+@FunctionalInterface
+public interface SpanExporter {
+    /**
+     * @param spans Every span of one trace in the order they ended, root last
+     */
+    void export(List<Span> spans) throws IOException;
+}
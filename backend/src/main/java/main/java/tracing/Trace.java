@@ -0,0 +1,27 @@
+package main.java.tracing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The spans of one request, gathered in memory until its root span ends
+ * and the tail sampler decides whether to export them
+ */
+final class Trace {
+    final long idHigh;
+    final long idLow;
+    // Whether the caller's traceparent asked for this trace to be recorded
+    final boolean upstreamSampled;
+    final long startEpochMicros = System.currentTimeMillis() * 1000;
+    final long startNanos = System.nanoTime();
+    final List<Span> spans = new ArrayList<>();
+    Span root;
+    volatile boolean error;
+    int dropped;
+
+    Trace(long idHigh, long idLow, boolean upstreamSampled) {
+        this.idHigh = idHigh;
+        this.idLow = idLow;
+        this.upstreamSampled = upstreamSampled;
+    }
+}
@@ -0,0 +1,274 @@
+package main.java.tracing;
+
+import main.java.profiling.OperationEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process tracing with tail-based sampling.
+ *
+ * A request starts a trace with {@link #startTrace}, continuing the
+ * caller's trace when it sent a W3C traceparent header; code it calls opens
+ * child spans with {@link #span}, which nest through a thread-local. Spans
+ * are buffered with their trace, and only when the root span ends is the
+ * whole trace kept or dropped: traces that failed, took at least the slow
+ * threshold, or were marked sampled by the caller are kept, plus a random
+ * fraction of the rest. Kept traces are queued for a background thread
+ * that hands them to the {@link SpanExporter}; when the queue is full they
+ * are dropped rather than slowing requests down.
+ *
+ * Nothing is recorded until a tracer is {@link #install installed}.
+ */
+public final class Tracer implements AutoCloseable {
+    public static final String TRACEPARENT = "traceparent";
+    // W3C Trace Context level 2: the server's span, returned to the caller;
+    // flagged sampled only when the trace is sure to be kept
+    public static final String TRACERESPONSE = "traceresponse";
+
+    private static final Logger logger = LoggerFactory.getLogger(Tracer.class);
+    private static final int MAX_SPANS_PER_TRACE = 512;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final ThreadLocal<Span> current = new ThreadLocal<>();
+    private static volatile Tracer installed;
+
+    private final SpanExporter exporter;
+    private final long slowNanos;
+    private final double sampleRate;
+    private final BlockingQueue<List<Span>> queue;
+    private final Thread exportThread;
+    private final AtomicLong exported = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * @param exporter Receives kept traces
+     * @param slowMillis Traces whose root span takes at least this long are kept
+     * @param sampleRate Fraction of other successful traces kept, 0 to 1
+     * @param queueCapacity Kept traces waiting for export before new ones are dropped
+     */
+    public Tracer(SpanExporter exporter, long slowMillis, double sampleRate, int queueCapacity) {
+        this.exporter = exporter;
+        this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowMillis);
+        this.sampleRate = sampleRate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.exportThread = new Thread(this::exportLoop, "trace-exporter");
+        exportThread.setDaemon(true);
+        exportThread.start();
+    }
+
+    /**
+     * Makes a tracer the one spans are recorded with, closing the previous one
+     * @param tracer The tracer, or null to stop tracing
+     */
+    public static void install(Tracer tracer) {
+        Tracer previous = installed;
+        installed = tracer;
+        if (previous != null && previous != tracer) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Starts a trace on this thread; a trace already open here is abandoned
+     * @param name The root span's name
+     * @param traceparent The caller's traceparent header, or null
+     * @return The root span, or the no-op span when no tracer is installed
+     */
+    public static Span startTrace(String name, String traceparent) {
+        Tracer tracer = installed;
+        if (tracer == null) {
+            current.remove();
+            return Span.NOOP;
+        }
+        Trace trace = null;
+        long parentId = 0;
+        if (isTraceparent(traceparent)) {
+            long high = parseHex(traceparent, 3);
+            long low = parseHex(traceparent, 19);
+            long parent = parseHex(traceparent, 36);
+            if ((high != 0 || low != 0) && parent != 0) {
+                trace = new Trace(high, low, (Character.digit(traceparent.charAt(54), 16) & 1) != 0);
+                parentId = parent;
+            }
+        }
+        if (trace == null) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            trace = new Trace(random.nextLong(), nextId(random), false);
+        }
+        Span root = new Span(trace, null, name, nextId(ThreadLocalRandom.current()), parentId, null);
+        trace.root = root;
+        current.set(root);
+        return root;
+    }
+
+    /**
+     * Starts a child of this thread's current span
+     * @return The span; outside a trace, the no-op span unless Flight
+     *         Recorder is collecting operation events
+     */
+    public static Span span(String name) {
+        Span parent = current.get();
+        OperationEvent event = OperationEvent.start(name);
+        if (parent == null) {
+            return event != null ? new Span(null, null, name, 0, 0, event) : Span.NOOP;
+        }
+        Span span = new Span(parent.trace, parent, name, nextId(ThreadLocalRandom.current()), parent.spanId, event);
+        current.set(span);
+        return span;
+    }
+
+    /**
+     * @return This thread's innermost open span, or the no-op span
+     */
+    public static Span current() {
+        Span span = current.get();
+        return span != null ? span : Span.NOOP;
+    }
+
+    /**
+     * Forgets this thread's spans without ending them, e.g. after a request
+     */
+    public static void clear() {
+        current.remove();
+    }
+
+    /**
+     * @return Kept traces handed to the exporter so far
+     */
+    public long getExportedCount() {
+        return exported.get();
+    }
+
+    /**
+     * @return Kept traces dropped because the export queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Stops the exporter thread after exporting what is already queued
+     */
+    @Override
+    public void close() {
+        closed = true;
+        exportThread.interrupt();
+        try {
+            exportThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static void end(Span span) {
+        if (current.get() == span) {
+            if (span.parent != null) {
+                current.set(span.parent);
+            } else {
+                current.remove();
+            }
+        }
+        Trace trace = span.trace;
+        synchronized (trace) {
+            if (trace.spans.size() < MAX_SPANS_PER_TRACE || span.isRoot()) {
+                trace.spans.add(span);
+            } else {
+                trace.dropped++;
+            }
+        }
+        Tracer tracer = installed;
+        if (span.isRoot() && tracer != null) {
+            tracer.complete(trace);
+        }
+    }
+
+    private void complete(Trace trace) {
+        boolean keep = trace.error || trace.root.getDurationNanos() >= slowNanos || trace.upstreamSampled
+                || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+        if (!keep || closed) {
+            return;
+        }
+        if (trace.dropped > 0) {
+            trace.root.attribute("droppedSpans", trace.dropped);
+        }
+        if (!queue.offer(trace.spans)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void exportLoop() {
+        List<List<Span>> batch = new ArrayList<>();
+        while (true) {
+            try {
+                if (queue.isEmpty() && closed) {
+                    return;
+                }
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                if (!closed) {
+                    continue;
+                }
+            }
+            queue.drainTo(batch);
+            for (List<Span> spans : batch) {
+                try {
+                    exporter.export(spans);
+                    exported.incrementAndGet();
+                } catch (Exception e) {
+                    logger.warn("Trace export failed: {}", e.getMessage());
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    static String hex(long value) {
+        char[] chars = new char[16];
+        for (int i = 15; i >= 0; i--) {
+            chars[i] = HEX[(int) (value & 0xf)];
+            value >>>= 4;
+        }
+        return new String(chars);
+    }
+
+    private static long nextId(ThreadLocalRandom random) {
+        long id;
+        do {
+            id = random.nextLong();
+        } while (id == 0);
+        return id;
+    }
+
+    /**
+     * @return Whether a header is a version 00 traceparent:
+     *         00-{32 hex trace id}-{16 hex parent id}-{2 hex flags}
+     */
+    private static boolean isTraceparent(String value) {
+        if (value == null || value.length() != 55 || !value.startsWith("00-")
+                || value.charAt(35) != '-' || value.charAt(52) != '-') {
+            return false;
+        }
+        for (int i = 3; i < 55; i++) {
+            if (i != 35 && i != 52 && Character.digit(value.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseHex(String value, int offset) {
+        long result = 0;
+        for (int i = offset; i < offset + 16; i++) {
+            result = (result << 4) | Character.digit(value.charAt(i), 16);
+        }
+        return result;
+    }
+}
@@ -1,17 +1,40 @@
 package main.java.util;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.Metadata;
 import org.hibernate.boot.MetadataSources;
 import org.hibernate.boot.registry.StandardServiceRegistry;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.service.ServiceRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.sql.DataSource;
 import java.io.File;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Owns the connection pools and the Hibernate SessionFactory.
+ * Connections are routed through a {@link RoutingDataSource}: writes go to
+ * the primary (DB_URL) and read-only work can be spread over replicas
+ * listed in DB_REPLICA_URLS (comma separated).
+ */
 public class DatabaseUtil {
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseUtil.class);
+    private static final String DEFAULT_JDBC_URL = "jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+    private static final long DEFAULT_STICKINESS_MS = 5000;
     private static SessionFactory sessionFactory;
+    private static RoutingDataSource dataSource;
+    // Read without the lock by readiness probes
+    private static final List<HikariDataSource> pools = new CopyOnWriteArrayList<>();
+    private static volatile boolean initializing;
     
     private DatabaseUtil() {
         // Private constructor to prevent instantiation
@@ -19,47 +42,153 @@ public class DatabaseUtil {
     
     public static synchronized SessionFactory getSessionFactory() {
         if (sessionFactory == null) {
+            initializing = true;
             try {
-                // Create the SessionFactory from hibernate.cfg.xml
-                Configuration configuration = new Configuration();
-                configuration.configure("hibernate.cfg.xml");
-                
-                // Apply properties for HikariCP
-                configuration.setProperty("hibernate.hikari.dataSourceClassName", "org.h2.jdbcx.JdbcDataSource");
-                configuration.setProperty("hibernate.hikari.dataSource.url", 
-                    "jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
-                configuration.setProperty("hibernate.hikari.dataSource.user", "sa");
-                configuration.setProperty("hibernate.hikari.dataSource.password", "");
-                
-                // Build the ServiceRegistry
-                ServiceRegistry serviceRegistry = new StandardServiceRegistryBuilder()
-                    .applySettings(configuration.getProperties())
-                    .configure()
-                    .build();
-                
-                // Create the SessionFactory
-                sessionFactory = configuration.buildSessionFactory(serviceRegistry);
+                sessionFactory = HibernateBootstrap.build(getDataSource());
                 
                 // Initialize database with sample data
                 initializeDatabase();
                 
             } catch (Throwable ex) {
-                System.err.println("Initial SessionFactory creation failed." + ex);
+                logger.error("Initial SessionFactory creation failed", ex);
                 throw new ExceptionInInitializerError(ex);
+            } finally {
+                initializing = false;
             }
         }
         return sessionFactory;
     }
     
+    /**
+     * Gets the pooled DataSource for plain JDBC access, such as the read
+     * queries in {@link main.java.repository.ProductRepository}.
+     * Connections come from the primary unless obtained inside
+     * {@link #readOnly}.
+     */
+    public static synchronized RoutingDataSource getDataSource() {
+        if (dataSource == null) {
+            boolean outer = initializing;
+            initializing = true;
+            try {
+                dataSource = createDataSource();
+            } finally {
+                initializing = outer;
+            }
+        }
+        return dataSource;
+    }
+    
+    private static RoutingDataSource createDataSource() {
+        String user = getenv("DB_USERNAME", "sa");
+        String password = getenv("DB_PASSWORD", "");
+        
+        HikariDataSource primary = createPool("primary", getenv("DB_URL", DEFAULT_JDBC_URL), user, password);
+        List<DataSource> replicas = new ArrayList<>();
+        String replicaUrls = getenv("DB_REPLICA_URLS", "");
+        for (String url : replicaUrls.split(",")) {
+            if (!url.isBlank()) {
+                replicas.add(createPool("replica-" + replicas.size(), url.trim(), user, password));
+            }
+        }
+        long stickiness = Long.parseLong(getenv("DB_REPLICA_STICKINESS_MS", String.valueOf(DEFAULT_STICKINESS_MS)));
+        return new RoutingDataSource(primary, replicas, stickiness);
+    }
+    
+    /**
+     * Never blocks, so readiness probes can call it while the pools or the
+     * SessionFactory are being built.
+     * @return false while initializing or if a pool was closed; true when
+     *         the database has not been used at all
+     */
+    public static boolean isAvailable() {
+        if (initializing) {
+            return false;
+        }
+        for (HikariDataSource pool : pools) {
+            if (!pool.isRunning()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Runs read-only work against a replica, or the primary if the session
+     * wrote within the stickiness window.
+     * @param sessionKey The caller's session token or username, or null
+     */
+    public static <T> T readOnly(String sessionKey, RoutingDataSource.SqlWork<T> work) throws SQLException {
+        return getDataSource().readOnly(sessionKey, work);
+    }
+    
+    /**
+     * Runs work that may write against the primary and pins the session's
+     * subsequent reads to the primary.
+     * @param sessionKey The caller's session token or username, or null
+     */
+    public static <T> T readWrite(String sessionKey, RoutingDataSource.SqlWork<T> work) throws SQLException {
+        return getDataSource().readWrite(sessionKey, work);
+    }
+    
+    private static HikariDataSource createPool(String name, String url, String user, String password) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(name);
+        config.setJdbcUrl(url);
+        config.setUsername(user);
+        config.setPassword(password);
+        config.setMinimumIdle(5);
+        config.setMaximumPoolSize(20);
+        config.setIdleTimeout(30000);
+        HikariDataSource pool = new HikariDataSource(config);
+        pools.add(pool);
+        return pool;
+    }
+    
+    private static String getenv(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isBlank() ? value : defaultValue;
+    }
+    
     private static void initializeDatabase() {
         // This method can be used to populate initial data
         // For example, create an admin user or default categories
     }
     
-    public static void shutdown() {
+    /**
+     * Hibernate's bootstrap, apart from DatabaseUtil so that loading
+     * DatabaseUtil, as readiness probes and the shutdown sequence do, loads
+     * no Hibernate classes until a SessionFactory is actually asked for
+     */
+    private static final class HibernateBootstrap {
+        static SessionFactory build(DataSource dataSource) {
+            // Create the SessionFactory from hibernate.cfg.xml
+            Configuration configuration = new Configuration();
+            configuration.configure("hibernate.cfg.xml");
+            
+            // Hibernate takes its connections from the routing pool
+            configuration.getProperties().put(AvailableSettings.DATASOURCE, dataSource);
+            
+            // Build the ServiceRegistry
+            ServiceRegistry serviceRegistry = new StandardServiceRegistryBuilder()
+                .applySettings(configuration.getProperties())
+                .configure()
+                .build();
+            
+            // Create the SessionFactory
+            return configuration.buildSessionFactory(serviceRegistry);
+        }
+    }
+    
+    public static synchronized void shutdown() {
         // Close caches and connection pools
         if (sessionFactory != null) {
             sessionFactory.close();
+            sessionFactory = null;
+        }
+        for (HikariDataSource pool : pools) {
+            pool.close();
         }
+        pools.clear();
+        dataSource = null;
     }
 }
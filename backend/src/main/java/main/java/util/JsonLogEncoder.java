@@ -0,0 +1,103 @@
+package main.java.util;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+import ch.qos.logback.core.encoder.EncoderBase;
+import org.slf4j.event.KeyValuePair;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes each log event as one line of JSON: timestamp, level, logger,
+ * thread and message, then the MDC entries (such as the request id) and the
+ * event's key-value pairs as fields of their own, then any exception's stack
+ * trace. Numbers and booleans among the pairs stay unquoted so log search
+ * can compare them.
+ */
+public class JsonLogEncoder extends EncoderBase<ILoggingEvent> {
+    @Override
+    public byte[] headerBytes() {
+        return null;
+    }
+
+    @Override
+    public byte[] encode(ILoggingEvent event) {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"ts\":\"").append(Instant.ofEpochMilli(event.getTimeStamp())).append('"');
+        field(json, "level", event.getLevel().toString());
+        field(json, "logger", event.getLoggerName());
+        field(json, "thread", event.getThreadName());
+        field(json, "msg", event.getFormattedMessage());
+        for (Map.Entry<String, String> entry : event.getMDCPropertyMap().entrySet()) {
+            field(json, entry.getKey(), entry.getValue());
+        }
+        List<KeyValuePair> pairs = event.getKeyValuePairs();
+        if (pairs != null) {
+            for (KeyValuePair pair : pairs) {
+                if (pair.value instanceof Number || pair.value instanceof Boolean) {
+                    json.append(",\"");
+                    escape(json, pair.key);
+                    json.append("\":").append(pair.value);
+                } else {
+                    field(json, pair.key, pair.value != null ? pair.value.toString() : null);
+                }
+            }
+        }
+        IThrowableProxy throwable = event.getThrowableProxy();
+        if (throwable != null) {
+            field(json, "error", ThrowableProxyUtil.asString(throwable));
+        }
+        json.append("}\n");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] footerBytes() {
+        return null;
+    }
+
+    private static void field(StringBuilder json, String name, String value) {
+        json.append(",\"");
+        escape(json, name);
+        if (value == null) {
+            json.append("\":null");
+            return;
+        }
+        json.append("\":\"");
+        escape(json, value);
+        json.append('"');
+    }
+
+    private static void escape(StringBuilder json, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+    }
+}
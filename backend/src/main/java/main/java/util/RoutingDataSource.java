@@ -0,0 +1,219 @@
+package main.java.util;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * DataSource that sends read-only work to a pool of replicas and everything
+ * else to the primary.
+ * Work is routed by wrapping it in {@link #readOnly} or {@link #readWrite}.
+ * Connections obtained outside of either always come from the primary.
+ * After a session writes, its reads stay on the primary for the stickiness
+ * window so it always sees its own writes despite replication lag.
+ */
+public class RoutingDataSource implements DataSource {
+    private static final int PRUNE_THRESHOLD = 10_000;
+
+    /**
+     * Unit of JDBC work run inside a routing scope
+     */
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T run() throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface Connector {
+        Connection open(DataSource source) throws SQLException;
+    }
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final long stickinessMillis;
+    private final LongSupplier clock;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final Map<String, Long> lastWriteBySession = new ConcurrentHashMap<>();
+    private final ThreadLocal<Boolean> readOnlyScope = new ThreadLocal<>();
+
+    public RoutingDataSource(DataSource primary, List<DataSource> replicas, long stickinessMillis) {
+        this(primary, replicas, stickinessMillis, System::currentTimeMillis);
+    }
+
+    public RoutingDataSource(DataSource primary, List<DataSource> replicas, long stickinessMillis, LongSupplier clock) {
+        if (primary == null) {
+            throw new IllegalArgumentException("Primary DataSource cannot be null");
+        }
+        this.primary = primary;
+        this.replicas = replicas != null ? List.copyOf(replicas) : List.of();
+        this.stickinessMillis = stickinessMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Runs work that only reads. Connections come from a replica unless the
+     * session wrote recently, or the work runs inside a scope already on
+     * the primary, such as {@link #readWrite}, whose writes it must see.
+     * @param sessionKey Identifies the caller for read-your-writes, or null
+     * @param work The work to run
+     * @return The work's result
+     */
+    public <T> T readOnly(String sessionKey, SqlWork<T> work) throws SQLException {
+        boolean useReplica = !replicas.isEmpty() && !Boolean.FALSE.equals(readOnlyScope.get())
+                && !isSticky(sessionKey);
+        return runInScope(useReplica, work);
+    }
+
+    /**
+     * Runs work that may write. Connections come from the primary and the
+     * session is pinned to the primary for the stickiness window.
+     * @param sessionKey Identifies the caller for read-your-writes, or null
+     * @param work The work to run
+     * @return The work's result
+     */
+    public <T> T readWrite(String sessionKey, SqlWork<T> work) throws SQLException {
+        try {
+            return runInScope(false, work);
+        } finally {
+            markWrite(sessionKey);
+        }
+    }
+
+    /**
+     * Records that a session has written so its reads go to the primary
+     * @param sessionKey The session, ignored when null
+     */
+    public void markWrite(String sessionKey) {
+        if (sessionKey == null || stickinessMillis <= 0) {
+            return;
+        }
+        long now = clock.getAsLong();
+        lastWriteBySession.put(sessionKey, now);
+        if (lastWriteBySession.size() > PRUNE_THRESHOLD) {
+            lastWriteBySession.values().removeIf(writtenAt -> now - writtenAt >= stickinessMillis);
+        }
+    }
+
+    /**
+     * Checks whether a session's reads are currently pinned to the primary
+     */
+    public boolean isSticky(String sessionKey) {
+        if (sessionKey == null) {
+            return false;
+        }
+        Long writtenAt = lastWriteBySession.get(sessionKey);
+        if (writtenAt == null) {
+            return false;
+        }
+        if (clock.getAsLong() - writtenAt < stickinessMillis) {
+            return true;
+        }
+        lastWriteBySession.remove(sessionKey, writtenAt);
+        return false;
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public List<DataSource> getReplicas() {
+        return replicas;
+    }
+
+    private <T> T runInScope(boolean useReplica, SqlWork<T> work) throws SQLException {
+        Boolean previous = readOnlyScope.get();
+        readOnlyScope.set(useReplica);
+        try {
+            return work.run();
+        } finally {
+            if (previous == null) {
+                readOnlyScope.remove();
+            } else {
+                readOnlyScope.set(previous);
+            }
+        }
+    }
+
+    private DataSource currentTarget() {
+        if (Boolean.TRUE.equals(readOnlyScope.get())) {
+            return replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+        }
+        return primary;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connect(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connect(source -> source.getConnection(username, password));
+    }
+
+    /**
+     * Opens a connection on the current target; replica connections are
+     * read-only and fall back to the primary when the replica is down
+     */
+    private Connection connect(Connector connector) throws SQLException {
+        DataSource target = currentTarget();
+        if (target == primary) {
+            return connector.open(primary);
+        }
+        Connection connection;
+        try {
+            connection = connector.open(target);
+        } catch (SQLException e) {
+            // A replica being down should not fail reads
+            return connector.open(primary);
+        }
+        connection.setReadOnly(true);
+        return connection;
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return primary.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        primary.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        primary.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return primary.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return primary.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+}
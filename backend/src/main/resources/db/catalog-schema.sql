@@ -0,0 +1,32 @@
+-- Catalog schema for environments that manage DDL outside of hbm2ddl.
+-- Mirrors the mapping in main.java.entities.Product; index names must match
+-- the @Table(indexes = ...) declarations.
+
+CREATE TABLE IF NOT EXISTS products (
+    id           VARCHAR(255)   NOT NULL PRIMARY KEY,
+    name         VARCHAR(100)   NOT NULL,
+    name_key     VARCHAR(100)   NOT NULL,
+    description  TEXT,
+    price        NUMERIC(10, 2) NOT NULL,
+    stock        INTEGER        NOT NULL DEFAULT 0,
+    category     VARCHAR(50)    NOT NULL,
+    image_url    VARCHAR(255),
+    rating       DECIMAL(3, 2)  DEFAULT 0.00,
+    review_count INTEGER        NOT NULL DEFAULT 0,
+    active       BOOLEAN        NOT NULL DEFAULT TRUE,
+    created_at   TIMESTAMP      NOT NULL,
+    updated_at   TIMESTAMP,
+    version      INTEGER        NOT NULL DEFAULT 0
+);
+
+-- Browse by category, keyset-paginated on id
+CREATE INDEX IF NOT EXISTS idx_products_category_active ON products (category, active, id);
+
+-- List all active products, keyset-paginated on id
+CREATE INDEX IF NOT EXISTS idx_products_active_id ON products (active, id);
+
+-- Featured lists ordered by rating
+CREATE INDEX IF NOT EXISTS idx_products_active_rating ON products (active, rating DESC);
+
+-- Case-insensitive name prefix search
+CREATE INDEX IF NOT EXISTS idx_products_active_name_key ON products (active, name_key);
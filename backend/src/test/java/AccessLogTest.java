@@ -0,0 +1,151 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.slf4j.event.KeyValuePair;
+
+import main.java.AccessLog;
+import main.java.JettyConnectors;
+
+public class AccessLogTest {
+    private static final HttpClient client = HttpClient.newHttpClient();
+
+    private final Logger accessLogger = (Logger) LoggerFactory.getLogger("access");
+    private final ListAppender<ILoggingEvent> events = new ListAppender<>();
+    private Server jetty;
+    private int port;
+
+    @BeforeEach
+    public void start() throws Exception {
+        events.start();
+        accessLogger.addAppender(events);
+
+        AccessLog accessLog = new AccessLog(AccessLog.parseRates("/quiet=0,/quiet/loud=1"), 1.0, 60_000);
+        jetty = new JettyConnectors().requestLog(accessLog).host("localhost").port(0).create(null);
+        ServletContextHandler context = new ServletContextHandler();
+        context.addServlet(new ServletHolder(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) {
+                accessLog.begin(request, response);
+                try {
+                    // Application logs written while handling see the id
+                    response.setHeader("X-Seen-Id", MDC.get(AccessLog.REQUEST_ID));
+                    response.setStatus(request.getRequestURI().endsWith("/fail") ? 500 : 200);
+                } finally {
+                    AccessLog.end();
+                }
+            }
+        }), "/*");
+        jetty.setHandler(context);
+        jetty.start();
+        port = ((ServerConnector) jetty.getConnectors()[0]).getLocalPort();
+    }
+
+    @AfterEach
+    public void stop() throws Exception {
+        jetty.stop();
+        accessLogger.detachAppender(events);
+    }
+
+    @Test
+    public void testAssignsAndEchoesRequestIds() throws Exception {
+        HttpResponse<String> first = get("/api/products", null);
+        HttpResponse<String> second = get("/api/products", null);
+        String id = header(first, AccessLog.REQUEST_ID_HEADER);
+        assertEquals(id, header(first, "X-Seen-Id"));
+        assertNotEquals(id, header(second, AccessLog.REQUEST_ID_HEADER));
+
+        assertEquals("upstream-42", header(get("/api/products", "upstream-42"), AccessLog.REQUEST_ID_HEADER));
+        String replaced = header(get("/api/products", "bad id\"}"), AccessLog.REQUEST_ID_HEADER);
+        assertTrue(replaced.matches("[0-9a-z]+-[0-9a-z]+"), replaced);
+    }
+
+    @Test
+    public void testLogsCompletedRequests() throws Exception {
+        String id = header(get("/api/products", null), AccessLog.REQUEST_ID_HEADER);
+
+        ILoggingEvent event = awaitEvents(1).get(0);
+        assertEquals(id, event.getMDCPropertyMap().get(AccessLog.REQUEST_ID));
+        Map<String, Object> fields = fields(event);
+        assertEquals("GET", fields.get("method"));
+        assertEquals("/api/products", fields.get("path"));
+        assertEquals(200, fields.get("status"));
+        assertEquals(1.0, fields.get("sampleRate"));
+    }
+
+    @Test
+    public void testSamplesByLongestPrefixAndKeepsErrors() throws Exception {
+        get("/quiet/ok", null);
+        get("/quiet/fail", null);
+        get("/quiet/loud/ok", null);
+
+        List<ILoggingEvent> logged = awaitEvents(2);
+        Thread.sleep(100);
+        assertEquals(2, events.list.size());
+        assertEquals("/quiet/fail", fields(logged.get(0)).get("path"));
+        assertEquals(500, fields(logged.get(0)).get("status"));
+        assertEquals("/quiet/loud/ok", fields(logged.get(1)).get("path"));
+    }
+
+    @Test
+    public void testParsesRates() {
+        AccessLog accessLog = new AccessLog(AccessLog.parseRates(" /health = 0.01, /api=0.5"), 0.25, 1000);
+        assertEquals(0.01, accessLog.sampleRate("/health"));
+        assertEquals(0.5, accessLog.sampleRate("/api/products/1"));
+        assertEquals(0.25, accessLog.sampleRate("/"));
+        assertTrue(AccessLog.parseRates(null).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> AccessLog.parseRates("/health"));
+    }
+
+    // Jetty logs after the response is sent, so the client can finish first
+    private List<ILoggingEvent> awaitEvents(int count) throws InterruptedException {
+        for (int i = 0; i < 100 && events.list.size() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, events.list.size());
+        return events.list;
+    }
+
+    private static Map<String, Object> fields(ILoggingEvent event) {
+        Map<String, Object> fields = new java.util.HashMap<>();
+        for (KeyValuePair pair : event.getKeyValuePairs()) {
+            fields.put(pair.key, pair.value);
+        }
+        return fields;
+    }
+
+    private HttpResponse<String> get(String path, String requestId) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path));
+        if (requestId != null) {
+            request.header(AccessLog.REQUEST_ID_HEADER, requestId);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String header(HttpResponse<?> response, String name) {
+        return response.headers().firstValue(name).orElse(null);
+    }
+}
@@ -0,0 +1,172 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import main.java.PasswordHash;
+import main.java.Product;
+import main.java.ProductService;
+import main.java.User;
+import main.java.UserService;
+import main.java.persistence.CatalogCodec;
+import main.java.persistence.CatalogSnapshot;
+import main.java.persistence.CatalogStore;
+
+public class CatalogStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRecoverReplaysChangesSinceSnapshot() throws Exception {
+        ProductService products = new ProductService();
+        UserService users = new UserService();
+        CatalogStore store = new CatalogStore(directory, products, users);
+        store.start(3600);
+
+        Product kettle = products.addProduct(new Product("Kettle", "Electric kettle", 499.99, 8, "Appliances"));
+        products.removeStock(kettle.getId(), 3);
+        products.addProductReview(kettle.getId(), 4.0);
+        String deletedId = products.getAllProducts().get(0).getId();
+        if (deletedId.equals(kettle.getId())) {
+            deletedId = products.getAllProducts().get(1).getId();
+        }
+        products.deleteProduct(deletedId);
+        users.register("Restored", "secret123");
+
+        // Recover into fresh services without closing, as after a crash
+        ProductService recoveredProducts = new ProductService();
+        UserService recoveredUsers = new UserService();
+        assertTrue(new CatalogStore(directory, recoveredProducts, recoveredUsers).recover());
+
+        assertEquals(products.getAllProductsIncludingInactive().size(),
+                recoveredProducts.getAllProductsIncludingInactive().size());
+        Product recovered = recoveredProducts.getProductById(kettle.getId());
+        assertNotNull(recovered);
+        assertEquals(5, recovered.getStock());
+        assertEquals(4.0, recovered.getRating());
+        assertEquals(1, recovered.getReviewCount());
+        assertEquals(kettle.getCreatedAt(), recovered.getCreatedAt());
+        assertNull(recoveredProducts.getProductById(deletedId));
+        assertTrue(recoveredUsers.login("Restored", "secret123"));
+    }
+
+    @Test
+    void testSnapshotDropsCoveredLogSegments() throws Exception {
+        ProductService products = new ProductService();
+        UserService users = new UserService();
+        CatalogStore store = new CatalogStore(directory, products, users);
+        store.start(3600);
+
+        products.addProduct(new Product("Desk", "Standing desk", 3999.0, 2, "Furniture"));
+        store.snapshot();
+        products.addProduct(new Product("Chair", "Office chair", 1999.0, 4, "Furniture"));
+        store.close();
+
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.filter(f -> f.getFileName().toString().startsWith("changes-")).count());
+        }
+        CatalogSnapshot snapshot = CatalogSnapshot.read(directory.resolve("catalog.snap"));
+        assertEquals(6, snapshot.getProducts().size());
+        assertEquals(2, snapshot.getUsers().size());
+        assertTrue(snapshot.getProducts().stream().allMatch(p -> p.getCreatedAt() > 0));
+    }
+
+    @Test
+    void testDecodesProductRecordsWrittenBeforeCreationTime() {
+        Product desk = new Product("Desk", "Standing desk", 3999.0, 2, "Furniture");
+        byte[] record = CatalogCodec.encodeProduct(desk);
+        // Records from before the creation time field end at the active flag
+        Product decoded = CatalogCodec.decodeProduct(ByteBuffer.wrap(record, 0, record.length - 8).slice());
+        assertEquals(desk.getId(), decoded.getId());
+        assertEquals(0L, decoded.getCreatedAt());
+        assertEquals(desk.getCreatedAt(), CatalogCodec.decodeProduct(ByteBuffer.wrap(record)).getCreatedAt());
+    }
+
+    @Test
+    void testPersistsPasswordHashesOnly() throws Exception {
+        UserService users = new UserService();
+        CatalogStore store = new CatalogStore(directory, new ProductService(), users);
+        store.start(3600);
+        users.register("Hashed", "hunter2secret");
+        store.snapshot();
+        users.updateProfile("Hashed", "changed2secret");
+        store.close();
+
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String content = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+                assertFalse(content.contains("secret"), file.toString());
+            }
+        }
+        UserService recovered = new UserService();
+        assertTrue(new CatalogStore(directory, new ProductService(), recovered).recover());
+        assertTrue(recovered.login("Hashed", "changed2secret"));
+        assertFalse(recovered.login("Hashed", "hunter2secret"));
+    }
+
+    @Test
+    void testRejectsUserRecordsWithoutPasswordHash() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (String value : new String[] {"legacy", "plain123"}) {
+                byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(utf8.length);
+                out.write(utf8);
+            }
+            out.writeInt(-1);
+            out.writeBoolean(true);
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> CatalogCodec.decodeUser(ByteBuffer.wrap(bytes.toByteArray())));
+
+        User user = new User("hashed", "plain123");
+        User decoded = CatalogCodec.decodeUser(ByteBuffer.wrap(CatalogCodec.encodeUser(user)));
+        assertTrue(PasswordHash.isEncoded(decoded.getPasswordHash()));
+        assertTrue(decoded.checkPassword("plain123"));
+    }
+
+    @Test
+    void testReadsUserRecordsWithFieldsAddedLater() throws Exception {
+        // A newer writer appending a field to each user record
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0x53414453);
+            out.writeInt(1);
+            out.writeLong(1);
+            out.writeInt(0);
+            out.writeInt(2);
+            for (String name : new String[] {"first", "second"}) {
+                byte[] record = CatalogCodec.encodeUser(new User(name, "secret123"));
+                out.writeInt(record.length + 8);
+                out.write(record);
+                out.writeLong(42);
+            }
+        }
+        Path file = directory.resolve("catalog.snap");
+        Files.write(file, bytes.toByteArray());
+
+        CatalogSnapshot snapshot = CatalogSnapshot.read(file);
+        assertEquals(List.of("first", "second"), snapshot.getUsers().stream().map(User::getUsername).toList());
+    }
+
+    @Test
+    void testRecoverWithoutSnapshotLeavesServicesUntouched() throws Exception {
+        ProductService products = new ProductService();
+        assertFalse(new CatalogStore(directory, products, new UserService()).recover());
+        List<Product> all = products.getAllProducts();
+        assertEquals(4, all.size());
+    }
+}
@@ -0,0 +1,126 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import main.java.ChangeBus;
+import main.java.Product;
+import main.java.ProductChange;
+import main.java.ProductPatch;
+import main.java.ProductService;
+
+public class ChangeBusTest {
+
+    @Test
+    public void testDeliversEveryEventInOrder() throws Exception {
+        ChangeBus<Integer> bus = new ChangeBus<>(16);
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        try (ChangeBus<Integer>.Subscription subscription = bus.subscribe("test", received::addAll)) {
+            for (int i = 0; i < 10_000; i++) {
+                bus.publish(i);
+            }
+            awaitDelivered(subscription, 10_000);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, received.get(i));
+        }
+    }
+
+    @Test
+    public void testConcurrentPublishersLoseNothing() throws Exception {
+        ChangeBus<Integer> bus = new ChangeBus<>(64);
+        int[] lastSeen = new int[4];
+        java.util.Arrays.fill(lastSeen, -1);
+        AtomicInteger outOfOrder = new AtomicInteger();
+        try (ChangeBus<Integer>.Subscription subscription = bus.subscribe("test", batch -> {
+            for (int event : batch) {
+                int producer = event / 1_000_000;
+                if (event % 1_000_000 != lastSeen[producer] + 1) {
+                    outOfOrder.incrementAndGet();
+                }
+                lastSeen[producer] = event % 1_000_000;
+            }
+        })) {
+            List<Thread> producers = new ArrayList<>();
+            for (int p = 0; p < 4; p++) {
+                int base = p * 1_000_000;
+                Thread producer = new Thread(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        bus.publish(base + i);
+                    }
+                });
+                producers.add(producer);
+                producer.start();
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            awaitDelivered(subscription, 80_000);
+        }
+        assertEquals(0, outOfOrder.get()); // each publisher's events arrive in its order
+    }
+
+    @Test
+    public void testSlowSubscriberHoldsBackPublishers() throws Exception {
+        ChangeBus<Integer> bus = new ChangeBus<>(4);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        try (ChangeBus<Integer>.Subscription subscription = bus.subscribe("slow", batch -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.addAll(batch);
+        })) {
+            AtomicInteger published = new AtomicInteger();
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 20; i++) {
+                    bus.publish(i);
+                    published.incrementAndGet();
+                }
+            });
+            producer.start();
+            producer.join(300);
+            assertTrue(producer.isAlive());
+            assertTrue(published.get() <= 8); // at most a held batch plus a full ring
+
+            release.countDown();
+            producer.join(5_000);
+            awaitDelivered(subscription, 20);
+        }
+        assertEquals(20, received.size());
+        assertEquals(19, received.get(19));
+    }
+
+    @Test
+    public void testProductServicePublishesCommittedChanges() throws Exception {
+        ProductService productService = new ProductService();
+        List<ProductChange> received = Collections.synchronizedList(new ArrayList<>());
+        try (ChangeBus<ProductChange>.Subscription subscription =
+                     productService.getChangeBus().subscribe("test", received::addAll)) {
+            Product product = new Product("Kettle", "Steel kettle", 900.0, 5, "Kitchen");
+            productService.addProduct(product);
+            productService.patchProduct(product.getId(), new ProductPatch().setPrice(850.0));
+            productService.addStock(product.getId(), 2);
+            awaitDelivered(subscription, 3);
+        }
+        assertEquals(ProductChange.Type.CREATED, received.get(0).getType());
+        assertTrue(received.get(1).changed(ProductChange.Field.PRICE));
+        assertTrue(received.get(2).changed(ProductChange.Field.STOCK));
+    }
+
+    private static void awaitDelivered(ChangeBus<?>.Subscription subscription, long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (subscription.getDeliveredCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, subscription.getDeliveredCount());
+    }
+}
@@ -0,0 +1,132 @@
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import main.java.persistence.ChangeLog;
+
+public class ChangeLogTest {
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @EnumSource(ChangeLog.Durability.class)
+    void testConcurrentAppendsAreAllReplayed(ChangeLog.Durability durability) throws Exception {
+        ChangeLog log = new ChangeLog(directory, durability);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 250; i++) {
+                    log.append(ChangeLog.PRODUCT_DELETE, new byte[] {1, 2, 3});
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        log.close();
+
+        List<Long> sequences = new ArrayList<>();
+        long last = ChangeLog.replay(directory, 0, (sequence, type, payload) -> sequences.add(sequence));
+        assertEquals(2000, sequences.size());
+        assertEquals(2000, last);
+        for (int i = 0; i < sequences.size(); i++) {
+            assertEquals(i + 1, sequences.get(i));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ChangeLog.Durability.class)
+    void testRollDuringConcurrentAppends(ChangeLog.Durability durability) throws Exception {
+        ChangeLog log = new ChangeLog(directory, durability);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> appenders = new ArrayList<>();
+        for (int t = 0; t < 6; t++) {
+            appenders.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    log.append(ChangeLog.PRODUCT_DELETE, new byte[1024]);
+                }
+            }));
+        }
+        AtomicBoolean appending = new AtomicBoolean(true);
+        List<Future<?>> rollers = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            rollers.add(executor.submit(() -> {
+                while (appending.get()) {
+                    log.roll();
+                }
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> future : appenders) {
+                future.get();
+            }
+        } finally {
+            appending.set(false);
+        }
+        for (Future<?> future : rollers) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(log.isUsable());
+        log.close();
+
+        List<Long> sequences = new ArrayList<>();
+        ChangeLog.replay(directory, 0, (sequence, type, payload) -> sequences.add(sequence));
+        assertEquals(3000, sequences.size());
+        for (int i = 0; i < sequences.size(); i++) {
+            assertEquals(i + 1, sequences.get(i));
+        }
+    }
+
+    @Test
+    void testReopenContinuesSequence() throws Exception {
+        ChangeLog log = new ChangeLog(directory);
+        log.append(ChangeLog.PRODUCT_DELETE, new byte[] {1});
+        log.append(ChangeLog.PRODUCT_DELETE, new byte[] {2});
+        log.close();
+
+        ChangeLog reopened = new ChangeLog(directory);
+        assertEquals(3, reopened.append(ChangeLog.PRODUCT_DELETE, new byte[] {3}));
+        reopened.close();
+    }
+
+    @Test
+    void testReplayStopsAtTornRecord() throws Exception {
+        ChangeLog log = new ChangeLog(directory, ChangeLog.Durability.SYNC);
+        log.append(ChangeLog.PRODUCT_DELETE, new byte[] {1});
+        log.append(ChangeLog.PRODUCT_DELETE, new byte[] {2});
+        log.close();
+
+        // Simulate a crash halfway through writing the second record
+        Path segment;
+        try (var files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        List<Byte> payloads = new ArrayList<>();
+        ChangeLog.replay(directory, 0, (sequence, type, payload) -> payloads.add(payload.get(0)));
+        assertEquals(List.of((byte) 1), payloads);
+    }
+}
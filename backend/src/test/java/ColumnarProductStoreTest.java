@@ -0,0 +1,77 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import main.java.Product;
+import main.java.ProductService;
+import main.java.catalog.ColumnarProductStore;
+
+public class ColumnarProductStoreTest {
+
+    @Test
+    void testPutGetRoundTrip() {
+        ColumnarProductStore store = new ColumnarProductStore();
+        Product product = new Product("Kettle", "Électrique 1.7L", 499.99, 8, "Appliances");
+        product.setImageUrl("https://example.com/kettle.png");
+        product.addRating(4.0);
+        store.put(product.getId(), product);
+
+        Product stored = store.get(product.getId());
+        assertNotNull(stored);
+        assertEquals(product.getId(), stored.getId());
+        assertEquals("Kettle", stored.getName());
+        assertEquals("Électrique 1.7L", stored.getDescription());
+        assertEquals(499.99, stored.getPrice());
+        assertEquals(8, stored.getStock());
+        assertEquals("Appliances", stored.getCategory());
+        assertEquals("https://example.com/kettle.png", stored.getImageUrl());
+        assertEquals(4.0, stored.getRating());
+        assertEquals(1, stored.getReviewCount());
+        assertTrue(stored.isActive());
+    }
+
+    @Test
+    void testRemoveAndRowReuse() {
+        ColumnarProductStore store = new ColumnarProductStore(16);
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Product product = new Product("Item " + i, "Description " + i, i, i, "Category" + (i % 7));
+            products.add(product);
+            store.put(product.getId(), product);
+        }
+        assertEquals(5000, store.size());
+
+        for (int i = 0; i < 5000; i += 2) {
+            assertNotNull(store.remove(products.get(i).getId()));
+        }
+        assertEquals(2500, store.size());
+        assertNull(store.get(products.get(0).getId()));
+        assertFalse(store.containsKey(products.get(2).getId()));
+        assertEquals("Item 4999", store.get(products.get(4999).getId()).getName());
+
+        Product replacement = new Product("Replacement", "Reuses a freed row", 1, 1, "Category0");
+        store.put(replacement.getId(), replacement);
+        assertEquals(2501, store.values().size());
+        assertEquals("Replacement", store.get(replacement.getId()).getName());
+    }
+
+    @Test
+    void testProductServiceWritesBackInPlaceChanges() {
+        ProductService service = new ProductService(new ColumnarProductStore());
+        Product product = service.addProduct(new Product("Desk", "Standing desk", 3999.0, 5, "Furniture"));
+
+        assertEquals(8, service.addStock(product.getId(), 3));
+        assertEquals(6, service.removeStock(product.getId(), 2));
+        assertTrue(service.deactivateProduct(product.getId()));
+        assertNull(service.getProductById(product.getId()));
+        assertTrue(service.reactivateProduct(product.getId()));
+        assertEquals(6, service.getProductById(product.getId()).getStock());
+        assertEquals(5, service.getAllProducts().size());
+    }
+}
@@ -0,0 +1,116 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import main.java.CorsPolicy;
+import main.java.JettyConnectors;
+
+public class CorsPolicyTest {
+    private static final HttpClient client = HttpClient.newHttpClient();
+
+    private Server jetty;
+    private final AtomicInteger handled = new AtomicInteger();
+
+    @AfterEach
+    public void stop() throws Exception {
+        if (jetty != null) {
+            jetty.stop();
+        }
+    }
+
+    @Test
+    public void testAnswersPreflightBeforeRouting() throws Exception {
+        int port = start(new CorsPolicy(List.of("https://shop.example.com/", "http://localhost:3000"), 600));
+
+        HttpResponse<String> allowed = send(port, "OPTIONS", "https://shop.example.com", "PUT");
+        assertEquals(204, allowed.statusCode());
+        assertEquals("https://shop.example.com", header(allowed, "Access-Control-Allow-Origin"));
+        assertEquals(CorsPolicy.ALLOWED_METHODS, header(allowed, "Access-Control-Allow-Methods"));
+        assertEquals(CorsPolicy.ALLOWED_HEADERS, header(allowed, "Access-Control-Allow-Headers"));
+        assertEquals("600", header(allowed, "Access-Control-Max-Age"));
+        assertEquals("Origin", header(allowed, "Vary"));
+
+        HttpResponse<String> refused = send(port, "OPTIONS", "https://evil.example.com", "PUT");
+        assertEquals(403, refused.statusCode());
+        assertFalse(refused.headers().firstValue("Access-Control-Allow-Origin").isPresent());
+        assertEquals(0, handled.get());
+
+        // Not a preflight: left to the application
+        assertEquals(200, send(port, "OPTIONS", null, null).statusCode());
+        assertEquals(1, handled.get());
+    }
+
+    @Test
+    public void testAllowsListedOriginsOnly() throws Exception {
+        int port = start(new CorsPolicy(List.of("http://localhost:3000"), 600));
+
+        HttpResponse<String> allowed = send(port, "GET", "http://localhost:3000", null);
+        assertEquals("http://localhost:3000", header(allowed, "Access-Control-Allow-Origin"));
+        assertTrue(allowed.headers().allValues("Vary").contains("Origin"));
+
+        HttpResponse<String> other = send(port, "GET", "http://localhost:3001", null);
+        assertEquals(200, other.statusCode());
+        assertFalse(other.headers().firstValue("Access-Control-Allow-Origin").isPresent());
+    }
+
+    @Test
+    public void testWildcardAllowsAnyOrigin() throws Exception {
+        int port = start(new CorsPolicy(List.of("*"), 7200));
+
+        HttpResponse<String> response = send(port, "GET", "https://anywhere.example.com", null);
+        assertEquals("*", header(response, "Access-Control-Allow-Origin"));
+        assertFalse(response.headers().firstValue("Vary").isPresent());
+        assertEquals("7200", header(send(port, "OPTIONS", "https://anywhere.example.com", "DELETE"),
+                "Access-Control-Max-Age"));
+    }
+
+    private int start(CorsPolicy cors) throws Exception {
+        jetty = new JettyConnectors().cors(cors).host("localhost").port(0).create(null);
+        ServletContextHandler context = new ServletContextHandler();
+        context.addServlet(new ServletHolder(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) {
+                handled.incrementAndGet();
+                cors.apply(request, response);
+                response.setStatus(200);
+            }
+        }), "/*");
+        jetty.setHandler(context);
+        jetty.start();
+        return ((ServerConnector) jetty.getConnectors()[0]).getLocalPort();
+    }
+
+    private static HttpResponse<String> send(int port, String method, String origin, String requestMethod)
+            throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/products"))
+                .method(method, HttpRequest.BodyPublishers.noBody());
+        if (origin != null) {
+            request.header("Origin", origin);
+        }
+        if (requestMethod != null) {
+            request.header("Access-Control-Request-Method", requestMethod);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String header(HttpResponse<?> response, String name) {
+        return response.headers().firstValue(name).orElse(null);
+    }
+}
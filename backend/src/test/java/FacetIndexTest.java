@@ -0,0 +1,117 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import main.java.Product;
+import main.java.ProductService;
+import main.java.catalog.FacetIndex;
+
+public class FacetIndexTest {
+    private FacetIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new FacetIndex(new double[] {100, 1000});
+        index.index("cable", rated(new Product("Cable", "", 50, 10, "Electronics"), 3.5));
+        index.index("phone", rated(new Product("Phone", "", 800, 0, "Electronics"), 4.5));
+        index.index("laptop", rated(new Product("Laptop", "", 1500, 3, "Electronics"), 4.0));
+        index.index("kettle", rated(new Product("Kettle", "", 100, 5, "Appliances"), 2.0));
+        index.index("fridge", rated(new Product("Fridge", "", 999.99, 1, "appliances"), 5.0));
+    }
+
+    @Test
+    void testCombinedFilters() {
+        assertEquals(List.of("laptop"), ids(new FacetIndex.Filter().category("Electronics").inStockOnly(true).minRating(4.0)));
+        assertEquals(List.of("phone", "kettle", "fridge"), ids(new FacetIndex.Filter().priceRange(100.0, 999.99)));
+        assertEquals(List.of("cable", "phone", "laptop", "fridge"),
+                ids(new FacetIndex.Filter().minRating(3.5)));
+        assertEquals(List.of("cable", "kettle"),
+                ids(new FacetIndex.Filter().category("electronics").category("APPLIANCES").priceRange(null, 100.0).inStockOnly(true)));
+        assertTrue(ids(new FacetIndex.Filter().category("Toys")).isEmpty());
+        assertTrue(ids(new FacetIndex.Filter().priceRange(10.0, 5.0)).isEmpty());
+    }
+
+    @Test
+    void testFacetCountsIgnoreTheirOwnFilter() {
+        FacetIndex.Result<String> result = index.query(new FacetIndex.Filter().category("Electronics").priceRange(0.0, 999.0), 0, 10);
+        assertEquals(2, result.getTotal());
+        // Categories count under the price filter only
+        assertEquals(Map.of("Electronics", 2, "Appliances", 1), result.getCategories());
+        // Price buckets count under the category filter only
+        assertEquals(List.of(1, 1, 1), result.getPrices().stream().map(FacetIndex.PriceBucket::getCount).collect(Collectors.toList()));
+        assertEquals(1000.0, result.getPrices().get(2).getMin());
+        assertEquals(null, result.getPrices().get(2).getMax());
+    }
+
+    @Test
+    void testUpdatesMoveProductsBetweenBuckets() {
+        index.index("phone", rated(new Product("Phone", "", 50, 2, "Accessories"), 1.0));
+        index.remove("cable");
+        FacetIndex.Result<String> result = index.query(new FacetIndex.Filter().inStockOnly(true), 0, 10);
+        assertEquals(List.of("phone", "laptop", "kettle", "fridge"), result.getItems());
+        assertEquals(Map.of("Accessories", 1, "Electronics", 1, "Appliances", 2), result.getCategories());
+        assertEquals(4, index.size());
+
+        // Freed document numbers are reused
+        index.index("mouse", new Product("Mouse", "", 20, 1, "Accessories"));
+        assertEquals(List.of("mouse", "phone"), ids(new FacetIndex.Filter().category("Accessories")));
+    }
+
+    @Test
+    void testMatchesBruteForce() {
+        Random random = new Random(3);
+        FacetIndex big = new FacetIndex();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Product product = new Product("P" + i, "", random.nextInt(30000) / 1.5, random.nextInt(3), "C" + random.nextInt(7));
+            product.addRating(random.nextInt(51) / 10.0);
+            products.add(product);
+            big.index(product.getId(), product);
+        }
+        for (int trial = 0; trial < 50; trial++) {
+            double min = random.nextInt(25000);
+            double max = min + random.nextInt(10000);
+            double rating = random.nextInt(51) / 10.0;
+            String category = "C" + random.nextInt(7);
+            FacetIndex.Result<String> result = big.query(new FacetIndex.Filter()
+                    .category(category).priceRange(min, max).inStockOnly(true).minRating(rating), 0, 5000);
+            List<String> expected = products.stream()
+                    .filter(p -> p.getCategory().equals(category) && p.getPrice() >= min && p.getPrice() <= max
+                            && p.getStock() > 0 && p.getRating() >= rating)
+                    .map(Product::getId)
+                    .sorted()
+                    .collect(Collectors.toList());
+            assertEquals(expected, result.getItems().stream().sorted().collect(Collectors.toList()));
+            assertEquals(expected.size(), result.getTotal());
+        }
+    }
+
+    @Test
+    void testProductServiceFilterTracksStockChanges() {
+        ProductService productService = new ProductService();
+        Product product = productService.addProduct(new Product("Blender", "Smoothies", 1200, 1, "Appliances"));
+        FacetIndex.Filter inStockAppliances = new FacetIndex.Filter().category("Appliances").inStockOnly(true);
+        assertEquals(2, productService.filterProducts(inStockAppliances, 0, 10).getTotal());
+
+        productService.removeStock(product.getId(), 1);
+        FacetIndex.Result<Product> result = productService.filterProducts(inStockAppliances, 0, 10);
+        assertEquals(1, result.getTotal());
+        assertEquals("Coffee Maker", result.getItems().get(0).getName());
+    }
+
+    private List<String> ids(FacetIndex.Filter filter) {
+        return index.query(filter, 0, 100).getItems();
+    }
+
+    private static Product rated(Product product, double rating) {
+        product.addRating(rating);
+        return product;
+    }
+}
@@ -0,0 +1,109 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import main.java.Product;
+import main.java.ProductService;
+import main.java.profiling.FlightRecordings;
+import main.java.profiling.RouteEvent;
+import main.java.tracing.Span;
+import main.java.tracing.Tracer;
+
+public class FlightRecordingsTest {
+    private final FlightRecordings recordings = new FlightRecordings();
+
+    @AfterEach
+    public void stop() throws Exception {
+        Path file = recordings.stop();
+        if (file != null) {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRecordsApplicationEvents() throws Exception {
+        recordings.start("default", null, null);
+        assertTrue(recordings.isRunning());
+        assertThrows(IllegalStateException.class, () -> recordings.start("profile", null, null));
+
+        ProductService productService = new ProductService();
+        Product product = productService.addProduct(new Product("Kettle", "Electric kettle", 499.0, 5, "Appliances"));
+        // Not traced, still recorded
+        try (Span span = Tracer.span("session.lookup")) {
+            assertFalse(span.isRecording());
+        }
+        RouteEvent route = RouteEvent.start();
+        assertNotNull(route);
+        route.method = "GET";
+        route.route = "GET /api/products/:id";
+        route.status = 200;
+        route.commit();
+
+        Path file = recordings.stop();
+        assertFalse(recordings.isRunning());
+        List<RecordedEvent> events;
+        try {
+            events = RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+        List<String> operations = new ArrayList<>();
+        RecordedEvent mutation = null;
+        RecordedEvent routeEvent = null;
+        for (RecordedEvent event : events) {
+            switch (event.getEventType().getName()) {
+                case "sadeliver.Operation":
+                    operations.add(event.getString("name"));
+                    break;
+                case "sadeliver.CatalogMutation":
+                    if (product.getId().equals(event.getString("productId"))) {
+                        mutation = event;
+                    }
+                    break;
+                case "sadeliver.Route":
+                    routeEvent = event;
+                    break;
+                default:
+            }
+        }
+        assertTrue(operations.contains("ProductService.addProduct"), operations.toString());
+        assertTrue(operations.contains("session.lookup"), operations.toString());
+        assertNotNull(mutation);
+        assertEquals("CREATED", mutation.getString("type"));
+        assertNotNull(routeEvent);
+        assertEquals("GET /api/products/:id", routeEvent.getString("route"));
+    }
+
+    @Test
+    public void testEventsAreOffWithoutARecording() throws Exception {
+        assertNull(RouteEvent.start());
+        assertNull(recordings.dump());
+        assertEquals("none", recordings.describe());
+        assertThrows(IllegalArgumentException.class, () -> recordings.start("no-such-settings", null, null));
+    }
+
+    @Test
+    public void testDumpsWhileRunning() throws Exception {
+        recordings.start("default", Duration.ofMinutes(1), null);
+        Path snapshot = recordings.dump();
+        try {
+            assertTrue(Files.size(snapshot) > 0);
+        } finally {
+            Files.delete(snapshot);
+        }
+        assertTrue(recordings.isRunning());
+    }
+}
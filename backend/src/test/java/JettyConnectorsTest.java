@@ -0,0 +1,156 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import main.java.JettyConnectors;
+
+public class JettyConnectorsTest {
+    // What the frontend requests when a signed-in page loads
+    private static final String[] FAN_OUT = {
+        "/api/products", "/api/categories", "/api/profile", "/api/products/category/Home",
+        "/api/products/suggest?q=la", "/api/products/filter?inStock=true", "/health", "/api/products/1"
+    };
+
+    private Server jetty;
+    private final CountDownLatch slowRequestArrived = new CountDownLatch(1);
+
+    @AfterEach
+    public void stop() throws Exception {
+        if (jetty != null) {
+            jetty.stop();
+        }
+    }
+
+    @Test
+    public void testAppliesConnectorSettings() throws Exception {
+        ServerConnector connector = start(new JettyConnectors()
+                .idleTimeoutMillis(12_000)
+                .acceptors(1)
+                .selectors(2)
+                .outputBufferBytes(16 * 1024)
+                .maxConcurrentStreams(64)
+                .protocol(JettyConnectors.Protocol.H2C));
+
+        assertEquals(12_000, connector.getIdleTimeout());
+        assertEquals(1, connector.getAcceptors());
+        assertEquals(2, connector.getSelectorManager().getSelectorCount());
+        assertEquals(16 * 1024, connector.getConnectionFactory(HttpConnectionFactory.class)
+                .getHttpConfiguration().getOutputBufferSize());
+        HTTP2CServerConnectionFactory h2c = connector.getConnectionFactory(HTTP2CServerConnectionFactory.class);
+        assertEquals(64, h2c.getMaxConcurrentStreams());
+        assertEquals(12_000, h2c.getStreamIdleTimeout());
+    }
+
+    @Test
+    public void testH2cFanOutSharesOneConnection() throws Exception {
+        ServerConnector connector = start(new JettyConnectors().protocol(JettyConnectors.Protocol.H2C));
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+
+        // The first request upgrades the connection to HTTP/2
+        assertEquals(HttpClient.Version.HTTP_2, get(client, connector, "/health").join().version());
+        for (HttpResponse<String> response : fanOut(client, connector)) {
+            assertEquals(HttpClient.Version.HTTP_2, response.version());
+            assertEquals(200, response.statusCode());
+        }
+        assertEquals(1, connector.getConnectedEndPoints().size());
+    }
+
+    @Test
+    public void testHttp1StaysDefault() throws Exception {
+        ServerConnector connector = start(new JettyConnectors());
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+
+        for (HttpResponse<String> response : fanOut(client, connector)) {
+            assertEquals(HttpClient.Version.HTTP_1_1, response.version());
+            assertTrue(response.body().startsWith("HTTP/1.1"));
+        }
+    }
+
+    @Test
+    public void testH2RequiresKeyStore() {
+        JettyConnectors connectors = new JettyConnectors().protocol(JettyConnectors.Protocol.parse("h2"));
+        assertThrows(IllegalArgumentException.class, () -> connectors.addConnector(new Server()));
+        assertEquals(JettyConnectors.Protocol.HTTP1, JettyConnectors.Protocol.parse(null));
+        assertThrows(IllegalArgumentException.class, () -> JettyConnectors.Protocol.parse("spdy"));
+    }
+
+    @Test
+    public void testGracefulStopFinishesRequestsInFlight() throws Exception {
+        ServerConnector connector = start(new JettyConnectors().stopTimeoutMillis(5_000));
+        HttpClient client = HttpClient.newHttpClient();
+
+        CompletableFuture<HttpResponse<String>> slow = get(client, connector, "/slow");
+        assertTrue(slowRequestArrived.await(5, TimeUnit.SECONDS));
+        jetty.stop();
+
+        HttpResponse<String> response = slow.get(5, TimeUnit.SECONDS);
+        assertEquals(200, response.statusCode());
+        assertEquals("HTTP/1.1 /slow", response.body());
+        assertFalse(connector.isOpen());
+    }
+
+    private ServerConnector start(JettyConnectors connectors) throws Exception {
+        jetty = connectors.port(0).host("localhost").create(-1, -1, -1);
+        ServletContextHandler context = new ServletContextHandler();
+        context.addServlet(new ServletHolder(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws java.io.IOException {
+                if (request.getRequestURI().equals("/slow")) {
+                    slowRequestArrived.countDown();
+                    try {
+                        Thread.sleep(300);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                response.setContentType("text/plain");
+                response.getWriter().write(request.getProtocol() + " " + request.getRequestURI());
+            }
+        }), "/*");
+        jetty.setHandler(context);
+        jetty.start();
+        return (ServerConnector) jetty.getConnectors()[0];
+    }
+
+    private static List<HttpResponse<String>> fanOut(HttpClient client, ServerConnector connector) {
+        List<CompletableFuture<HttpResponse<String>>> requests = new ArrayList<>();
+        for (String path : FAN_OUT) {
+            requests.add(get(client, connector, path));
+        }
+        List<HttpResponse<String>> responses = new ArrayList<>();
+        for (CompletableFuture<HttpResponse<String>> request : requests) {
+            responses.add(request.join());
+        }
+        return responses;
+    }
+
+    private static CompletableFuture<HttpResponse<String>> get(HttpClient client, ServerConnector connector,
+                                                             String path) {
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + connector.getLocalPort() + path)).build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,92 @@
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+
+import main.java.JsonCodecs;
+import main.java.Product;
+import main.java.ProductPatch;
+import main.java.Response;
+import main.java.User;
+
+public class JsonCodecsTest {
+    private final Gson gson = JsonCodecs.create();
+    private final Gson reflective = new Gson();
+
+    @Test
+    public void testWritesSameJsonAsReflectiveGson() {
+        Product lamp = new Product("Lamp <b>", "Desk lamp \"déjà\" ☃", 399.5, 7, "Home");
+        lamp.setImageUrl("https://example.com/lamp.png?a=1&b=2");
+        Product chair = new Product("Chair", "Oak chair", 1500.0, 0, "Home");
+        chair.addRating(4.5);
+        User user = new User("Thandi", "secret", "thandi@example.com");
+        user.setPassword("other");
+
+        List<Object> values = List.of(
+                new Response(true, "Product retrieved successfully", lamp),
+                new Response(true, "Products retrieved successfully", List.of(lamp, chair)),
+                new Response(false, "Product not found"),
+                new Response(true, "Login successful", Map.of("sessionToken", "abc", "username", "Thandi")),
+                new Response(true, "User registered successfully", user),
+                new ProductPatch().setPrice(12.0).setActive(false).setName("Renamed"));
+        for (Object value : values) {
+            assertEquals(reflective.toJson(value), gson.toJson(value));
+        }
+    }
+
+    @Test
+    public void testProductRoundTrip() {
+        Product lamp = new Product("Lamp", "Desk lamp", 399.5, 7, "Home");
+        lamp.addRating(3.0);
+        lamp.setActive(false);
+
+        Product read = gson.fromJson(gson.toJson(lamp), Product.class);
+        assertEquals(lamp.getId(), read.getId());
+        assertEquals(lamp.getCreatedAt(), read.getCreatedAt());
+        assertEquals(3.0, read.getRating());
+        assertEquals(1, read.getReviewCount());
+        assertFalse(read.isActive());
+        assertEquals(reflective.toJson(lamp), gson.toJson(read));
+
+        Product created = gson.fromJson("{\"name\":\"Mug\",\"price\":\"4.5\",\"stock\":3}", Product.class);
+        assertTrue(created.getId() != null && created.isActive());
+        assertEquals(4.5, created.getPrice());
+        assertEquals("Uncategorized", created.getCategory());
+    }
+
+    @Test
+    public void testReadsOnlySubmittedPatchFields() {
+        ProductPatch patch = gson.fromJson(
+                "{\"stock\":5,\"imageUrl\":null,\"extra\":{\"nested\":[1,2]},\"active\":\"true\"}", ProductPatch.class);
+        assertEquals(5, patch.getStock());
+        assertEquals(Boolean.TRUE, patch.getActive());
+        assertNull(patch.getName());
+        assertNull(patch.getPrice());
+        assertNull(patch.getImageUrl());
+        assertNull(gson.fromJson("null", ProductPatch.class));
+    }
+
+    @Test
+    public void testReadsUsersWithValidation() throws Exception {
+        User user = gson.fromJson("{\"username\":\"Sipho\",\"password\":\"pass\",\"email\":\"\"}", User.class);
+        assertEquals("Sipho", user.getUsername());
+        assertNull(user.getEmail());
+        assertTrue(user.isActive());
+        assertThrows(IllegalArgumentException.class,
+                () -> gson.fromJson("{\"username\":\"x!\",\"password\":\"pass\"}", User.class));
+
+        assertEquals("new", JsonCodecs.readStringField("{\"a\":[{}],\"password\":\"new\"}", "password"));
+        assertNull(JsonCodecs.readStringField("{\"password\":null}", "password"));
+
+        Response response = gson.fromJson("{\"success\":true,\"message\":\"ok\",\"data\":{\"n\":1}}", Response.class);
+        assertTrue(response.isSuccess());
+        assertEquals(Map.of("n", 1.0), response.getData());
+    }
+}
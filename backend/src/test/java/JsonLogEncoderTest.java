@@ -0,0 +1,43 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import main.java.util.JsonLogEncoder;
+
+public class JsonLogEncoderTest {
+    @Test
+    public void testWritesOneJsonObjectPerLine() {
+        Logger logger = (Logger) LoggerFactory.getLogger("test");
+        LoggingEvent event = new LoggingEvent(Logger.FQCN, logger, Level.WARN,
+                "Order {} \"failed\"\nretrying", new IllegalStateException("boom"), new Object[] {42});
+        event.setMDCPropertyMap(Map.of("requestId", "abc-1"));
+        event.addKeyValuePair(new org.slf4j.event.KeyValuePair("status", 503));
+        event.addKeyValuePair(new org.slf4j.event.KeyValuePair("path", "/api/orders"));
+
+        JsonLogEncoder encoder = new JsonLogEncoder();
+        encoder.setContext((LoggerContext) LoggerFactory.getILoggerFactory());
+        String line = new String(encoder.encode(event), StandardCharsets.UTF_8);
+
+        assertTrue(line.endsWith("}\n"));
+        assertEquals(1, line.split("\n").length);
+        JsonObject json = JsonParser.parseString(line).getAsJsonObject();
+        assertEquals("WARN", json.get("level").getAsString());
+        assertEquals("test", json.get("logger").getAsString());
+        assertEquals("Order 42 \"failed\"\nretrying", json.get("msg").getAsString());
+        assertEquals("abc-1", json.get("requestId").getAsString());
+        assertTrue(json.get("status").getAsJsonPrimitive().isNumber());
+        assertEquals("/api/orders", json.get("path").getAsString());
+        assertTrue(json.get("error").getAsString().startsWith("java.lang.IllegalStateException: boom"));
+        assertTrue(json.get("ts").getAsString().endsWith("Z"));
+    }
+}
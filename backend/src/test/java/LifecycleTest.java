@@ -0,0 +1,69 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import main.java.Lifecycle;
+
+public class LifecycleTest {
+    @Test
+    public void testReadyOnceStartedWithGatesReleasedAndChecksUp() {
+        Lifecycle lifecycle = new Lifecycle(0);
+        boolean[] databaseUp = {false};
+        lifecycle.addCheck("database", () -> databaseUp[0]);
+        lifecycle.addCheck("broken", () -> {
+            throw new IllegalStateException("unreachable");
+        });
+        lifecycle.hold("warmup");
+
+        assertTrue(lifecycle.isLive());
+        assertFalse(lifecycle.isReady());
+        lifecycle.started();
+        assertEquals(Map.of("state", "READY", "warmup", "pending", "database", "down", "broken", "down"),
+                lifecycle.report());
+
+        lifecycle.release("warmup");
+        databaseUp[0] = true;
+        assertFalse(lifecycle.isReady());
+        assertEquals("down", lifecycle.report().get("broken"));
+
+        Lifecycle healthy = new Lifecycle(0);
+        healthy.addCheck("database", () -> databaseUp[0]);
+        healthy.started();
+        assertTrue(healthy.isReady());
+        assertEquals(List.of("state", "database"), new ArrayList<>(healthy.report().keySet()));
+    }
+
+    @Test
+    public void testShutdownDrainsThenRunsStepsInOrder() {
+        Lifecycle lifecycle = new Lifecycle(100);
+        lifecycle.started();
+        List<String> ran = new ArrayList<>();
+        List<Lifecycle.State> states = new ArrayList<>();
+        lifecycle.onShutdown("http", () -> {
+            ran.add("http");
+            states.add(lifecycle.getState());
+        });
+        lifecycle.onShutdown("catalogStore", () -> {
+            throw new IllegalStateException("disk full");
+        });
+        lifecycle.onShutdown("database", () -> ran.add("database"));
+
+        long start = System.nanoTime();
+        lifecycle.shutdown();
+        assertTrue(System.nanoTime() - start >= 100_000_000L);
+        // A failed step does not stop the rest
+        assertEquals(List.of("http", "database"), ran);
+        assertEquals(List.of(Lifecycle.State.DRAINING), states);
+        assertEquals(Lifecycle.State.STOPPED, lifecycle.getState());
+        assertFalse(lifecycle.isLive());
+        assertFalse(lifecycle.isReady());
+
+        lifecycle.shutdown();
+        assertEquals(2, ran.size());
+    }
+}
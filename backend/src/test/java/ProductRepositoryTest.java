@@ -0,0 +1,179 @@
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import main.java.entities.Product;
+import main.java.repository.ProductRepository;
+import main.java.repository.ProductSummary;
+import main.java.util.RoutingDataSource;
+
+/**
+ * Runs the catalog schema against an embedded H2 database and checks that
+ * every repository query is answered from an index rather than a table scan.
+ */
+public class ProductRepositoryTest {
+    private JdbcDataSource dataSource;
+    private ProductRepository repository;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = createDatabase();
+        repository = new ProductRepository(dataSource);
+
+        insert("Laptop", "Electronics", 4.5, true);
+        insert("Laptop Stand", "Electronics", 3.0, true);
+        insert("Smartphone", "Electronics", 4.8, true);
+        insert("Coffee Maker", "Appliances", 4.0, true);
+        insert("Running Shoes", "Sports", 2.5, false);
+    }
+
+    @Test
+    void testQueriesUseIndexes() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            for (Map.Entry<String, String> entry : ProductRepository.QUERY_INDEXES.entrySet()) {
+                String plan = explain(connection, entry.getKey());
+                assertFalse(plan.contains("tableScan"), "Full table scan for: " + entry.getKey() + "\n" + plan);
+                assertTrue(plan.contains(entry.getValue().toUpperCase()),
+                        "Expected " + entry.getValue() + " for: " + entry.getKey() + "\n" + plan);
+            }
+        }
+    }
+
+    @Test
+    void testSchemaDeclaresEntityIndexes() throws SQLException {
+        Table table = Product.class.getAnnotation(Table.class);
+        assertNotNull(table);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES WHERE TABLE_NAME = 'PRODUCTS' AND INDEX_NAME = ?")) {
+            for (Index index : table.indexes()) {
+                statement.setString(1, index.name().toUpperCase());
+                try (ResultSet rs = statement.executeQuery()) {
+                    rs.next();
+                    assertEquals(1, rs.getInt(1), "Missing index " + index.name());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testKeysetPagination() throws SQLException {
+        List<ProductSummary> first = repository.findActive(null, 2);
+        assertEquals(2, first.size());
+        List<ProductSummary> second = repository.findActive(first.get(1).getId(), 2);
+        assertEquals(2, second.size());
+        assertTrue(second.get(0).getId().compareTo(first.get(1).getId()) > 0);
+        assertTrue(repository.findActive(second.get(1).getId(), 2).isEmpty());
+    }
+
+    @Test
+    void testFindByCategoryAndFeatured() throws SQLException {
+        assertEquals(3, repository.findByCategory("Electronics", null, 10).size());
+        assertTrue(repository.findByCategory("Sports", null, 10).isEmpty());
+
+        List<ProductSummary> featured = repository.findFeatured(2);
+        assertEquals("Smartphone", featured.get(0).getName());
+        assertEquals("Laptop", featured.get(1).getName());
+    }
+
+    @Test
+    void testFindByNamePrefixIgnoresCase() throws SQLException {
+        List<ProductSummary> results = repository.findByNamePrefix("LAP", 10);
+        assertEquals(2, results.size());
+        assertEquals("Laptop", results.get(0).getName());
+        assertEquals("Laptop Stand", results.get(1).getName());
+    }
+
+    @Test
+    void testReadsGoToReplicaThroughRoutingDataSource() throws Exception {
+        // The populated database plays the replica; the primary is empty
+        RoutingDataSource routing = new RoutingDataSource(createDatabase(), List.of(dataSource), 5000);
+        ProductRepository routed = new ProductRepository(routing);
+        assertEquals(4, routed.findActive(null, 10).size());
+        assertTrue(routing.readWrite(null, () -> routed.findActive(null, 10)).isEmpty());
+    }
+
+    private static JdbcDataSource createDatabase() throws Exception {
+        JdbcDataSource database = new JdbcDataSource();
+        database.setURL("jdbc:h2:mem:plans_" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        database.setUser("sa");
+        database.setPassword("");
+
+        try (Connection connection = database.getConnection();
+             Statement statement = connection.createStatement()) {
+            for (String sql : loadSchema().split(";")) {
+                if (!sql.isBlank()) {
+                    statement.execute(sql);
+                }
+            }
+        }
+        return database;
+    }
+
+    private void insert(String name, String category, double rating, boolean active) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "INSERT INTO products (id, name, name_key, price, stock, category, rating, active, created_at) "
+                             + "VALUES (?, ?, ?, ?, 1, ?, ?, ?, CURRENT_TIMESTAMP)")) {
+            statement.setString(1, UUID.randomUUID().toString());
+            statement.setString(2, name);
+            statement.setString(3, Product.toNameKey(name));
+            statement.setBigDecimal(4, BigDecimal.TEN);
+            statement.setString(5, category);
+            statement.setDouble(6, rating);
+            statement.setBoolean(7, active);
+            statement.executeUpdate();
+        }
+    }
+
+    private static String explain(Connection connection, String query) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + query)) {
+            ParameterMetaData params = statement.getParameterMetaData();
+            for (int i = 1; i <= params.getParameterCount(); i++) {
+                // Any value of the right shape is enough to get a plan
+                if (query.contains("LIMIT ?") && i == params.getParameterCount()) {
+                    statement.setInt(i, 10);
+                } else {
+                    statement.setObject(i, "a", Types.VARCHAR);
+                }
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                return rs.getString(1);
+            }
+        }
+    }
+
+    private static String loadSchema() throws Exception {
+        try (InputStream in = ProductRepositoryTest.class.getResourceAsStream("/db/catalog-schema.sql")) {
+            assertNotNull(in, "catalog-schema.sql not on classpath");
+            StringBuilder sql = new StringBuilder();
+            for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                if (!line.trim().startsWith("--")) {
+                    sql.append(line).append('\n');
+                }
+            }
+            return sql.toString();
+        }
+    }
+}
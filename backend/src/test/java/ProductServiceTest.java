@@ -1,12 +1,22 @@
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import main.java.Product;
+import main.java.ProductChange;
+import main.java.ProductPatch;
 import main.java.ProductService;
+import main.java.catalog.FacetIndex;
+import main.java.persistence.ChangeLog;
 
 public class ProductServiceTest {
 
@@ -59,6 +69,127 @@ public class ProductServiceTest {
         assertNotNull(addedProduct);
         assertEquals(5, productService.getAllProducts().size()); // 4 sample + 1 test
     }
-}
 
+    @Test
+    public void testSearchIgnoresCaseAndAccents() {
+        ProductService productService = new ProductService();
+        productService.addProduct(new Product("Crème Brûlée Torch", "Kitchen torch", 350.0, 3, "Kitchen"));
+        assertEquals(1, productService.searchProducts("CREME brulee").size());
+        assertEquals(1, productService.searchProducts("Brûlée").size());
+        assertEquals(0, productService.searchProducts("torch kitchen").size()); // no match across name and description
+    }
+
+    @Test
+    public void testCategoryMatchingUsesCanonicalId() {
+        ProductService productService = new ProductService();
+        Product product = new Product("Tent", "Two person tent", 1200.0, 4, "  Outdoor ");
+        productService.addProduct(product);
+        assertEquals(1, productService.getProductsByCategory("OUTDOOR").size());
+        assertEquals(2, productService.getProductsByCategory("electronics").size());
+        assertEquals(0, productService.getProductsByCategory("NoSuchCategory").size());
+
+        productService.patchProduct(product.getId(), new ProductPatch().setCategory("Camping"));
+        assertEquals(0, productService.getProductsByCategory("Outdoor").size());
+        assertEquals(1, productService.getProductsByCategory("camping").size());
+    }
+
+    @Test
+    public void testUpdateKeepsIdAndRating() {
+        ProductService productService = new ProductService();
+        Product product = new Product("Kettle", "Steel kettle", 900.0, 5, "Kitchen");
+        productService.addProduct(product);
+        productService.addProductReview(product.getId(), 4.0);
+
+        Product updated = productService.updateProduct(product.getId(),
+                new Product("Kettle Pro", "Steel kettle", 950.0, 5, "Kitchen"));
+        assertEquals(product.getId(), updated.getId());
+        assertEquals("Kettle Pro", productService.getProductById(product.getId()).getName());
+        assertEquals("Kettle", product.getName()); // the stored instance is replaced, not changed
+        assertEquals(4.0, updated.getRating());
+        assertEquals(1, updated.getReviewCount());
+        assertEquals(5, productService.getAllProducts().size()); // no duplicate under a new ID
+    }
+
+    @Test
+    public void testPatchChangesOnlySubmittedFields() {
+        ProductService productService = new ProductService();
+        Product product = new Product("Lamp", "Desk lamp", 400.0, 7, "Home");
+        productService.addProduct(product);
+        List<ProductChange> changes = new ArrayList<>();
+        productService.addChangeListener(changes::add);
+
+        Product patched = productService.patchProduct(product.getId(), new ProductPatch().setPrice(350.0).setStock(7));
+        assertEquals(350.0, patched.getPrice());
+        assertEquals("Lamp", patched.getName());
+        assertEquals(400.0, product.getPrice()); // readers holding the old version never see the patch
+        assertEquals(1, changes.size());
+        assertEquals(Set.of(ProductChange.Field.PRICE), changes.get(0).getFields()); // stock was unchanged
+        assertEquals(400.0, changes.get(0).previousValue(ProductChange.Field.PRICE));
+
+        productService.patchProduct(product.getId(), new ProductPatch().setName("Lamp"));
+        assertEquals(1, changes.size()); // no-op patches emit nothing
+        assertNull(productService.patchProduct("missing", new ProductPatch().setName("x")));
+    }
+
+    @Test
+    public void testInvalidPatchChangesNothing() {
+        ProductService productService = new ProductService();
+        Product product = new Product("Chair", "Oak chair", 1500.0, 2, "Home");
+        productService.addProduct(product);
+        assertThrows(IllegalArgumentException.class, () -> productService.patchProduct(product.getId(),
+                new ProductPatch().setName("Stool").setPrice(-1.0)));
+        assertEquals("Chair", productService.getProductById(product.getId()).getName());
+        assertEquals(1500.0, productService.getProductById(product.getId()).getPrice());
+    }
+
+    @Test
+    public void testPatchUpdatesIndexes() {
+        ProductService productService = new ProductService();
+        Product product = new Product("Tent", "Sleeps two", 1200.0, 4, "Outdoor");
+        productService.addProduct(product);
+
+        productService.patchProduct(product.getId(), new ProductPatch().setName("Hammock").setCategory("Camping"));
+        assertEquals(0, productService.searchRanked("tent", 10).size());
+        assertEquals(1, productService.searchRanked("hammock", 10).size());
+        assertEquals(1, productService.filterProducts(new FacetIndex.Filter().category("camping"),
+                0, 10).getTotal());
+
+        productService.patchProduct(product.getId(), new ProductPatch().setActive(false));
+        assertEquals(0, productService.searchRanked("hammock", 10).size());
+        productService.patchProduct(product.getId(), new ProductPatch().setActive(true));
+        assertEquals(1, productService.searchRanked("hammock", 10).size());
+    }
+
+    @Test
+    public void testStockAndDeleteEmitChanges() {
+        ProductService productService = new ProductService();
+        Product product = new Product("Mug", "Ceramic mug", 150.0, 10, "Kitchen");
+        List<ProductChange> changes = new ArrayList<>();
+        productService.addChangeListener(changes::add);
+        productService.addProduct(product);
+        productService.removeStock(product.getId(), 3);
+        productService.deleteProduct(product.getId());
+
+        assertEquals(3, changes.size());
+        assertEquals(ProductChange.Type.CREATED, changes.get(0).getType());
+        assertEquals(Set.of(ProductChange.Field.STOCK), changes.get(1).getFields());
+        assertEquals(10, changes.get(1).previousValue(ProductChange.Field.STOCK));
+        assertEquals(ProductChange.Type.DELETED, changes.get(2).getType());
+    }
+
+    @Test
+    public void testFailedLogWriteStillPublishesChange(@TempDir Path directory) throws Exception {
+        ProductService productService = new ProductService();
+        Product product = productService.addProduct(new Product("Lamp", "Desk lamp", 350.0, 10, "Home"));
+        List<ProductChange> changes = new ArrayList<>();
+        productService.addChangeListener(changes::add);
+        ChangeLog log = new ChangeLog(directory, ChangeLog.Durability.SYNC);
+        log.close();
+        productService.setChangeLog(log);
 
+        assertThrows(IllegalStateException.class, () -> productService.removeStock(product.getId(), 4));
+        assertEquals(6, productService.getProductById(product.getId()).getStock());
+        assertEquals(1, changes.size());
+        assertEquals(Set.of(ProductChange.Field.STOCK), changes.get(0).getFields());
+    }
+}
@@ -0,0 +1,85 @@
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import main.java.Product;
+import main.java.ProtobufCodec;
+import main.java.Response;
+
+public class ProtobufCodecTest {
+
+    @Test
+    public void testMatchesProtobufWireFormat() {
+        // success = true, message = "ok": field 1 varint, field 2 length-delimited
+        assertArrayEquals(new byte[] {0x08, 0x01, 0x12, 0x02, 'o', 'k'},
+                ProtobufCodec.encodeResponse(new Response(true, "ok")));
+        // Defaults are omitted entirely
+        assertArrayEquals(new byte[0], ProtobufCodec.encodeResponse(new Response(false, "")));
+    }
+
+    @Test
+    public void testRoundTripsProducts() {
+        Product shoes = Product.restore("p-1", "Running Shoes", "Größe 42 👟", 1299.99, 12, "Sports",
+                "https://example.com/shoes.png", 4.5, 8, true, 1_700_000_000_123L);
+        Product empty = Product.restore("p-2", "Gift Card", "", 0.0, 0, "Other", null, 0.0, 0, false, 0L);
+
+        Response decoded = ProtobufCodec.decodeResponse(ProtobufCodec.encodeResponse(
+                new Response(true, "Products retrieved successfully", List.of(shoes, empty))));
+        assertTrue(decoded.isSuccess());
+        assertEquals("Products retrieved successfully", decoded.getMessage());
+        List<?> products = (List<?>) decoded.getData();
+        assertEquals(2, products.size());
+
+        Product first = (Product) products.get(0);
+        assertEquals("p-1", first.getId());
+        assertEquals("Größe 42 👟", first.getDescription());
+        assertEquals(1299.99, first.getPrice());
+        assertEquals(12, first.getStock());
+        assertEquals("https://example.com/shoes.png", first.getImageUrl());
+        assertEquals(4.5, first.getRating());
+        assertEquals(8, first.getReviewCount());
+        assertTrue(first.isActive());
+        assertEquals(1_700_000_000_123L, first.getCreatedAt());
+
+        Product second = (Product) products.get(1);
+        assertEquals("Gift Card", second.getName());
+        assertNull(second.getImageUrl());
+        assertFalse(second.isActive());
+
+        Product single = (Product) ProtobufCodec.decodeResponse(
+                ProtobufCodec.encodeResponse(new Response(true, "found", shoes))).getData();
+        assertEquals("Running Shoes", single.getName());
+    }
+
+    @Test
+    public void testSkipsUnknownFieldsAndRejectsTruncation() {
+        byte[] known = ProtobufCodec.encodeResponse(new Response(true, "ok"));
+        // A field 15 varint and a field 16 string from a newer schema
+        byte[] withUnknown = new byte[known.length + 6];
+        System.arraycopy(known, 0, withUnknown, 0, known.length);
+        System.arraycopy(new byte[] {0x78, 0x05, (byte) 0x82, 0x01, 0x01, 'x'}, 0, withUnknown, known.length, 6);
+        assertEquals("ok", ProtobufCodec.decodeResponse(withUnknown).getMessage());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> ProtobufCodec.decodeResponse(new byte[] {0x12, 0x05, 'o', 'k'}));
+        assertThrows(IllegalArgumentException.class,
+                () -> ProtobufCodec.encodeResponse(new Response(true, "ok", "not a product")));
+    }
+
+    @Test
+    public void testNegotiatesFromAcceptHeader() {
+        assertTrue(ProtobufCodec.preferred("application/x-protobuf"));
+        assertTrue(ProtobufCodec.preferred("application/x-protobuf, application/json"));
+        assertTrue(ProtobufCodec.preferred("application/json;q=0.5, application/protobuf"));
+        assertFalse(ProtobufCodec.preferred("application/json, application/x-protobuf"));
+        assertFalse(ProtobufCodec.preferred("application/x-protobuf;q=0"));
+        assertFalse(ProtobufCodec.preferred("text/html,application/xhtml+xml,*/*;q=0.8"));
+        assertFalse(ProtobufCodec.preferred(null));
+    }
+}
@@ -0,0 +1,57 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import main.java.ResponseCache;
+
+public class ResponseCacheTest {
+
+    @Test
+    public void testRendersOncePerGeneration() {
+        ResponseCache cache = new ResponseCache(8);
+        AtomicInteger renders = new AtomicInteger();
+        ResponseCache.Entry first = cache.get("products", 1, () -> "body-" + renders.incrementAndGet());
+        assertSame(first, cache.get("products", 1, () -> "body-" + renders.incrementAndGet()));
+        assertEquals(1, renders.get());
+
+        ResponseCache.Entry second = cache.get("products", 2, () -> "body-" + renders.incrementAndGet());
+        assertEquals("body-2", new String(second.getBody(), StandardCharsets.UTF_8));
+        // A request that read an older generation still gets the newer body
+        assertSame(second, cache.get("products", 1, () -> "body-" + renders.incrementAndGet()));
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    public void testCompressesLargeBodiesOnly() throws IOException {
+        ResponseCache cache = new ResponseCache(8);
+        assertNull(cache.get("small", 1, () -> "{\"success\":true}").getGzipBody());
+
+        String large = "{\"name\":\"Running Shoes\",\"stock\":10}".repeat(200);
+        ResponseCache.Entry entry = cache.get("large", 1, () -> large);
+        assertTrue(entry.getGzipBody().length < entry.getBody().length / 10);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(entry.getGzipBody()))) {
+            assertArrayEquals(large.getBytes(StandardCharsets.UTF_8), in.readAllBytes());
+        }
+    }
+
+    @Test
+    public void testAcceptEncodingNegotiation() {
+        assertTrue(ResponseCache.acceptsGzip("gzip, deflate, br"));
+        assertTrue(ResponseCache.acceptsGzip("br;q=1.0, GZIP;q=0.5"));
+        assertTrue(ResponseCache.acceptsGzip("*"));
+        assertFalse(ResponseCache.acceptsGzip("gzip;q=0"));
+        assertFalse(ResponseCache.acceptsGzip("*;q=0.5, gzip; q=0"));
+        assertFalse(ResponseCache.acceptsGzip("identity"));
+        assertFalse(ResponseCache.acceptsGzip(null));
+    }
+}
@@ -0,0 +1,44 @@
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+import spark.route.HttpMethod;
+import spark.routematch.RouteMatch;
+
+import main.java.RouteTemplates;
+
+public class RouteTemplatesTest {
+    private final RouteTemplates templates = new RouteTemplates(List.of(
+            route(HttpMethod.before, "+/*paths"),
+            route(HttpMethod.get, "/"),
+            route(HttpMethod.get, "/static/*"),
+            route(HttpMethod.get, "/api/products/stream"),
+            route(HttpMethod.get, "/api/products/:id"),
+            route(HttpMethod.get, "/api/products/category/:category"),
+            route(HttpMethod.patch, "/api/products/:id")));
+
+    @Test
+    public void testNamesRequestsByFirstMatchingRoute() {
+        assertEquals("GET /", templates.name("GET", "/"));
+        assertEquals("GET /api/products/stream", templates.name("GET", "/api/products/stream"));
+        assertEquals("GET /api/products/:id", templates.name("GET", "/api/products/42"));
+        assertEquals("GET /api/products/:id", templates.name("GET", "/api/products/42/"));
+        assertEquals("PATCH /api/products/:id", templates.name("PATCH", "/api/products/42"));
+        assertEquals("GET /api/products/category/:category",
+                templates.name("GET", "/api/products/category/Electronics"));
+        assertEquals("GET /static/*", templates.name("GET", "/static/app.0123456789.js"));
+    }
+
+    @Test
+    public void testUnmatchedRequestsHaveNoName() {
+        assertNull(templates.name("GET", "/api/products"));
+        assertNull(templates.name("GET", "/api/products/1/reviews"));
+        assertNull(templates.name("DELETE", "/api/products/1"));
+        assertNull(templates.name("GET", "/api//products"));
+    }
+
+    private static RouteMatch route(HttpMethod method, String path) {
+        return new RouteMatch(null, path, path, "*/*", method);
+    }
+}
@@ -0,0 +1,117 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import main.java.util.RoutingDataSource;
+
+/**
+ * Routes between two embedded H2 databases standing in for a primary and a replica.
+ */
+public class RoutingDataSourceTest {
+    private final AtomicLong clock = new AtomicLong(1000);
+    private RoutingDataSource routing;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        JdbcDataSource primary = createNode("primary");
+        JdbcDataSource replica = createNode("replica");
+        routing = new RoutingDataSource(primary, List.of(replica), 5000, clock::get);
+    }
+
+    @Test
+    void testConnectionsOutsideScopeUsePrimary() throws SQLException {
+        assertEquals("primary", currentNode());
+    }
+
+    @Test
+    void testReadOnlyUsesReplica() throws SQLException {
+        assertEquals("replica", routing.readOnly("alice", this::currentNode));
+    }
+
+    @Test
+    void testReadWriteUsesPrimary() throws SQLException {
+        assertEquals("primary", routing.readWrite("alice", this::currentNode));
+    }
+
+    @Test
+    void testReadsStickToPrimaryAfterWrite() throws SQLException {
+        routing.readWrite("alice", this::currentNode);
+
+        assertTrue(routing.isSticky("alice"));
+        assertEquals("primary", routing.readOnly("alice", this::currentNode));
+        assertEquals("replica", routing.readOnly("bob", this::currentNode));
+
+        clock.addAndGet(5000);
+        assertFalse(routing.isSticky("alice"));
+        assertEquals("replica", routing.readOnly("alice", this::currentNode));
+    }
+
+    @Test
+    void testReadOnlyInsideReadWriteStaysOnPrimary() throws SQLException {
+        assertEquals("primary", routing.readWrite(null, () -> routing.readOnly(null, this::currentNode)));
+        assertEquals("replica", routing.readOnly(null, () -> routing.readOnly(null, this::currentNode)));
+    }
+
+    @Test
+    void testNoReplicasFallsBackToPrimary() throws SQLException {
+        RoutingDataSource primaryOnly = new RoutingDataSource(routing.getPrimary(), List.of(), 5000);
+        assertEquals("primary", primaryOnly.readOnly(null, () -> nodeName(primaryOnly)));
+    }
+
+    @Test
+    void testCredentialedConnectionsAreRouted() throws SQLException {
+        assertEquals("replica", routing.readOnly("alice", () -> credentialedNode(routing)));
+        assertEquals("primary", routing.readWrite("alice", () -> credentialedNode(routing)));
+
+        JdbcDataSource down = new JdbcDataSource();
+        down.setURL("jdbc:h2:mem:down_" + UUID.randomUUID() + ";IFEXISTS=TRUE");
+        RoutingDataSource failover = new RoutingDataSource(routing.getPrimary(), List.of(down), 5000);
+        assertEquals("primary", failover.readOnly(null, () -> credentialedNode(failover)));
+    }
+
+    private String currentNode() throws SQLException {
+        return nodeName(routing);
+    }
+
+    private static String nodeName(RoutingDataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT name FROM node")) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    private static String credentialedNode(RoutingDataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection("sa", "");
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT name FROM node")) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    private static JdbcDataSource createNode(String name) throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + "_" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE node (name VARCHAR(20))");
+            statement.execute("INSERT INTO node VALUES ('" + name + "')");
+        }
+        return dataSource;
+    }
+}
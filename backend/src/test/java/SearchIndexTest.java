@@ -0,0 +1,69 @@
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import main.java.Product;
+import main.java.ProductService;
+import main.java.catalog.SearchIndex;
+
+public class SearchIndexTest {
+    private SearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new SearchIndex();
+        index.index("laptop", new Product("Laptop", "Portable computer for professionals", 100, 1, "Electronics"));
+        index.index("bag", new Product("Messenger Bag", "Fits a laptop up to 15 inches", 100, 1, "Accessories"));
+        index.index("stand", new Product("Monitor Stand", "Raises your screen", 100, 1, "Accessories"));
+        index.index("keyboard", new Product("Mechanical Keyboard", "Tactile switches", 100, 1, "Electronics"));
+    }
+
+    @Test
+    void testNameMatchesRankAboveDescriptionMatches() {
+        assertEquals(List.of("laptop", "bag"), index.search("laptop", 10));
+    }
+
+    @Test
+    void testFuzzyMatching() {
+        assertEquals(List.of("laptop", "bag"), index.search("lpatop", 10)); // transposition
+        assertEquals(List.of("keyboard"), index.search("keybaord", 10));
+        assertEquals(List.of("keyboard"), index.search("mechancal", 10)); // one deletion
+        assertTrue(index.search("xyzzy", 10).isEmpty());
+    }
+
+    @Test
+    void testPartialLastWordMatchesAsPrefix() {
+        assertEquals(List.of("keyboard"), index.search("mechanical key", 10));
+        assertEquals(List.of("laptop", "bag"), index.search("lapt", 10));
+        assertEquals(List.of("laptop"), index.search("lapt", 1));
+        assertTrue(index.search("lapt ", 10).isEmpty()); // a finished word is not expanded
+        assertTrue(index.search("  ", 10).isEmpty());
+    }
+
+    @Test
+    void testTopKAndRemoval() {
+        assertEquals(List.of("laptop"), index.search("laptop", 1));
+        index.remove("laptop");
+        assertEquals(List.of("bag"), index.search("laptop", 10));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void testReindexReplacesPreviousVersion() {
+        index.index("stand", new Product("Laptop Stand", "Aluminium riser", 100, 1, "Accessories"));
+        assertEquals(List.of("stand", "laptop", "bag"), index.search("laptop stand", 10).subList(0, 3));
+        assertTrue(index.search("monitor", 10).isEmpty());
+    }
+
+    @Test
+    void testProductServiceRankedSearch() {
+        ProductService productService = new ProductService();
+        Product product = productService.addProduct(new Product("Espresso Machine", "Brews coffee", 5000, 2, "Appliances"));
+        assertEquals(product.getId(), productService.searchRanked("expresso", 5).get(0).getId());
+        productService.deactivateProduct(product.getId());
+        assertTrue(productService.searchRanked("espresso", 5).isEmpty());
+    }
+}
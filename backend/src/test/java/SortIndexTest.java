@@ -0,0 +1,74 @@
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import main.java.Product;
+import main.java.ProductService;
+import main.java.catalog.SortIndex;
+import main.java.catalog.SortIndex.Field;
+
+public class SortIndexTest {
+    private SortIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new SortIndex();
+        index.index("a", new Product("A", "", 300, 5, "X"));
+        index.index("b", new Product("B", "", 100, 0, "X"));
+        index.index("c", new Product("C", "", 200, 7, "Y"));
+        index.index("d", new Product("D", "", 200, 1, "Y"));
+    }
+
+    @Test
+    void testOrderedRangesInBothDirections() {
+        assertEquals(List.of("b", "c", "d", "a"), index.range(Field.PRICE, null, null, false, 0, 10));
+        assertEquals(List.of("a", "d", "c", "b"), index.range(Field.PRICE, null, null, true, 0, 10));
+        // Bounds are inclusive, ties ordered by ID
+        assertEquals(List.of("c", "d"), index.range(Field.PRICE, 150.0, 200.0, false, 0, 10));
+        assertEquals(List.of("b", "c"), index.range(Field.PRICE, 100.0, 200.0, false, 0, 2));
+        assertEquals(List.of("d", "a"), index.range(Field.PRICE, 100.0, null, false, 2, 10));
+        assertEquals(List.of("c", "a"), index.range(Field.STOCK, 5.0, null, true, 0, 10));
+        assertTrue(index.range(Field.PRICE, 300.0, 100.0, false, 0, 10).isEmpty());
+    }
+
+    @Test
+    void testUpdatesAndRemovalsMoveKeys() {
+        index.index("b", new Product("B", "", 999, 0, "X"));
+        index.remove("c");
+        assertEquals(List.of("d", "a", "b"), index.range(Field.PRICE, null, null, false, 0, 10));
+        assertEquals(List.of("b"), index.range(Field.PRICE, 500.0, null, false, 0, 10));
+
+        index.clear();
+        assertTrue(index.range(Field.PRICE, null, null, false, 0, 10).isEmpty());
+    }
+
+    @Test
+    void testFilteredRangeCountsOffsetOverAcceptedIds() {
+        assertEquals(List.of("d", "a"), index.range(Field.PRICE, null, null, false, 1, 10, id -> !id.equals("b")));
+        assertEquals(SortIndex.Field.CREATED, SortIndex.Field.parse("created"));
+        assertEquals(null, SortIndex.Field.parse("name"));
+    }
+
+    @Test
+    void testProductServiceSortedBrowsing() {
+        ProductService productService = new ProductService();
+        Product toaster = productService.addProduct(new Product("Toaster", "Two slots", 899, 4, "Appliances"));
+        List<String> cheapestFirst = productService.getProductsSorted(Field.PRICE, null, null, false, null, 0, 10)
+                .stream().map(Product::getName).collect(Collectors.toList());
+        assertEquals(List.of("Toaster", "Running Shoes", "Coffee Maker", "Smartphone", "Laptop"), cheapestFirst);
+
+        List<Product> appliances = productService.getProductsSorted(Field.PRICE, 500.0, 3000.0, true, "appliances", 0, 10);
+        assertEquals(List.of("Coffee Maker", "Toaster"),
+                appliances.stream().map(Product::getName).collect(Collectors.toList()));
+
+        productService.removeStock(toaster.getId(), 4);
+        assertEquals("Toaster", productService.getProductsSorted(Field.STOCK, null, 0.0, false, null, 0, 1).get(0).getName());
+
+        productService.deactivateProduct(toaster.getId());
+        assertEquals(4, productService.getProductsSorted(Field.CREATED, null, null, true, null, 0, 10).size());
+    }
+}
@@ -0,0 +1,116 @@
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import main.java.StaticAssets;
+
+public class StaticAssetsTest {
+    private static org.eclipse.jetty.server.Server jetty;
+    private static final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeAll
+    public static void start() throws Exception {
+        StaticAssets assets = StaticAssets.load("public");
+        assertNotNull(assets);
+        jetty = new org.eclipse.jetty.server.Server(0);
+        ServletContextHandler context = new ServletContextHandler();
+        context.addServlet(new ServletHolder(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws java.io.IOException {
+                if (!assets.serve(request, response, request.getRequestURI())) {
+                    response.sendError(404);
+                }
+            }
+        }), "/*");
+        jetty.setHandler(context);
+        jetty.start();
+    }
+
+    @AfterAll
+    public static void stop() throws Exception {
+        jetty.stop();
+    }
+
+    @Test
+    public void testPageReferencesHashedAssets() throws Exception {
+        HttpResponse<byte[]> page = get("/", null, null);
+        assertEquals(200, page.statusCode());
+        assertEquals("no-cache", page.headers().firstValue("Cache-Control").orElse(null));
+        String html = new String(page.body(), StandardCharsets.UTF_8);
+        assertTrue(html.contains("<meta name=\"api-base\" content=\"/api\" />"));
+        assertFalse(html.contains("src=\"app.js\""));
+
+        Matcher script = Pattern.compile("src=\"(/static/app\\.[0-9a-f]{10}\\.js)\"").matcher(html);
+        assertTrue(script.find(), html);
+        HttpResponse<byte[]> asset = get(script.group(1), "gzip, deflate", null);
+        assertEquals(200, asset.statusCode());
+        assertEquals("gzip", asset.headers().firstValue("Content-Encoding").orElse(null));
+        assertEquals("public, max-age=31536000, immutable", asset.headers().firstValue("Cache-Control").orElse(null));
+        assertTrue(asset.headers().firstValue("Content-Type").orElse("").startsWith("application/javascript"));
+
+        byte[] plain = get("/static/app.js", null, null).body();
+        assertArrayEquals(resource("public/app.js"), plain);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(asset.body()))) {
+            assertArrayEquals(plain, in.readAllBytes());
+        }
+        assertTrue(asset.body().length < plain.length / 2);
+    }
+
+    @Test
+    public void testRevalidatesByEtag() throws Exception {
+        HttpResponse<byte[]> first = get("/index.html", "gzip", null);
+        String etag = first.headers().firstValue("ETag").orElseThrow();
+
+        HttpResponse<byte[]> second = get("/index.html", "gzip", etag);
+        assertEquals(304, second.statusCode());
+        assertEquals(0, second.body().length);
+        assertEquals(200, get("/index.html", "gzip", "\"stale\"").statusCode());
+    }
+
+    @Test
+    public void testUnknownPathsAreNotServed() throws Exception {
+        assertEquals(404, get("/static/missing.js", null, null).statusCode());
+        assertEquals(404, get("/static/app.0000000000.js", null, null).statusCode());
+    }
+
+    private static HttpResponse<byte[]> get(String path, String acceptEncoding, String ifNoneMatch) throws Exception {
+        int port = ((ServerConnector) jetty.getConnectors()[0]).getLocalPort();
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path));
+        if (acceptEncoding != null) {
+            request.header("Accept-Encoding", acceptEncoding);
+        }
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static byte[] resource(String name) throws Exception {
+        try (InputStream in = StaticAssetsTest.class.getClassLoader().getResourceAsStream(name)) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import main.java.Product;
+import main.java.ProductPatch;
+import main.java.ProductService;
+import main.java.StockStream;
+
+public class StockStreamTest {
+    private org.eclipse.jetty.server.Server jetty;
+    private StockStream stream;
+
+    @AfterEach
+    public void stop() throws Exception {
+        if (stream != null) {
+            stream.close();
+        }
+        if (jetty != null) {
+            jetty.stop();
+        }
+    }
+
+    @Test
+    public void testStreamsCoalescedStockAndPriceChanges() throws Exception {
+        ProductService productService = new ProductService();
+        Product lamp = productService.addProduct(new Product("Lamp", "Desk lamp", 400.0, 7, "Home"));
+        Product chair = productService.addProduct(new Product("Chair", "Oak chair", 1500.0, 2, "Home"));
+        Product mug = productService.addProduct(new Product("Mug", "Ceramic mug", 150.0, 10, "Kitchen"));
+        Product rug = productService.addProduct(new Product("Rug", "Wool rug", 2500.0, 1, "Home"));
+        int port = startServer(productService, 65536, 100);
+
+        try (Socket socket = new Socket("localhost", port)) {
+            BufferedReader reader = subscribe(socket);
+            awaitClients(1);
+
+            productService.updateProductStock(lamp.getId(), 6);
+            productService.updateProductStock(lamp.getId(), 5);
+            productService.removeStock(lamp.getId(), 2);
+            productService.patchProduct(chair.getId(), new ProductPatch().setPrice(1400.0));
+            productService.addProductReview(mug.getId(), 5.0); // rating only: not streamed
+            productService.deleteProduct(rug.getId());
+
+            List<String> frames = new ArrayList<>();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!String.join("", frames).contains("\"removed\":true") && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+                stream.tick();
+                while (reader.ready()) {
+                    String line = reader.readLine();
+                    if (line.startsWith("data: ")) {
+                        frames.add(line);
+                    }
+                }
+            }
+            String all = String.join("\n", frames);
+            assertTrue(all.contains("{\"id\":\"" + lamp.getId() + "\",\"stock\":3,\"price\":400.0}"), all);
+            assertTrue(all.contains("{\"id\":\"" + chair.getId() + "\",\"stock\":2,\"price\":1400.0}"), all);
+            assertTrue(all.contains("{\"id\":\"" + rug.getId() + "\",\"removed\":true}"), all);
+            assertFalse(all.contains(mug.getId()), all);
+            assertTrue(frames.size() <= 6); // at most one entry per change, usually one frame
+        }
+    }
+
+    @Test
+    public void testDisconnectsClientThatStopsReading() throws Exception {
+        ProductService productService = new ProductService();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            products.add(productService.addProduct(new Product("Item " + i, "Item", 10.0, 100, "Bulk")));
+        }
+        int port = startServer(productService, 256 * 1024, 100);
+
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setReceiveBufferSize(4096);
+            subscribe(socket); // and never read again
+            awaitClients(1);
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            int stock = 0;
+            while (stream.getClientCount() > 0 && System.nanoTime() < deadline) {
+                stock++;
+                for (Product product : products) {
+                    productService.updateProductStock(product.getId(), stock);
+                }
+                Thread.sleep(5);
+                stream.tick();
+            }
+            assertEquals(0, stream.getClientCount());
+        }
+    }
+
+    @Test
+    public void testRejectsSubscribersOverLimit() throws Exception {
+        int port = startServer(new ProductService(), 65536, 1);
+        try (Socket first = new Socket("localhost", port); Socket second = new Socket("localhost", port)) {
+            subscribe(first);
+            awaitClients(1);
+            BufferedReader reader = subscribe(second);
+            assertTrue(reader.readLine().contains("503"));
+        }
+    }
+
+    private int startServer(ProductService productService, int maxBufferedBytes, int maxClients) throws Exception {
+        // Ticks are driven by the test
+        stream = new StockStream(productService.getChangeBus(), TimeUnit.HOURS.toMillis(1), maxClients, maxBufferedBytes);
+        stream.start();
+        jetty = new org.eclipse.jetty.server.Server(0);
+        ServletContextHandler context = new ServletContextHandler();
+        ServletHolder holder = new ServletHolder(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws java.io.IOException {
+                if (!stream.open(request, response)) {
+                    response.sendError(503);
+                }
+            }
+        });
+        holder.setAsyncSupported(true);
+        context.addServlet(holder, "/stream");
+        jetty.setHandler(context);
+        jetty.start();
+        return ((ServerConnector) jetty.getConnectors()[0]).getLocalPort();
+    }
+
+    private static BufferedReader subscribe(Socket socket) throws Exception {
+        OutputStream out = socket.getOutputStream();
+        out.write("GET /stream HTTP/1.1\r\nHost: localhost\r\nAccept: text/event-stream\r\n\r\n"
+                .getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private void awaitClients(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (stream.getClientCount() != count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, stream.getClientCount());
+    }
+}
@@ -0,0 +1,144 @@
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import main.java.Product;
+import main.java.ProductService;
+import main.java.catalog.SuggestIndex;
+
+public class SuggestIndexTest {
+    private SuggestIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new SuggestIndex();
+        index.index("headphones", rated(new Product("Wireless Headphones", "", 100, 1, "Audio"), 4.5));
+        index.index("headset", rated(new Product("Gaming Headset", "", 100, 1, "Audio"), 3.0));
+        index.index("heater", rated(new Product("Heater", "", 100, 1, "Home"), 4.0));
+        index.index("hdmi", rated(new Product("HDMI Cable", "", 100, 1, "Accessories"), 5.0));
+    }
+
+    @Test
+    void testPrefixMatchesNamesAndLaterWords() {
+        assertEquals(List.of("Wireless Headphones", "Heater", "Gaming Headset"), texts("hea"));
+        assertEquals(List.of("Wireless Headphones"), texts("wireless h"));
+        assertEquals(List.of("Gaming Headset"), texts("GAMING  head"));
+        assertEquals(List.of("Heater"), texts("héat"));
+        assertTrue(texts("xyz").isEmpty());
+        assertTrue(texts("").isEmpty());
+    }
+
+    @Test
+    void testTrailingSpaceRequiresAnotherWord() {
+        assertEquals(List.of("Wireless Headphones"), texts("wireless"));
+        assertEquals(List.of("Wireless Headphones"), texts("wireless "));
+        assertTrue(texts("heater ").isEmpty());
+    }
+
+    @Test
+    void testCategoriesRankFirstByProductCount() {
+        List<SuggestIndex.Suggestion> suggestions = index.suggest("a", 10);
+        assertEquals(SuggestIndex.Suggestion.Type.CATEGORY, suggestions.get(0).getType());
+        assertEquals("Audio", suggestions.get(0).getText());
+        assertEquals("Accessories", suggestions.get(1).getText());
+
+        index.index("speaker", new Product("Speaker", "", 100, 1, "accessories"));
+        index.index("mouse", new Product("Mouse", "", 100, 1, "Accessories"));
+        assertEquals(List.of("Accessories", "Audio"), texts("a"));
+
+        index.remove("speaker");
+        index.remove("mouse");
+        index.remove("hdmi");
+        assertEquals(List.of("Audio"), texts("a"));
+    }
+
+    @Test
+    void testTopListsRebuiltOnRemovalAndReindex() {
+        for (int i = 0; i < SuggestIndex.TOP_N + 5; i++) {
+            index.index("cup" + i, rated(new Product("Cup " + i, "", 100, 1, ""), i % 5 + 0.5));
+        }
+        List<String> top = texts("cup");
+        assertEquals(SuggestIndex.TOP_N, top.size());
+        assertEquals("Cup 14", top.get(0));
+
+        index.remove("cup14");
+        index.remove("cup9");
+        assertEquals("Cup 4", texts("cup").get(0));
+        assertEquals(SuggestIndex.TOP_N, texts("cup").size());
+
+        index.index("cup4", new Product("Mug", "", 100, 1, ""));
+        assertEquals(List.of("Mug"), texts("mu"));
+        assertFalse(texts("cup").contains("Cup 4"));
+        assertEquals(List.of("Cup 13", "Cup 12", "Cup 1", "Cup 11", "Cup 10"), texts("cup 1"));
+
+        index.clear();
+        assertTrue(texts("cup").isEmpty());
+    }
+
+    @Test
+    void testMatchesBruteForceUnderChurn() {
+        Random random = new Random(11);
+        String[] words = {"tea", "team", "teapot", "ten", "tent", "to", "top", "topaz", "tap"};
+        Map<String, Product> live = new HashMap<>();
+        index.clear();
+        for (int step = 0; step < 2000; step++) {
+            String id = "p" + random.nextInt(200);
+            if (random.nextInt(3) == 0) {
+                index.remove(id);
+                live.remove(id);
+            } else {
+                Product product = new Product(words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)],
+                        "", 100, 1, "");
+                product.addRating(random.nextInt(50) / 10.0);
+                index.index(id, product);
+                live.put(id, product);
+            }
+        }
+        for (String prefix : List.of("t", "te", "tea", "tea ", "tea t", "to", "top", "topa", "ta", "x")) {
+            List<String> expected = live.entrySet().stream()
+                    .filter(e -> {
+                        String name = e.getValue().getName();
+                        return name.startsWith(prefix) || name.substring(name.indexOf(' ') + 1).startsWith(prefix);
+                    })
+                    .sorted(Comparator.comparing((Map.Entry<String, Product> e) -> -e.getValue().getRating())
+                            .thenComparing(e -> e.getValue().getName())
+                            .thenComparing(Map.Entry::getKey))
+                    .limit(SuggestIndex.TOP_N)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+            List<String> actual = index.suggest(prefix, SuggestIndex.TOP_N).stream()
+                    .map(SuggestIndex.Suggestion::getProductId)
+                    .collect(Collectors.toList());
+            assertEquals(expected, actual, "prefix '" + prefix + "'");
+        }
+    }
+
+    @Test
+    void testProductServiceSuggest() {
+        ProductService productService = new ProductService();
+        Product product = productService.addProduct(new Product("Espresso Machine", "Brews coffee", 5000, 2, "Appliances"));
+        assertEquals(product.getId(), productService.suggest("espr", 5).get(0).getProductId());
+        productService.deactivateProduct(product.getId());
+        assertTrue(productService.suggest("espr", 5).isEmpty());
+    }
+
+    private List<String> texts(String prefix) {
+        return index.suggest(prefix, SuggestIndex.TOP_N).stream()
+                .map(SuggestIndex.Suggestion::getText)
+                .collect(Collectors.toList());
+    }
+
+    private static Product rated(Product product, double rating) {
+        product.addRating(rating);
+        return product;
+    }
+}
@@ -0,0 +1,152 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import main.java.ProductService;
+import main.java.tracing.JsonSpanExporter;
+import main.java.tracing.Span;
+import main.java.tracing.Tracer;
+
+public class TracerTest {
+    private final List<List<Span>> exported = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    public void uninstall() {
+        Tracer.install(null);
+        Tracer.clear();
+    }
+
+    @Test
+    public void testNestsSpansAndKeepsSlowTraces() throws Exception {
+        Tracer.install(new Tracer(spans -> exported.add(new ArrayList<>(spans)), 0, 0, 16));
+        ProductService productService = new ProductService();
+
+        try (Span root = Tracer.startTrace("GET /api/products", null)) {
+            try (Span child = Tracer.span("lookup")) {
+                child.attribute("id", 7);
+                assertSame(child, Tracer.current());
+                productService.getAllProducts();
+            }
+            assertSame(root, Tracer.current());
+        }
+        assertFalse(Tracer.current().isRecording());
+
+        List<Span> spans = awaitExport(1).get(0);
+        assertEquals(List.of("ProductService.getAllProducts", "lookup", "GET /api/products"), names(spans));
+        Span root = spans.get(2);
+        assertNull(root.getParentId());
+        assertEquals(root.getSpanId(), spans.get(1).getParentId());
+        assertEquals(spans.get(1).getSpanId(), spans.get(0).getParentId());
+        assertEquals(root.getTraceId(), spans.get(0).getTraceId());
+        assertEquals(7, spans.get(1).getAttributes().get("id"));
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void testKeepsOnlyFailedTracesWhenFast() throws Exception {
+        Tracer.install(new Tracer(spans -> exported.add(new ArrayList<>(spans)), 60_000, 0, 16));
+
+        try (Span root = Tracer.startTrace("GET /fast", null)) {
+            Tracer.span("work").close();
+        }
+        try (Span root = Tracer.startTrace("GET /failing", null)) {
+            try (Span child = Tracer.span("work")) {
+                child.error(new IllegalStateException("boom"));
+            }
+        }
+
+        List<List<Span>> kept = awaitExport(1);
+        Thread.sleep(50);
+        assertEquals(1, exported.size());
+        assertEquals("GET /failing", kept.get(0).get(1).getName());
+        assertEquals("java.lang.IllegalStateException: boom", kept.get(0).get(0).getError());
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void testContinuesIncomingTraceparent() throws Exception {
+        Tracer.install(new Tracer(spans -> exported.add(new ArrayList<>(spans)), 60_000, 0, 16));
+        String incoming = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+        String outgoing;
+        try (Span root = Tracer.startTrace("GET /api/products", incoming)) {
+            outgoing = Tracer.current().traceparent();
+        }
+        assertTrue(outgoing.startsWith("00-4bf92f3577b34da6a3ce929d0e0e4736-"), outgoing);
+        assertTrue(outgoing.endsWith("-01"), outgoing);
+        assertNotEquals(incoming, outgoing);
+
+        // Sampled by the caller, so kept although fast
+        Span root = awaitExport(1).get(0).get(0);
+        assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", root.getTraceId());
+        assertEquals("00f067aa0ba902b7", root.getParentId());
+
+        try (Span malformed = Tracer.startTrace("GET /", "00-not-a-trace-01")) {
+            assertNotEquals("4bf92f3577b34da6a3ce929d0e0e4736", malformed.getTraceId());
+            assertNull(malformed.getParentId());
+            // Not yet known to be kept
+            assertTrue(malformed.traceparent().endsWith("-00"), malformed.traceparent());
+        }
+    }
+
+    @Test
+    public void testRecordsNothingOutsideATrace() {
+        assertFalse(Tracer.startTrace("GET /", null).isRecording());
+        Tracer.install(new Tracer(spans -> exported.add(spans), 0, 1, 16));
+        Span span = Tracer.span("orphan");
+        assertFalse(span.isRecording());
+        assertNull(span.traceparent());
+        span.close();
+    }
+
+    @Test
+    public void testWritesJsonLines(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("traces.jsonl");
+        try (JsonSpanExporter exporter = JsonSpanExporter.toFile(file)) {
+            Tracer.install(new Tracer(exporter, 0, 0, 16));
+            try (Span root = Tracer.startTrace("GET /api/products/:id", null)) {
+                root.attribute("http.status", 200).attribute("http.target", "/api/products/\"1\"");
+            }
+            Tracer.install(null);
+        }
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(1, lines.size());
+        JsonObject json = JsonParser.parseString(lines.get(0)).getAsJsonObject();
+        assertEquals("GET /api/products/:id", json.get("name").getAsString());
+        assertEquals(32, json.get("traceId").getAsString().length());
+        assertFalse(json.has("parentId"));
+        assertEquals(200, json.getAsJsonObject("attributes").get("http.status").getAsInt());
+        assertEquals("/api/products/\"1\"", json.getAsJsonObject("attributes").get("http.target").getAsString());
+    }
+
+    private List<List<Span>> awaitExport(int count) throws InterruptedException {
+        for (int i = 0; i < 200 && exported.size() < count; i++) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, exported.size());
+        return exported;
+    }
+
+    private static List<String> names(List<Span> spans) {
+        List<String> names = new ArrayList<>();
+        for (Span span : spans) {
+            names.add(span.getName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,79 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import main.java.Warmup;
+
+public class WarmupTest {
+    private HttpServer server;
+
+    @AfterEach
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testReplaysTheMixWithinTheBudget() throws Exception {
+        AtomicInteger unmarked = new AtomicInteger();
+        AtomicInteger failing = new AtomicInteger();
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            if (exchange.getRequestHeaders().getFirst(Warmup.HEADER) == null) {
+                unmarked.incrementAndGet();
+            }
+            String target = exchange.getRequestMethod() + " " + exchange.getRequestURI();
+            seen.add(target);
+            exchange.getRequestBody().readAllBytes();
+            int status = target.equals("GET /fail") ? 500 : 200;
+            if (status == 500) {
+                failing.incrementAndGet();
+            }
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        server.start();
+
+        Warmup.Result result = new Warmup(URI.create("http://localhost:" + server.getAddress().getPort() + "/"),
+                Duration.ofMillis(1500), 2)
+                .get("/api/products", "Accept-Encoding", "gzip")
+                .get("/api/products/search/lap%20top")
+                .get("/fail")
+                .post("/api/login", "{}")
+                .run();
+
+        assertTrue(result.getMillis() < 5_000, String.valueOf(result.getMillis()));
+        assertEquals(Set.of("GET /api/products", "GET /api/products/search/lap%20top", "GET /fail", "POST /api/login"),
+                seen);
+        assertEquals(0, unmarked.get());
+        assertTrue(result.getRequests() >= 4);
+        assertEquals(failing.get(), result.getErrors());
+    }
+
+    @Test
+    public void testFailsFastWhenUnreachable() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Warmup warmup = new Warmup(URI.create("http://localhost:" + port + "/"), Duration.ofSeconds(30), 1)
+                .get("/health/live");
+        long start = System.nanoTime();
+        assertThrows(IOException.class, warmup::run);
+        assertTrue(System.nanoTime() - start < 5_000_000_000L);
+    }
+}
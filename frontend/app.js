@@ -1,12 +1,14 @@
 // Global variables
 let currentUser = null;
 let sessionToken = null;
-// Use environment variable for API URL, fallback to localhost for development
+// Same origin when the backend serves this page (it adds an api-base meta tag),
+// otherwise localhost for development or the hosted API
 const API_BASE_URL =
-  window.location.hostname === "localhost" ||
+  document.querySelector('meta[name="api-base"]')?.content ||
+  (window.location.hostname === "localhost" ||
   window.location.hostname === "127.0.0.1"
     ? "http://localhost:8080/api"
-    : "https://web-production-53da.up.railway.app/api";
+    : "https://web-production-53da.up.railway.app/api");
 
 // DOM elements
 const hamburger = document.getElementById("hamburger");
@@ -21,6 +23,7 @@ document.addEventListener("DOMContentLoaded", function () {
   setupEventListeners();
   loadProducts();
   loadCategories();
+  subscribeToStockUpdates();
 });
 
 function initializeApp() {
@@ -241,7 +244,7 @@ function displayProducts(products) {
   productsGrid.innerHTML = products
     .map(
       (product) => `
-        <div class="product-card">
+        <div class="product-card" data-id="${product.id}">
             <div class="product-image">
                 <i class="fas fa-box"></i>
             </div>
@@ -258,6 +261,42 @@ function displayProducts(products) {
     .join("");
 }
 
+// Applies live stock and price changes pushed by the server
+function subscribeToStockUpdates() {
+  if (!window.EventSource) {
+    return;
+  }
+  const source = new EventSource(`${API_BASE_URL}/products/stream`);
+  let disconnected = false;
+
+  source.addEventListener("delta", (event) => {
+    JSON.parse(event.data).forEach((delta) => {
+      const card = document.querySelector(
+        `.product-card[data-id="${CSS.escape(delta.id)}"]`
+      );
+      if (!card) {
+        return;
+      }
+      if (delta.removed) {
+        card.remove();
+        return;
+      }
+      card.querySelector(".product-price").textContent = `R ${delta.price}`;
+      card.querySelector(".product-stock").textContent = `Stock: ${delta.stock}`;
+    });
+  });
+  source.addEventListener("error", () => {
+    disconnected = true;
+  });
+  source.addEventListener("open", () => {
+    // Changes sent while disconnected were missed
+    if (disconnected) {
+      disconnected = false;
+      loadProducts();
+    }
+  });
+}
+
 async function searchProducts() {
   const searchInput = document.getElementById("search-input");
   const query = searchInput.value.trim();
@@ -292,6 +331,38 @@ async function searchProducts() {
   }
 }
 
+// Typeahead: suggestions on each keystroke, the full search on Enter or pick
+async function loadSuggestions() {
+  const query = document.getElementById("search-input").value;
+  const suggestions = document.getElementById("search-suggestions");
+
+  if (query.trim().length === 0) {
+    suggestions.innerHTML = "";
+    loadProducts();
+    return;
+  }
+
+  try {
+    const response = await fetch(
+      `${API_BASE_URL}/products/suggest?q=${encodeURIComponent(query)}`
+    );
+    const result = await response.json();
+
+    if (result.success) {
+      // Suggestions echo product names, so set them as values, never as markup
+      suggestions.replaceChildren(
+        ...result.data.map((suggestion) => {
+          const option = document.createElement("option");
+          option.value = suggestion.text;
+          return option;
+        })
+      );
+    }
+  } catch (error) {
+    console.error("Suggest error:", error);
+  }
+}
+
 // Category functions
 async function loadCategories() {
   const categoriesGrid = document.getElementById("categories-grid");